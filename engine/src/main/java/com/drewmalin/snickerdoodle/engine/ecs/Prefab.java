@@ -0,0 +1,125 @@
+package com.drewmalin.snickerdoodle.engine.ecs;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentPool;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A template for entities which share the same set of components, described once and instantiated as many times as
+ * needed. Each component of a prefab is either:
+ * <ul>
+ *     <li>shared: one instance is put onto every entity. Suitable for immutable components, such as a Mesh.</li>
+ *     <li>copied: every entity receives its own copy of a prototype (e.g. Transform::copy). Suitable for mutable
+ *     components, such as a Transform.</li>
+ *     <li>created: every entity receives a new instance from a supplier.</li>
+ *     <li>pooled: every entity receives an instance acquired from a {@link ComponentPool}.</li>
+ * </ul>
+ * Instantiating many entities at once goes through {@link EntityManager#newEntities}, so the manager can apply the
+ * whole batch in one operation.
+ */
+public final class Prefab {
+
+    private final String name;
+    private final List<Supplier<? extends Component>> components;
+
+    private Prefab(final Builder builder) {
+        this.name = builder.name;
+        this.components = List.copyOf(builder.components);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a single entity from this prefab.
+     */
+    public Entity instantiate(final EntityManager entityManager) {
+        return instantiate(entityManager, 1).get(0);
+    }
+
+    /**
+     * Creates count entities from this prefab, returning them in creation order.
+     */
+    public List<Entity> instantiate(final EntityManager entityManager, final int count) {
+        return entityManager.newEntities(this.name, count, i -> newComponents());
+    }
+
+    private Component[] newComponents() {
+        final var instance = new Component[this.components.size()];
+        for (var i = 0; i < instance.length; i++) {
+            instance[i] = this.components.get(i).get();
+        }
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return "Prefab["
+            + "name='" + this.name + "', "
+            + "components=" + this.components.size()
+            + ']';
+    }
+
+    public static class Builder {
+
+        private final List<Supplier<? extends Component>> components;
+        private String name;
+
+        private Builder() {
+            this.components = new ArrayList<>();
+        }
+
+        /**
+         * Sets the name given to every entity created from the prefab. Optional.
+         */
+        public Builder name(final String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Puts the given component instance onto every entity created from the prefab.
+         */
+        public Builder shared(final Component component) {
+            this.components.add(() -> component);
+            return this;
+        }
+
+        /**
+         * Puts a copy of the given prototype, made with the given function, onto every entity created from the prefab.
+         */
+        public <T extends Component> Builder copied(final T prototype, final UnaryOperator<T> copy) {
+            this.components.add(() -> copy.apply(prototype));
+            return this;
+        }
+
+        /**
+         * Puts a new component, obtained from the given supplier, onto every entity created from the prefab.
+         */
+        public Builder created(final Supplier<? extends Component> supplier) {
+            this.components.add(supplier);
+            return this;
+        }
+
+        /**
+         * Puts a component acquired from the given pool onto every entity created from the prefab. The pool should
+         * also be registered with the entity manager, so that components are returned to it when entities are
+         * destroyed.
+         */
+        public Builder pooled(final ComponentPool<?> pool) {
+            this.components.add(pool::acquire);
+            return this;
+        }
+
+        public Prefab build() {
+            return new Prefab(this);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.drewmalin.snickerdoodle.engine.ecs.component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The clock against which one EntityManager's component changes are recorded (see EntityManager::currentTick). Every
+ * change -- a component put onto an entity, or a {@link Tracked} component changed in place -- is stamped with the
+ * manager's current tick, and systems which only care about what has changed (e.g. only re-uploading moved transforms)
+ * compare those stamps against a bookmark of their own: the tick at which they last ran.
+ * <p>
+ * Only the engine advances the clock: once per update, and again at the end of each stage of systems, before the
+ * stage's command buffer is played back. A system sees exactly the changes made since it last ran -- including those
+ * made later in that update, by the stages after its own -- by keeping its bookmark like so:
+ * <pre>
+ * final var since = this.lastTick;
+ * this.lastTick = entityManager.currentTick();
+ * result.forEachChangedSince(Transform.class, since, entity -&gt; ...);
+ * </pre>
+ * Changes stamped with the bookmark itself -- those the system made, or those made by the systems of its own stage,
+ * which never touch what it reads -- are not seen again on its next run.
+ * <p>
+ * Tracked components stamp their in-place changes through stamp, which also reports each change to the clock's
+ * listener, if it has one: the manager sets one once it has an EntityIndex to keep up to date.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class ChangeClock {
+
+    /**
+     * The tick of a change never made. Every clock starts after it.
+     */
+    public static final long NEVER = 0;
+
+    private final AtomicLong current;
+
+    /*
+     * Read on every stamp, so that stamping costs nothing more while there is no listener.
+     */
+    private volatile Consumer<? super Tracked> listener;
+
+    public ChangeClock() {
+        this.current = new AtomicLong(NEVER + 1);
+    }
+
+    /**
+     * Returns the current tick. Changes made now are stamped with this value.
+     */
+    public long current() {
+        return this.current.get();
+    }
+
+    /**
+     * Ends the current tick, returning it. Every change made after this call is stamped with a greater value.
+     */
+    public long advance() {
+        return this.current.getAndIncrement();
+    }
+
+    /**
+     * Returns the current tick, with which the given component (attached to this clock) stamps a change made to it in
+     * place, and reports the change to the listener, if any. Called by Tracked::markChanged.
+     */
+    public long stamp(final Tracked component) {
+        final var listener = this.listener;
+        if (listener != null) {
+            listener.accept(component);
+        }
+        return this.current.get();
+    }
+
+    /**
+     * Sets the listener to which every change stamped from now on is reported, replacing any previous one. The listener
+     * is called on the thread making the change, and so must be thread-safe.
+     */
+    public void setListener(final Consumer<? super Tracked> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeClock["
+            + "current=" + current()
+            + ']';
+    }
+}
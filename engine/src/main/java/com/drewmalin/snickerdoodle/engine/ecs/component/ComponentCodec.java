@@ -0,0 +1,34 @@
+package com.drewmalin.snickerdoodle.engine.ecs.component;
+
+/**
+ * Flattens the state of a mutable component into a fixed number of floats, and back. World snapshots (see
+ * EntityManager::snapshot) store the components of a type with a codec as one flat float array per type, rather than
+ * as a copy of each component object, and on restore write the floats back into the live components in place.
+ * <p>
+ * Components without a codec are captured by reference, and so are only restored exactly if they are never changed in
+ * place (replace them instead).
+ */
+public interface ComponentCodec<T extends Component> {
+
+    Class<T> type();
+
+    /**
+     * Returns the number of floats each component occupies.
+     */
+    int width();
+
+    /**
+     * Writes the state of the given component to dest, at [offset, offset + width()).
+     */
+    void write(T component, float[] dest, int offset);
+
+    /**
+     * Overwrites the state of the given component with that read from src, at [offset, offset + width()).
+     */
+    void read(float[] src, int offset, T component);
+
+    /**
+     * Returns a new component, whose state is about to be overwritten by read.
+     */
+    T create();
+}
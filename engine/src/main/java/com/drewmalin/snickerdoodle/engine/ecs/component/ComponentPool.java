@@ -0,0 +1,152 @@
+package com.drewmalin.snickerdoodle.engine.ecs.component;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A pool of reusable components of a single type. Components are taken from the pool with acquire -- which creates a
+ * new one only if the pool is empty -- and returned to it with release, which resets them for their next use. Reusing
+ * components (and whatever they own, such as a Transform's vectors) rather than allocating new ones keeps scenes which
+ * spawn and destroy many entities per second from churning the garbage collector.
+ * <p>
+ * A pool registered with an EntityManager (see EntityManager::registerPool) is given back every component of its
+ * exact type held by an entity when that entity is destroyed. Components of a pooled type must therefore not be shared
+ * between entities, nor used after their entity is destroyed.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class ComponentPool<T extends Component> {
+
+    private final Class<T> type;
+    private final Supplier<? extends T> factory;
+    private final Consumer<? super T> reset;
+    private final int maxSize;
+
+    private Component[] idle;
+    private int size;
+    private long created;
+    private long reused;
+    private long released;
+    private long discarded;
+
+    private ComponentPool(final Builder<T> builder) {
+        if (builder.type == null || builder.factory == null) {
+            throw new IllegalArgumentException("A component pool requires a type and a factory");
+        }
+        if (builder.maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive, got: " + builder.maxSize);
+        }
+        this.type = builder.type;
+        this.factory = builder.factory;
+        this.reset = builder.reset;
+        this.maxSize = builder.maxSize;
+        this.idle = new Component[Math.min(this.maxSize, 64)];
+    }
+
+    public static <T extends Component> Builder<T> builder(final Class<T> type) {
+        return new Builder<>(type);
+    }
+
+    public Class<T> type() {
+        return this.type;
+    }
+
+    /**
+     * Returns an idle component from this pool, or a new one if the pool is empty.
+     */
+    public synchronized T acquire() {
+        if (this.size == 0) {
+            this.created++;
+            return this.factory.get();
+        }
+
+        this.reused++;
+        @SuppressWarnings("unchecked") T component = (T) this.idle[--this.size];
+        this.idle[this.size] = null;
+        return component;
+    }
+
+    /**
+     * Resets the given component and returns it to this pool. If the pool is already full, the component is dropped.
+     */
+    public synchronized void release(final T component) {
+        if (this.size == this.maxSize) {
+            this.discarded++;
+            return;
+        }
+
+        if (this.reset != null) {
+            this.reset.accept(component);
+        }
+        if (this.size == this.idle.length) {
+            this.idle = Arrays.copyOf(this.idle, Math.min(this.maxSize, this.idle.length * 2));
+        }
+        this.idle[this.size++] = component;
+        this.released++;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(this.size, this.created, this.reused, this.released, this.discarded);
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentPool["
+            + "type=" + this.type.getName() + ", "
+            + "stats=" + stats()
+            + ']';
+    }
+
+    /**
+     * A snapshot of a pool's counters.
+     *
+     * @param idle      the number of components currently in the pool
+     * @param created   the number of components created because the pool was empty
+     * @param reused    the number of acquisitions served from the pool
+     * @param released  the number of components returned to the pool
+     * @param discarded the number of components dropped because the pool was full
+     */
+    public record Stats(int idle, long created, long reused, long released, long discarded) {
+    }
+
+    public static class Builder<T extends Component> {
+
+        private final Class<T> type;
+        private Supplier<? extends T> factory;
+        private Consumer<? super T> reset;
+        private int maxSize = 4096;
+
+        private Builder(final Class<T> type) {
+            this.type = type;
+        }
+
+        /**
+         * Creates new components when the pool is empty. Required.
+         */
+        public Builder<T> factory(final Supplier<? extends T> factory) {
+            this.factory = factory;
+            return this;
+        }
+
+        /**
+         * Restores a released component to its initial state. Optional.
+         */
+        public Builder<T> reset(final Consumer<? super T> reset) {
+            this.reset = reset;
+            return this;
+        }
+
+        /**
+         * The maximum number of idle components kept by the pool. Defaults to 4096.
+         */
+        public Builder<T> maxSize(final int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public ComponentPool<T> build() {
+            return new ComponentPool<>(this);
+        }
+    }
+}
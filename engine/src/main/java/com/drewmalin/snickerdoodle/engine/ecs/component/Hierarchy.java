@@ -0,0 +1,122 @@
+package com.drewmalin.snickerdoodle.engine.ecs.component;
+
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import org.joml.Matrix4f;
+
+/**
+ * Places an entity within a parent/child hierarchy, such as a turret attached to a tank. The entity's {@link Transform}
+ * is then relative to its parent, and its world matrix -- the product of every ancestor's local matrix and its own --
+ * is cached here. An entity with a Hierarchy but no parent is a root, whose world matrix is its local matrix.
+ * <p>
+ * World matrices are kept up to date by the HierarchySystem, which only recomputes an entity's world matrix when its
+ * own transform, its parent, or its parent's world matrix has changed since the last update.
+ */
+public class Hierarchy
+    implements Component {
+
+    private final Matrix4f worldMatrix;
+
+    private Entity parent;
+    private boolean parentChanged;
+
+    /*
+     * The inputs the cached world matrix was computed from -- the change tick of the local transform, and the version
+     * of the parent's world matrix -- and the version of the cached world matrix itself.
+     */
+    private long localTick;
+    private long parentWorldVersion;
+    private long worldVersion;
+
+    public Hierarchy() {
+        this(null);
+    }
+
+    public Hierarchy(final Entity parent) {
+        this.worldMatrix = new Matrix4f();
+        this.parent = parent;
+        this.parentChanged = true;
+        this.localTick = -1;
+        this.parentWorldVersion = -1;
+    }
+
+    /**
+     * Returns a new Hierarchy with the same parent, cached world matrix and cache state as this one.
+     */
+    public Hierarchy copy() {
+        final var copy = new Hierarchy(this.parent);
+        copy.worldMatrix.set(this.worldMatrix);
+        copy.parentChanged = this.parentChanged;
+        copy.localTick = this.localTick;
+        copy.parentWorldVersion = this.parentWorldVersion;
+        copy.worldVersion = this.worldVersion;
+        return copy;
+    }
+
+    /**
+     * Returns this entity's parent, or null if it is a root.
+     */
+    public Entity getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Attaches this entity to the given parent (or, if null, detaches it, making it a root).
+     */
+    public void setParent(final Entity parent) {
+        this.parent = parent;
+        this.parentChanged = true;
+    }
+
+    /**
+     * Returns this entity's cached world matrix, as of the last hierarchy update. The matrix must not be modified.
+     */
+    public Matrix4f getWorldMatrix() {
+        return this.worldMatrix;
+    }
+
+    /**
+     * Returns a counter which increases every time the world matrix is recomputed.
+     */
+    public long getWorldVersion() {
+        return this.worldVersion;
+    }
+
+    /**
+     * Returns true if the cached world matrix is out of date, given the change tick of this entity's local transform
+     * and its parent's hierarchy node (null for a root).
+     */
+    public boolean isStale(final long localTick, final Hierarchy parent) {
+        return this.parentChanged
+            || localTick != this.localTick
+            || (parent == null ? -1 : parent.worldVersion) != this.parentWorldVersion;
+    }
+
+    /**
+     * Recomputes the cached world matrix from the given local transform (which may be null, meaning identity) and the
+     * parent's hierarchy node (null for a root). Called by the HierarchySystem.
+     */
+    public void update(final Transform local, final long localTick, final Hierarchy parent) {
+        if (local == null) {
+            this.worldMatrix.identity();
+        }
+        else {
+            local.toMatrix(this.worldMatrix);
+        }
+        if (parent != null) {
+            parent.worldMatrix.mul(this.worldMatrix, this.worldMatrix);
+        }
+
+        this.localTick = localTick;
+        this.parentWorldVersion = parent == null ? -1 : parent.worldVersion;
+        this.parentChanged = false;
+        this.worldVersion++;
+    }
+
+    @Override
+    public String toString() {
+        return "Hierarchy["
+            + "parent=" + this.parent + ", "
+            + "worldVersion=" + this.worldVersion
+            + ']';
+    }
+}
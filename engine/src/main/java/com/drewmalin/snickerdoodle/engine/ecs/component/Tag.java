@@ -0,0 +1,50 @@
+package com.drewmalin.snickerdoodle.engine.ecs.component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A zero-size marker, such as "static", "visible" or "selected". Unlike a {@link Component}, a tag carries no data:
+ * each EntityManager stores it as one bit per entity, in a bitset per tag, so tagging (or untagging) an entity is a
+ * single bit write, and whole sets of tagged entities can be combined a word at a time (see TagFilter).
+ * <p>
+ * Tags are interned by name -- Tag.of("visible") always returns the same tag -- and are meant to be created once, as
+ * constants. Each is assigned a dense, process-wide id.
+ */
+public final class Tag {
+
+    private static final Map<String, Tag> REGISTRY = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+
+    private Tag(final String name, final int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    public static Tag of(final String name) {
+        return REGISTRY.computeIfAbsent(name, n -> new Tag(n, NEXT_ID.getAndIncrement()));
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns this tag's id: a small, dense integer, unique to this tag.
+     */
+    public int id() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return "Tag["
+            + "name=" + this.name + ", "
+            + "id=" + this.id
+            + ']';
+    }
+}
@@ -0,0 +1,30 @@
+package com.drewmalin.snickerdoodle.engine.ecs.component;
+
+/**
+ * A mutable component which records the tick at which it was last changed. Every EntityManager stamps a component when
+ * it is put onto an entity; components which may also be changed in place implement this interface, so that those
+ * changes are seen too. The manager attaches the component to its own {@link ChangeClock} when putting it, and changes
+ * are stamped with that clock's tick from then on.
+ */
+public interface Tracked
+    extends Component {
+
+    /**
+     * Returns the tick at which this component was last changed in place.
+     */
+    long getChangedTick();
+
+    /**
+     * Stamps this component as changed at the current tick, through ChangeClock::stamp, so that any index keyed on it
+     * is re-keyed. Mutators call this themselves; callers need only call it after changing the component by other
+     * means (e.g. through a mutable vector returned by a getter).
+     */
+    void markChanged();
+
+    /**
+     * Attaches this component to the given clock, with whose current tick every later change is stamped, and forgets
+     * the tick of any earlier change (which was read from another clock, if any). Called by the EntityManager the
+     * component is put into; a component not yet put into one stamps its changes with ChangeClock.NEVER.
+     */
+    void attach(ChangeClock clock);
+}
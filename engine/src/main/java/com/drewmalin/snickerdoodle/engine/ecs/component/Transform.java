@@ -1,15 +1,59 @@
 package com.drewmalin.snickerdoodle.engine.ecs.component;
 
+import org.joml.Matrix4f;
 import org.joml.Vector3f;
 
 import java.util.Objects;
 
-public class Transform implements Component {
+public class Transform implements Tracked {
+
+    /**
+     * Flattens a transform into its position, rotation and scale: 9 floats.
+     */
+    public static final ComponentCodec<Transform> CODEC = new ComponentCodec<>() {
+        @Override
+        public Class<Transform> type() {
+            return Transform.class;
+        }
+
+        @Override
+        public int width() {
+            return 9;
+        }
+
+        @Override
+        public void write(final Transform component, final float[] dest, final int offset) {
+            dest[offset] = component.position.x();
+            dest[offset + 1] = component.position.y();
+            dest[offset + 2] = component.position.z();
+            dest[offset + 3] = component.rotation.x();
+            dest[offset + 4] = component.rotation.y();
+            dest[offset + 5] = component.rotation.z();
+            dest[offset + 6] = component.scale.x();
+            dest[offset + 7] = component.scale.y();
+            dest[offset + 8] = component.scale.z();
+        }
+
+        @Override
+        public void read(final float[] src, final int offset, final Transform component) {
+            component.setPosition(src[offset], src[offset + 1], src[offset + 2]);
+            component.setRotation(src[offset + 3], src[offset + 4], src[offset + 5]);
+            component.setScale(src[offset + 6], src[offset + 7], src[offset + 8]);
+        }
+
+        @Override
+        public Transform create() {
+            return new Transform();
+        }
+    };
 
     private final Vector3f position;
     private final Vector3f rotation;
     private final Vector3f scale;
 
+    private volatile ChangeClock clock;
+    private volatile long changedTick;
+
     public Transform() {
         this.position = new Vector3f(0, 0, 0);
         this.rotation = new Vector3f(0, 0, 0);
@@ -26,6 +70,31 @@ public class Transform implements Component {
         return new Builder();
     }
 
+    /**
+     * Returns a new Transform with the same position, rotation and scale as this one.
+     */
+    public Transform copy() {
+        return builder()
+            .position(new Vector3f(this.position))
+            .rotation(new Vector3f(this.rotation))
+            .scale(new Vector3f(this.scale))
+            .build();
+    }
+
+    /**
+     * Writes this transform's local matrix (translation, then rotation about X, Y and Z, then scale) into dest,
+     * returning dest.
+     */
+    public Matrix4f toMatrix(final Matrix4f dest) {
+        return dest
+            .identity()
+            .translate(this.position)
+            .rotateX((float) Math.toRadians(this.rotation.x()))
+            .rotateY((float) Math.toRadians(this.rotation.y()))
+            .rotateZ((float) Math.toRadians(this.rotation.z()))
+            .scale(this.scale);
+    }
+
     public Vector3f getPosition() {
         return this.position;
     }
@@ -42,12 +111,14 @@ public class Transform implements Component {
         this.position.setComponent(0, x);
         this.position.setComponent(1, y);
         this.position.setComponent(2, z);
+        markChanged();
     }
 
     public void setRotation(final float x, final float y, final float z) {
         this.rotation.setComponent(0, x);
         this.rotation.setComponent(1, y);
         this.rotation.setComponent(2, z);
+        markChanged();
     }
 
     public void setScale(final float scale) {
@@ -58,6 +129,34 @@ public class Transform implements Component {
         this.scale.setComponent(0, x);
         this.scale.setComponent(1, y);
         this.scale.setComponent(2, z);
+        markChanged();
+    }
+
+    /**
+     * Restores this transform to its initial state: at the origin, unrotated, and unscaled. Suitable as the reset
+     * function of a ComponentPool.
+     */
+    public void reset() {
+        setPosition(0, 0, 0);
+        setRotation(0, 0, 0);
+        setScale(1, 1, 1);
+    }
+
+    @Override
+    public long getChangedTick() {
+        return this.changedTick;
+    }
+
+    @Override
+    public void markChanged() {
+        final var clock = this.clock;
+        this.changedTick = clock == null ? ChangeClock.NEVER : clock.stamp(this);
+    }
+
+    @Override
+    public void attach(final ChangeClock clock) {
+        this.clock = clock;
+        this.changedTick = ChangeClock.NEVER;
     }
 
     @Override
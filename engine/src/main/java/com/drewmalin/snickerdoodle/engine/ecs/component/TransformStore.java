@@ -0,0 +1,344 @@
+package com.drewmalin.snickerdoodle.engine.ecs.component;
+
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityEvents;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.SnapshotExtension;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Off-heap storage for entity transforms: an alternative to the {@link Transform} component for entities which move
+ * every tick. The position, rotation (in degrees) and scale of every stored entity, along with its cached model matrix,
+ * are packed into a single native {@link FloatBuffer} indexed by {@link Entity#index()}, so no per-entity heap objects
+ * are needed. Scripts write to the store in place, and each entity's model matrix is copied straight from the store
+ * into the scene's render snapshot, without going through a Transform.
+ * <p>
+ * Model matrices are recomputed lazily: writing a position, rotation or scale marks the entity's matrix dirty, and it
+ * is rebuilt on the next call to getMatrix.
+ * <p>
+ * The store belongs to one {@link EntityManager}. Entities destroyed by the manager are removed from the store as its
+ * events are drained, which happens whenever an entity is added or removed, or the size is read. The store is also a
+ * {@link SnapshotExtension} of the manager, so its contents are captured into every WorldSnapshot and restored from it.
+ * <p>
+ * The native buffer is allocated when the first entity is added, and must be released with destroy. This class
+ * performs no locking, and is expected to be used from the update thread.
+ */
+public final class TransformStore
+    implements SnapshotExtension<TransformStore.State> {
+
+    private static final int POSITION_OFFSET = 0;
+    private static final int ROTATION_OFFSET = 3;
+    private static final int SCALE_OFFSET = 6;
+    private static final int MATRIX_OFFSET = 9;
+    private static final int MATRIX_SIZE = 16;
+    private static final int STRIDE = MATRIX_OFFSET + MATRIX_SIZE;
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final EntityManager entityManager;
+    private final EntityEvents.Listener remover;
+    private final Matrix4f scratch;
+
+    /*
+     * The subscription to the manager's events, taken when the first entity is added.
+     */
+    private EntityEvents.Subscription events;
+    private boolean destroyed;
+
+    private FloatBuffer buffer;
+    private FloatBuffer matrixView;
+    private Entity[] entities;
+    private boolean[] dirty;
+    private int size;
+
+    /**
+     * Creates a store for the entities of the given manager, registering it as one of the manager's snapshot
+     * extensions.
+     */
+    public TransformStore(final EntityManager entityManager) {
+        this.entityManager = entityManager;
+        this.remover = (kind, entity, componentType) -> {
+            if (kind == EntityEvents.Kind.ENTITY_DESTROYED) {
+                removeStored(entity);
+            }
+        };
+        this.scratch = new Matrix4f();
+        this.entities = new Entity[0];
+        this.dirty = new boolean[0];
+        entityManager.registerSnapshotExtension(this);
+    }
+
+    /**
+     * Adds the given entity to this store, initialized from the given transform. If the entity is already stored, its
+     * values are overwritten.
+     */
+    public void add(final Entity entity, final Transform transform) {
+        if (this.events == null && !this.destroyed) {
+            this.events = this.entityManager.getEvents().subscribe();
+        }
+        removeDestroyed();
+        ensureCapacity(entity.index() + 1);
+        if (this.entities[entity.index()] == null) {
+            this.size++;
+        }
+        this.entities[entity.index()] = entity;
+
+        final var position = transform.getPosition();
+        final var rotation = transform.getRotation();
+        final var scale = transform.getScale();
+        write(entity.index(), POSITION_OFFSET, position.x(), position.y(), position.z());
+        write(entity.index(), ROTATION_OFFSET, rotation.x(), rotation.y(), rotation.z());
+        write(entity.index(), SCALE_OFFSET, scale.x(), scale.y(), scale.z());
+    }
+
+    /**
+     * Removes the given entity from this store. Its slot is reused by whichever entity next claims the same index.
+     */
+    public void remove(final Entity entity) {
+        removeDestroyed();
+        removeStored(entity);
+    }
+
+    public boolean contains(final Entity entity) {
+        final var index = entity.index();
+        return index >= 0 && index < this.entities.length && entity.equals(this.entities[index]);
+    }
+
+    /**
+     * Returns the number of entities in this store.
+     */
+    public int size() {
+        removeDestroyed();
+        return this.size;
+    }
+
+    public void setPosition(final Entity entity, final float x, final float y, final float z) {
+        write(checkedIndex(entity), POSITION_OFFSET, x, y, z);
+    }
+
+    public void setRotation(final Entity entity, final float x, final float y, final float z) {
+        write(checkedIndex(entity), ROTATION_OFFSET, x, y, z);
+    }
+
+    public void setScale(final Entity entity, final float x, final float y, final float z) {
+        write(checkedIndex(entity), SCALE_OFFSET, x, y, z);
+    }
+
+    /**
+     * Copies the given entity's position into dest, returning dest.
+     */
+    public Vector3f getPosition(final Entity entity, final Vector3f dest) {
+        return read(checkedIndex(entity), POSITION_OFFSET, dest);
+    }
+
+    /**
+     * Copies the given entity's rotation (in degrees) into dest, returning dest.
+     */
+    public Vector3f getRotation(final Entity entity, final Vector3f dest) {
+        return read(checkedIndex(entity), ROTATION_OFFSET, dest);
+    }
+
+    /**
+     * Copies the given entity's scale into dest, returning dest.
+     */
+    public Vector3f getScale(final Entity entity, final Vector3f dest) {
+        return read(checkedIndex(entity), SCALE_OFFSET, dest);
+    }
+
+    /**
+     * Returns the given entity's model matrix (translation, then rotation about X, Y and Z, then scale), rebuilding it
+     * first if the entity's transform has changed. The result is a view of this store's native buffer, positioned at
+     * the matrix's 16 column-major floats -- it may be passed directly to OpenGL, and is only valid until the next call
+     * to any method of this store.
+     */
+    public FloatBuffer getMatrix(final Entity entity) {
+        final var index = checkedIndex(entity);
+        final var base = index * STRIDE;
+        if (this.dirty[index]) {
+            final var buffer = this.buffer;
+            this.scratch
+                .identity()
+                .translate(
+                    buffer.get(base + POSITION_OFFSET),
+                    buffer.get(base + POSITION_OFFSET + 1),
+                    buffer.get(base + POSITION_OFFSET + 2))
+                .rotateX((float) Math.toRadians(buffer.get(base + ROTATION_OFFSET)))
+                .rotateY((float) Math.toRadians(buffer.get(base + ROTATION_OFFSET + 1)))
+                .rotateZ((float) Math.toRadians(buffer.get(base + ROTATION_OFFSET + 2)))
+                .scale(
+                    buffer.get(base + SCALE_OFFSET),
+                    buffer.get(base + SCALE_OFFSET + 1),
+                    buffer.get(base + SCALE_OFFSET + 2))
+                .get(base + MATRIX_OFFSET, buffer);
+            this.dirty[index] = false;
+        }
+
+        /*
+         * Position a second view of the buffer over the matrix, leaving the limit of the buffer used for reads and
+         * writes untouched.
+         */
+        this.matrixView.limit(base + MATRIX_OFFSET + MATRIX_SIZE);
+        this.matrixView.position(base + MATRIX_OFFSET);
+        return this.matrixView;
+    }
+
+    /**
+     * Copies the position, rotation and scale of every stored entity, for a WorldSnapshot of the manager.
+     */
+    @Override
+    public State capture() {
+        removeDestroyed();
+        final var entities = new Entity[this.size];
+        final var values = new float[this.size * MATRIX_OFFSET];
+        var count = 0;
+        for (var index = 0; index < this.entities.length && count < this.size; index++) {
+            if (this.entities[index] != null) {
+                entities[count] = this.entities[index];
+                this.buffer.get(index * STRIDE, values, count++ * MATRIX_OFFSET, MATRIX_OFFSET);
+            }
+        }
+        return new State(entities, values);
+    }
+
+    /**
+     * Replaces this store's contents with those captured. Called once the manager has been restored, so the events
+     * recorded by the restore (and any not yet drained before it) are discarded rather than applied over the result.
+     */
+    @Override
+    public void restore(final State state) {
+        if (this.destroyed) {
+            return;
+        }
+        if (this.events != null) {
+            this.events.drain((kind, entity, componentType) -> {
+            });
+        }
+        else if (state.entities.length > 0) {
+            this.events = this.entityManager.getEvents().subscribe();
+        }
+
+        Arrays.fill(this.entities, null);
+        this.size = 0;
+        for (var i = 0; i < state.entities.length; i++) {
+            final var index = state.entities[i].index();
+            ensureCapacity(index + 1);
+            this.entities[index] = state.entities[i];
+            this.size++;
+            this.buffer.put(index * STRIDE, state.values, i * MATRIX_OFFSET, MATRIX_OFFSET);
+            this.dirty[index] = true;
+        }
+    }
+
+    /**
+     * Releases this store's native memory, and stops following the manager's events. The store must not be used
+     * afterwards.
+     */
+    public void destroy() {
+        this.destroyed = true;
+        if (this.events != null) {
+            this.events.close();
+            this.events = null;
+        }
+        if (this.buffer != null) {
+            MemoryUtil.memFree(this.buffer);
+            this.buffer = null;
+            this.matrixView = null;
+        }
+        this.entities = new Entity[0];
+        this.dirty = new boolean[0];
+        this.size = 0;
+    }
+
+    private void removeStored(final Entity entity) {
+        if (contains(entity)) {
+            this.entities[entity.index()] = null;
+            this.size--;
+        }
+    }
+
+    private void removeDestroyed() {
+        if (this.events != null) {
+            this.events.drain(this.remover);
+        }
+    }
+
+    private int checkedIndex(final Entity entity) {
+        if (!contains(entity)) {
+            throw new IllegalArgumentException(String.format("Entity %s is not in this transform store", entity));
+        }
+        return entity.index();
+    }
+
+    private void write(final int index, final int offset, final float x, final float y, final float z) {
+        final var base = index * STRIDE + offset;
+        this.buffer.put(base, x);
+        this.buffer.put(base + 1, y);
+        this.buffer.put(base + 2, z);
+        this.dirty[index] = true;
+    }
+
+    private Vector3f read(final int index, final int offset, final Vector3f dest) {
+        final var base = index * STRIDE + offset;
+        dest.x = this.buffer.get(base);
+        dest.y = this.buffer.get(base + 1);
+        dest.z = this.buffer.get(base + 2);
+        return dest;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= this.entities.length) {
+            return;
+        }
+
+        /*
+         * Grow the native buffer, copying across the existing contents, and free the old one.
+         */
+        final var newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY, this.entities.length * 2));
+        final var newBuffer = MemoryUtil.memAllocFloat(newCapacity * STRIDE);
+        if (this.buffer != null) {
+            this.buffer.clear();
+            newBuffer.put(this.buffer);
+            newBuffer.clear();
+            MemoryUtil.memFree(this.buffer);
+        }
+        this.buffer = newBuffer;
+        this.matrixView = newBuffer.duplicate();
+        this.entities = Arrays.copyOf(this.entities, newCapacity);
+        this.dirty = Arrays.copyOf(this.dirty, newCapacity);
+    }
+
+    @Override
+    public String toString() {
+        return "TransformStore["
+            + "size=" + this.size + ", "
+            + "capacity=" + this.entities.length
+            + ']';
+    }
+
+    /**
+     * The contents of a store as captured for a WorldSnapshot: each stored entity, with its position, rotation and
+     * scale. Opaque, and never changed once captured.
+     */
+    public static final class State {
+
+        private final Entity[] entities;
+        private final float[] values;
+
+        private State(final Entity[] entities, final float[] values) {
+            this.entities = entities;
+            this.values = values;
+        }
+
+        @Override
+        public String toString() {
+            return "State["
+                + "size=" + this.entities.length
+                + ']';
+        }
+    }
+}
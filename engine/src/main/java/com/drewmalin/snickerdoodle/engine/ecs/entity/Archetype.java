@@ -0,0 +1,208 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The set of all entities which have exactly the same set of component types. Entities are packed into fixed-size
+ * {@link Chunk}s, and are addressed by a "slot": the entity's position across all chunks of this archetype. Slots are
+ * kept dense -- removing an entity moves the archetype's last entity into the vacated slot.
+ */
+final class Archetype {
+
+    private static final int NO_COLUMN = -1;
+    private static final int UNRESOLVED = -2;
+
+    private final Set<Class<? extends Component>> types;
+    private final List<Class<? extends Component>> columnTypes;
+    private final ComponentType[] columnComponentTypes;
+    private final Map<Class<? extends Component>, Archetype> addEdges;
+    private final Map<Class<? extends Component>, Archetype> removeEdges;
+    private final List<Chunk> chunks;
+    private final int chunkCapacity;
+
+    /*
+     * The resolved column for every type looked up so far, indexed by ComponentType id: NO_COLUMN if the archetype has
+     * no column assignable to the type, or UNRESOLVED if the type has not yet been looked up. Lookups may be made from
+     * many threads at once, so a grown table is only published once it is completely filled in. Two threads resolving
+     * at once may each store a slot, or publish a table without the other's slot -- both harmless, since every thread
+     * computes the same column, and a lost slot is only resolved again.
+     */
+    private volatile int[] columnsByTypeId;
+    private int size;
+
+    Archetype(final Set<Class<? extends Component>> types, final int chunkCapacity) {
+        this.types = Set.copyOf(types);
+        this.columnTypes = List.copyOf(types);
+        this.columnComponentTypes = new ComponentType[this.columnTypes.size()];
+        for (var i = 0; i < this.columnTypes.size(); i++) {
+            this.columnComponentTypes[i] = ComponentType.of(this.columnTypes.get(i));
+        }
+        this.columnsByTypeId = new int[0];
+        this.addEdges = new HashMap<>();
+        this.removeEdges = new HashMap<>();
+        this.chunks = new ArrayList<>();
+        this.chunkCapacity = chunkCapacity;
+    }
+
+    Set<Class<? extends Component>> types() {
+        return this.types;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int columnCount() {
+        return this.columnTypes.size();
+    }
+
+    Class<? extends Component> columnType(final int column) {
+        return this.columnTypes.get(column);
+    }
+
+    List<Chunk> chunks() {
+        return Collections.unmodifiableList(this.chunks);
+    }
+
+    /**
+     * Returns the column holding components of exactly the given type, or -1 if this archetype has no such column.
+     */
+    int exactColumnOf(final Class<?> type) {
+        final var column = columnOf(type);
+        if (column == NO_COLUMN || this.columnTypes.get(column) != type) {
+            return NO_COLUMN;
+        }
+        return column;
+    }
+
+    /**
+     * Returns the column holding components assignable to the given type, or -1 if this archetype has no such column.
+     * A column of exactly the given type is preferred. The first lookup of a type (e.g. Material for an archetype
+     * storing Color) tests the archetype's columns against the type's precomputed supertypes, after which the result
+     * -- including a miss -- is cached by type id. Safe to call from many threads at once.
+     */
+    int columnOf(final Class<?> type) {
+        final var componentType = ComponentType.of(type);
+        final var id = componentType.id();
+        var columns = this.columnsByTypeId;
+        if (id < columns.length && columns[id] != UNRESOLVED) {
+            return columns[id];
+        }
+
+        var column = NO_COLUMN;
+        for (var i = 0; i < this.columnComponentTypes.length; i++) {
+            if (this.columnComponentTypes[i] == componentType) {
+                column = i;
+                break;
+            }
+            if (column == NO_COLUMN && this.columnComponentTypes[i].isAssignableTo(componentType)) {
+                column = i;
+            }
+        }
+
+        if (id >= columns.length) {
+            final var oldLength = columns.length;
+            columns = Arrays.copyOf(columns, Math.max(id + 1, ComponentType.count()));
+            Arrays.fill(columns, oldLength, columns.length, UNRESOLVED);
+            columns[id] = column;
+            this.columnsByTypeId = columns;
+        }
+        else {
+            columns[id] = column;
+        }
+        return column;
+    }
+
+    Archetype getAddEdge(final Class<? extends Component> type) {
+        return this.addEdges.get(type);
+    }
+
+    void putAddEdge(final Class<? extends Component> type, final Archetype archetype) {
+        this.addEdges.put(type, archetype);
+    }
+
+    Archetype getRemoveEdge(final Class<? extends Component> type) {
+        return this.removeEdges.get(type);
+    }
+
+    void putRemoveEdge(final Class<? extends Component> type, final Archetype archetype) {
+        this.removeEdges.put(type, archetype);
+    }
+
+    Entity entityAt(final int slot) {
+        return chunkOf(slot).entityAt(rowOf(slot));
+    }
+
+    Component get(final int slot, final int column) {
+        return chunkOf(slot).get(column, rowOf(slot));
+    }
+
+    void set(final int slot, final int column, final Component component) {
+        chunkOf(slot).set(column, rowOf(slot), component);
+    }
+
+    /**
+     * Appends the given entity to this archetype, returning its slot. All of the entity's columns are initially null.
+     */
+    int add(final Entity entity) {
+        if (this.chunks.isEmpty() || this.chunks.get(this.chunks.size() - 1).isFull()) {
+            this.chunks.add(new Chunk(this.columnTypes.size(), this.chunkCapacity));
+        }
+        this.chunks.get(this.chunks.size() - 1).append(entity);
+        return this.size++;
+    }
+
+    /**
+     * Removes the entity in the given slot. To keep the archetype dense, the last entity of the archetype is moved into
+     * the vacated slot; that entity is returned so that the caller may update its location. If the removed entity was
+     * itself the last one, null is returned.
+     */
+    Entity remove(final int slot) {
+        final var lastSlot = this.size - 1;
+        final var lastChunk = this.chunks.get(this.chunks.size() - 1);
+
+        Entity moved = null;
+        if (slot != lastSlot) {
+            final var chunk = chunkOf(slot);
+            final var row = rowOf(slot);
+            final var lastRow = lastChunk.size() - 1;
+            for (var column = 0; column < this.columnTypes.size(); column++) {
+                chunk.set(column, row, lastChunk.get(column, lastRow));
+            }
+            moved = lastChunk.entityAt(lastRow);
+            chunk.setEntityAt(row, moved);
+        }
+
+        lastChunk.removeLast();
+        if (lastChunk.size() == 0) {
+            this.chunks.remove(this.chunks.size() - 1);
+        }
+        this.size--;
+        return moved;
+    }
+
+    private Chunk chunkOf(final int slot) {
+        return this.chunks.get(slot / this.chunkCapacity);
+    }
+
+    private int rowOf(final int slot) {
+        return slot % this.chunkCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return "Archetype["
+            + "types=" + this.types + ", "
+            + "size=" + this.size + ", "
+            + "chunks=" + this.chunks.size()
+            + ']';
+    }
+}
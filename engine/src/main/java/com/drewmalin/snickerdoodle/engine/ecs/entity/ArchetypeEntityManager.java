@@ -0,0 +1,670 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentPool;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * An {@link EntityManager} which stores entities by archetype: every entity with exactly the same set of component
+ * types lives in the same {@link Archetype}, packed into fixed-size {@link Chunk}s whose components are laid out as one
+ * array per component type. Iterating all components of a type (see forEachComponent) is therefore a linear walk over
+ * contiguous arrays, rather than a walk over hash map entries.
+ * <p>
+ * The trade-off is that adding a component of a new type to an entity moves the entity (and all of its components)
+ * from one archetype to another. Replacing a component of a type the entity already has is done in place.
+ * <p>
+ * This manager performs no locking. Changes -- creating and destroying entities, putting and removing components and
+ * tags -- must be made from one thread at a time, normally the engine thread. Reads make no changes to shared state, so
+ * any number of threads may read at once (e.g. during QueryResult::forEachParallel, or a parallel stage of the
+ * SystemScheduler), provided that no change is made meanwhile.
+ */
+public class ArchetypeEntityManager
+    implements EntityManager {
+
+    private static final int DEFAULT_CHUNK_CAPACITY = 512;
+
+    private final int chunkCapacity;
+    private final EntityAllocator entities;
+    private final Map<Set<Class<? extends Component>>, Archetype> archetypes;
+    private final Map<Class<?>, List<Archetype>> archetypesByComponentType;
+    private final Archetype emptyArchetype;
+    private final QueryCache queries;
+    private final ChangeClock clock;
+    private final ChangeTicks changeTicks;
+    private final ComponentPools pools;
+    private final Tags tags;
+    private final EntityIndexes indexes;
+    private final CommandBuffer commandBuffer;
+    private final EntityEvents events;
+    private final WorldSnapshots snapshots;
+
+    /*
+     * The location of every entity, indexed by Entity::index: its archetype, and its slot within that archetype.
+     */
+    private Archetype[] entityArchetypes;
+    private int[] entitySlots;
+
+    public ArchetypeEntityManager() {
+        this(DEFAULT_CHUNK_CAPACITY);
+    }
+
+    public ArchetypeEntityManager(final int chunkCapacity) {
+        if (chunkCapacity <= 0) {
+            throw new IllegalArgumentException("Chunk capacity must be positive, got: " + chunkCapacity);
+        }
+        this.chunkCapacity = chunkCapacity;
+        this.entities = new EntityAllocator();
+        this.entityArchetypes = new Archetype[0];
+        this.entitySlots = new int[0];
+        this.archetypes = new HashMap<>();
+        this.archetypesByComponentType = new ConcurrentHashMap<>();
+        this.emptyArchetype = getOrCreateArchetype(Set.of());
+        this.queries = new QueryCache(this, this::walk);
+        this.clock = new ChangeClock();
+        this.changeTicks = new ChangeTicks(this.clock);
+        this.pools = new ComponentPools();
+        this.tags = new Tags();
+        this.indexes = new EntityIndexes(this.clock);
+        this.commandBuffer = new CommandBuffer();
+        this.events = new EntityEvents();
+        this.snapshots = new WorldSnapshots(this, this.entities, this.tags, this.entities, this::adopt);
+    }
+
+    @Override
+    public Entity newEntity(final String name) {
+        final var entity = this.entities.allocate(name);
+        adopt(entity);
+        return entity;
+    }
+
+    /**
+     * Places a newly allocated entity into the empty archetype, untagged.
+     */
+    private void adopt(final Entity entity) {
+        this.tags.onEntityCreated(entity);
+        ensureLocationCapacity(this.entities.indexCapacity());
+
+        final var index = entity.index();
+        this.entityArchetypes[index] = this.emptyArchetype;
+        this.entitySlots[index] = this.emptyArchetype.add(entity);
+        this.events.entityCreated(entity);
+    }
+
+    @Override
+    public List<Entity> newEntities(final String name, final int count, final IntFunction<Component[]> components) {
+        final var created = new ArrayList<Entity>(count);
+
+        /*
+         * Rather than moving each entity through one archetype per component, place it directly into the archetype
+         * for its full set of component types. Batches are usually homogeneous, so that archetype is only looked up
+         * again when an entity's types differ from those of the entity before it.
+         */
+        Archetype archetype = null;
+        for (var i = 0; i < count; i++) {
+            final var instance = components.apply(i);
+            if (archetype == null || !hasExactTypes(archetype, instance)) {
+                archetype = getOrCreateArchetype(typesOf(instance));
+            }
+
+            final var entity = this.entities.allocate(name);
+            this.tags.onEntityCreated(entity);
+            ensureLocationCapacity(this.entities.indexCapacity());
+            final var slot = archetype.add(entity);
+            this.entityArchetypes[entity.index()] = archetype;
+            this.entitySlots[entity.index()] = slot;
+            this.events.entityCreated(entity);
+
+            for (final var component : instance) {
+                archetype.set(slot, archetype.exactColumnOf(component.getClass()), component);
+                this.changeTicks.mark(entity, component);
+            }
+            for (final var component : instance) {
+                this.queries.onComponentAdded(entity, component.getClass());
+                this.indexes.onComponentPut(entity, component);
+                this.events.componentAdded(entity, component.getClass());
+            }
+            created.add(entity);
+        }
+        return created;
+    }
+
+    @Override
+    public void destroyEntity(final Entity entity) {
+        if (!this.entities.free(entity)) {
+            return;
+        }
+        this.tags.onEntityDestroyed(entity);
+
+        final var index = entity.index();
+        final var archetype = this.entityArchetypes[index];
+        final var slot = this.entitySlots[index];
+        if (!this.pools.isEmpty()) {
+            for (var column = 0; column < archetype.columnCount(); column++) {
+                this.pools.release(archetype.get(slot, column));
+            }
+        }
+        removeFromArchetype(archetype, slot);
+        this.entityArchetypes[index] = null;
+        this.queries.onEntityDestroyed(entity);
+        this.indexes.onEntityDestroyed(entity);
+        this.events.entityDestroyed(entity);
+    }
+
+    @Override
+    public boolean isAlive(final Entity entity) {
+        return this.entities.isAlive(entity);
+    }
+
+    @Override
+    public Optional<String> getName(final Entity entity) {
+        return Optional.ofNullable(this.entities.getName(entity));
+    }
+
+    @Override
+    public Optional<Entity> getEntityByName(final String name) {
+        return Optional.ofNullable(this.entities.firstNamed(name));
+    }
+
+    @Override
+    public Set<Entity> getEntitiesByName(final String name) {
+        return this.entities.allNamed(name);
+    }
+
+    @Override
+    public <T extends Component> void putComponent(final Entity entity, final T component) {
+        if (!this.entities.isAlive(entity)) {
+            return;
+        }
+
+        final var index = entity.index();
+        final Class<? extends Component> type = component.getClass();
+        final var source = this.entityArchetypes[index];
+        final var sourceSlot = this.entitySlots[index];
+
+        /*
+         * If the entity already has a component of exactly this type, replace it in place. No structural change is
+         * necessary.
+         */
+        final var existingColumn = source.exactColumnOf(type);
+        if (existingColumn >= 0) {
+            source.set(sourceSlot, existingColumn, component);
+            this.changeTicks.mark(entity, component);
+            this.indexes.onComponentPut(entity, component);
+            this.events.componentAdded(entity, type);
+            return;
+        }
+
+        /*
+         * Otherwise, the entity moves to the archetype which has all of its current types, plus this new one. Copy
+         * the entity's existing components across, then remove it from its current archetype.
+         */
+        final var target = getAddTarget(source, type);
+        final var slot = moveEntity(entity, source, sourceSlot, target);
+        target.set(slot, target.exactColumnOf(type), component);
+        this.changeTicks.mark(entity, component);
+        this.queries.onComponentAdded(entity, type);
+        this.indexes.onComponentPut(entity, component);
+        this.events.componentAdded(entity, type);
+    }
+
+    @Override
+    public <T extends Component> Optional<T> getComponent(final Entity entity, final Class<T> componentType) {
+        return Optional.ofNullable(getComponentOrNull(entity, componentType));
+    }
+
+    @Override
+    public <T extends Component> T getComponentOrNull(final Entity entity, final Class<T> componentType) {
+        if (!this.entities.isAlive(entity)) {
+            return null;
+        }
+
+        final var archetype = this.entityArchetypes[entity.index()];
+        final var column = archetype.columnOf(componentType);
+        if (column < 0) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked") T component = (T) archetype.get(this.entitySlots[entity.index()], column);
+        return component;
+    }
+
+    @Override
+    public long currentTick() {
+        return this.clock.current();
+    }
+
+    @Override
+    public long advanceTick() {
+        return this.clock.advance();
+    }
+
+    @Override
+    public <T extends Component> long getChangedTick(final Entity entity, final Class<T> componentType) {
+        final var component = getComponentOrNull(entity, componentType);
+        return component == null ? ChangeTicks.NEVER : this.changeTicks.get(entity, component);
+    }
+
+    @Override
+    public <T extends Component> Optional<T> removeComponent(final Entity entity, final Class<T> componentType) {
+        if (!this.entities.isAlive(entity)) {
+            return Optional.empty();
+        }
+
+        final var index = entity.index();
+        final var source = this.entityArchetypes[index];
+        final var sourceSlot = this.entitySlots[index];
+        final var column = source.columnOf(componentType);
+        if (column < 0) {
+            return Optional.empty();
+        }
+
+        @SuppressWarnings("unchecked") T component = (T) source.get(sourceSlot, column);
+        final var removedType = source.columnType(column);
+        moveEntity(entity, source, sourceSlot, getRemoveTarget(source, removedType));
+        this.queries.onComponentRemoved(entity, removedType);
+        this.indexes.onComponentRemoved(entity, component);
+        this.events.componentRemoved(entity, removedType);
+        return Optional.ofNullable(component);
+    }
+
+    @Override
+    public void addTag(final Entity entity, final Tag tag) {
+        if (this.entities.isAlive(entity)) {
+            this.tags.add(entity, tag);
+        }
+    }
+
+    @Override
+    public void removeTag(final Entity entity, final Tag tag) {
+        if (this.entities.isAlive(entity)) {
+            this.tags.remove(entity, tag);
+        }
+    }
+
+    @Override
+    public boolean hasTag(final Entity entity, final Tag tag) {
+        return this.entities.isAlive(entity) && this.tags.has(entity, tag);
+    }
+
+    @Override
+    public void setTagged(final Tag tag, final BitSet entityIndices) {
+        this.tags.set(tag, entityIndices);
+    }
+
+    @Override
+    public BitSet getTagged(final TagFilter filter) {
+        return this.tags.select(filter);
+    }
+
+    @Override
+    public void forEachTagged(final TagFilter filter, final Consumer<? super Entity> consumer) {
+        final var selected = this.tags.select(filter);
+        for (var index = selected.nextSetBit(0); index >= 0; index = selected.nextSetBit(index + 1)) {
+            consumer.accept(this.entities.entityAt(index));
+        }
+    }
+
+    @Override
+    public <T extends Component> Set<Entity> getEntitiesWithComponent(final Class<T> componentType) {
+        final var set = new HashSet<Entity>();
+        for (final var archetype : getArchetypesWithComponent(componentType)) {
+            for (final var chunk : archetype.chunks()) {
+                final var entities = chunk.entities();
+                for (var row = 0; row < chunk.size(); row++) {
+                    set.add(entities[row]);
+                }
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public <T extends Component> void forEachComponent(final Class<T> componentType,
+                                                       final BiConsumer<Entity, ? super T> consumer) {
+        for (final var archetype : getArchetypesWithComponent(componentType)) {
+            final var column = archetype.columnOf(componentType);
+            for (final var chunk : archetype.chunks()) {
+                final var entities = chunk.entities();
+                final var components = chunk.column(column);
+                for (var row = 0; row < chunk.size(); row++) {
+                    @SuppressWarnings("unchecked") T component = (T) components[row];
+                    consumer.accept(entities[row], component);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks a query result archetype by archetype: the columns of each archetype matching the query are resolved once,
+     * and the components then read straight out of each chunk's column arrays. Slots are the rows of every matching
+     * chunk in turn, so a range of slots is a run of rows of one or more chunks.
+     */
+    private QueryStorage.Walk walk(final QueryResult result,
+                                   final Class<? extends Component> typeA,
+                                   final Class<? extends Component> typeB,
+                                   final Class<? extends Component> typeC) {
+        final var query = result.query();
+        final var chunks = new ArrayList<Chunk>();
+        final var columns = new ArrayList<int[]>();
+        for (final var archetype : getArchetypesWithComponent(query.with().iterator().next())) {
+            if (!matches(archetype, query)) {
+                continue;
+            }
+            final var archetypeColumns = new int[] {
+                typeA == null ? -1 : archetype.columnOf(typeA),
+                typeB == null ? -1 : archetype.columnOf(typeB),
+                typeC == null ? -1 : archetype.columnOf(typeC)
+            };
+            for (final var chunk : archetype.chunks()) {
+                if (chunk.size() > 0) {
+                    chunks.add(chunk);
+                    columns.add(archetypeColumns);
+                }
+            }
+        }
+
+        /* Step 1: lay the chunks' rows end to end, recording the first slot of each */
+        final var starts = new int[chunks.size()];
+        var size = 0;
+        for (var i = 0; i < chunks.size(); i++) {
+            starts[i] = size;
+            size += chunks.get(i).size();
+        }
+
+        /* Step 2: walk a range of slots from the chunk holding its first, row by row, chunk by chunk */
+        final var slotCount = size;
+        return new QueryStorage.Walk() {
+
+            @Override
+            public int size() {
+                return slotCount;
+            }
+
+            @Override
+            public void forEach(final int from,
+                                final int to,
+                                final ComponentTriConsumer<Component, Component, Component> consumer) {
+                final var first = Arrays.binarySearch(starts, from);
+                var chunkIndex = first >= 0 ? first : -first - 2;
+                var slot = from;
+                while (slot < to) {
+                    final var chunk = chunks.get(chunkIndex);
+                    final var chunkColumns = columns.get(chunkIndex);
+                    final var entities = chunk.entities();
+                    final var a = chunkColumns[0] < 0 ? null : chunk.column(chunkColumns[0]);
+                    final var b = chunkColumns[1] < 0 ? null : chunk.column(chunkColumns[1]);
+                    final var c = chunkColumns[2] < 0 ? null : chunk.column(chunkColumns[2]);
+                    final var start = starts[chunkIndex];
+                    final var end = Math.min(to - start, chunk.size());
+                    for (var row = slot - start; row < end; row++) {
+                        consumer.accept(entities[row],
+                            a == null ? null : a[row],
+                            b == null ? null : b[row],
+                            c == null ? null : c[row]);
+                    }
+                    slot = start + end;
+                    chunkIndex++;
+                }
+            }
+        };
+    }
+
+    private static boolean matches(final Archetype archetype, final Query query) {
+        for (final var type : query.with()) {
+            if (archetype.columnOf(type) < 0) {
+                return false;
+            }
+        }
+        for (final var type : query.without()) {
+            if (archetype.columnOf(type) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public QueryResult query(final Query query) {
+        return this.queries.get(query);
+    }
+
+    @Override
+    public <T extends Component> void registerPool(final ComponentPool<T> pool) {
+        this.pools.register(pool);
+    }
+
+    @Override
+    public <T extends Component> void registerIndex(final EntityIndex<T, ?> index) {
+        forEachComponent(index.componentType(), index::put);
+        this.indexes.register(index);
+    }
+
+    @Override
+    public void registerSnapshotExtension(final SnapshotExtension<?> extension) {
+        this.snapshots.register(extension);
+    }
+
+    @Override
+    public WorldSnapshot snapshot(final WorldSnapshot previous) {
+        return this.snapshots.capture(previous);
+    }
+
+    @Override
+    public void restore(final WorldSnapshot snapshot) {
+        this.snapshots.restore(snapshot);
+    }
+
+    @Override
+    public void recycle(final WorldSnapshot snapshot) {
+        this.snapshots.recycle(snapshot);
+    }
+
+    @Override
+    public MemoryFootprint getFootprint() {
+        final var footprint = MemoryFootprint.builder()
+            .entities(this.entities.size(), this.entities.indexCapacity())
+            .entityOverhead(this.entities.estimateBytes()
+                + this.tags.estimateBytes()
+                + ObjectSizes.referenceArray(this.entityArchetypes.length)
+                + ObjectSizes.primitiveArray(this.entitySlots.length, Integer.BYTES));
+
+        final var types = new HashSet<Class<? extends Component>>();
+        for (final var archetype : this.archetypes.values()) {
+            /*
+             * Every row of every chunk is allocated, whether or not it is occupied: a chunk's entity array counts
+             * towards per-entity bookkeeping, and each of its columns towards the column's type.
+             */
+            final var chunks = archetype.chunks();
+            final var capacity = chunks.size() * this.chunkCapacity;
+            footprint.entityOverhead(chunks.size() * (ObjectSizes.instance(Chunk.class)
+                + ObjectSizes.referenceArray(this.chunkCapacity)
+                + ObjectSizes.referenceArray(archetype.columnCount())));
+
+            for (var column = 0; column < archetype.columnCount(); column++) {
+                final var type = archetype.columnType(column);
+                types.add(type);
+                footprint.storage(type, archetype.size(), capacity,
+                    chunks.size() * ObjectSizes.referenceArray(this.chunkCapacity));
+                for (final var chunk : chunks) {
+                    final var components = chunk.column(column);
+                    for (var row = 0; row < chunk.size(); row++) {
+                        footprint.retain(components[row]);
+                    }
+                }
+            }
+        }
+        for (final var type : types) {
+            footprint.storage(type, 0, 0, this.changeTicks.estimateBytes(type));
+        }
+        return footprint.build();
+    }
+
+    @Override
+    public CommandBuffer getCommandBuffer() {
+        return this.commandBuffer;
+    }
+
+    @Override
+    public EntityEvents getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Moves the entity from its slot in the source archetype into a new slot of the target archetype, copying across
+     * every component whose type the target archetype shares. Returns the entity's new slot.
+     */
+    private int moveEntity(final Entity entity, final Archetype source, final int sourceSlot, final Archetype target) {
+        final var slot = target.add(entity);
+        for (var column = 0; column < source.columnCount(); column++) {
+            final var targetColumn = target.exactColumnOf(source.columnType(column));
+            if (targetColumn >= 0) {
+                target.set(slot, targetColumn, source.get(sourceSlot, column));
+            }
+        }
+
+        removeFromArchetype(source, sourceSlot);
+        this.entityArchetypes[entity.index()] = target;
+        this.entitySlots[entity.index()] = slot;
+        return slot;
+    }
+
+    /**
+     * Removes the entity in the given slot from the archetype, fixing up the location of whichever entity the archetype
+     * moved into the vacated slot.
+     */
+    private void removeFromArchetype(final Archetype archetype, final int slot) {
+        final var moved = archetype.remove(slot);
+        if (moved != null) {
+            this.entitySlots[moved.index()] = slot;
+        }
+    }
+
+    private static boolean hasExactTypes(final Archetype archetype, final Component[] components) {
+        if (archetype.columnCount() != components.length) {
+            return false;
+        }
+        for (final var component : components) {
+            if (archetype.exactColumnOf(component.getClass()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Class<? extends Component>> typesOf(final Component[] components) {
+        final var types = new HashSet<Class<? extends Component>>();
+        for (final var component : components) {
+            types.add(component.getClass());
+        }
+        return types;
+    }
+
+    private void ensureLocationCapacity(final int capacity) {
+        if (capacity <= this.entitySlots.length) {
+            return;
+        }
+        final var newCapacity = Math.max(capacity, this.entitySlots.length * 2);
+        this.entityArchetypes = Arrays.copyOf(this.entityArchetypes, newCapacity);
+        this.entitySlots = Arrays.copyOf(this.entitySlots, newCapacity);
+    }
+
+    /**
+     * Returns the archetype reached by adding the given type to the source archetype, creating it if necessary. The
+     * result is cached on the source archetype, so that repeated transitions (e.g. every newly spawned entity receiving
+     * a Transform) do not recompute the target's type set.
+     */
+    private Archetype getAddTarget(final Archetype source, final Class<? extends Component> type) {
+        final var cached = source.getAddEdge(type);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var types = new HashSet<>(source.types());
+        types.add(type);
+        final var target = getOrCreateArchetype(types);
+        source.putAddEdge(type, target);
+        return target;
+    }
+
+    /**
+     * Returns the archetype reached by removing the given type from the source archetype, creating it if necessary. As
+     * with getAddTarget, the result is cached on the source archetype.
+     */
+    private Archetype getRemoveTarget(final Archetype source, final Class<? extends Component> type) {
+        final var cached = source.getRemoveEdge(type);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var types = new HashSet<>(source.types());
+        types.remove(type);
+        final var target = getOrCreateArchetype(types);
+        source.putRemoveEdge(type, target);
+        return target;
+    }
+
+    private Archetype getOrCreateArchetype(final Set<Class<? extends Component>> types) {
+        final var existing = this.archetypes.get(types);
+        if (existing != null) {
+            return existing;
+        }
+
+        final var archetype = new Archetype(types, this.chunkCapacity);
+        this.archetypes.put(archetype.types(), archetype);
+
+        /*
+         * Keep the per-type archetype lists up to date, so that queries never need to rescan all archetypes.
+         */
+        for (final var entry : this.archetypesByComponentType.entrySet()) {
+            if (archetype.columnOf(entry.getKey()) >= 0) {
+                entry.getValue().add(archetype);
+            }
+        }
+        return archetype;
+    }
+
+    /**
+     * Returns every archetype with a column assignable to the given type. The list is built on the first lookup of the
+     * type -- which may be made by any reading thread, so it is only published once complete -- and is from then on
+     * kept up to date by getOrCreateArchetype.
+     */
+    private List<Archetype> getArchetypesWithComponent(final Class<?> componentType) {
+        final var cached = this.archetypesByComponentType.get(componentType);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var matching = new ArrayList<Archetype>();
+        for (final var archetype : this.archetypes.values()) {
+            if (archetype.columnOf(componentType) >= 0) {
+                matching.add(archetype);
+            }
+        }
+        final var raced = this.archetypesByComponentType.putIfAbsent(componentType, matching);
+        return raced == null ? matching : raced;
+    }
+
+    @Override
+    public String toString() {
+        return "ArchetypeEntityManager["
+            + "entities=" + this.entities.size() + ", "
+            + "archetypes=" + this.archetypes.size() + ", "
+            + "chunkCapacity=" + this.chunkCapacity
+            + ']';
+    }
+}
@@ -0,0 +1,84 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tracked;
+
+import java.util.Arrays;
+
+/**
+ * The tick of its manager's {@link ChangeClock} at which each component of an {@link EntityManager} was last put onto its entity, kept as one
+ * array per component type (indexed by ComponentType id) of ticks indexed by {@link Entity#index()}. Ticks are only
+ * meaningful while the entity actually has a component of the type: a stale tick left behind by a removed component or
+ * destroyed entity is overwritten when a component of that type is next put onto that index.
+ * <p>
+ * This class performs no locking; callers are responsible for guarding it.
+ */
+final class ChangeTicks {
+
+    static final long NEVER = ChangeClock.NEVER;
+
+    private final ChangeClock clock;
+    private long[][] ticksByTypeId;
+
+    ChangeTicks(final ChangeClock clock) {
+        this.clock = clock;
+        this.ticksByTypeId = new long[0][];
+    }
+
+    /**
+     * Stamps the given component, which has just been put onto the given entity, as changed at the current tick, and
+     * attaches it to the clock if it is Tracked.
+     */
+    void mark(final Entity entity, final Component component) {
+        if (component instanceof Tracked tracked) {
+            tracked.attach(this.clock);
+        }
+        final var id = ComponentType.of(component.getClass()).id();
+        if (id >= this.ticksByTypeId.length) {
+            this.ticksByTypeId = Arrays.copyOf(this.ticksByTypeId, Math.max(id + 1, ComponentType.count()));
+        }
+
+        var ticks = this.ticksByTypeId[id];
+        final var index = entity.index();
+        if (ticks == null || index >= ticks.length) {
+            ticks = ticks == null
+                ? new long[Math.max(index + 1, 64)]
+                : Arrays.copyOf(ticks, Math.max(index + 1, ticks.length * 2));
+            this.ticksByTypeId[id] = ticks;
+        }
+        ticks[index] = this.clock.current();
+    }
+
+    /**
+     * Returns the estimated heap size of the ticks kept for the given (concrete) type.
+     */
+    long estimateBytes(final Class<?> componentType) {
+        final var id = ComponentType.of(componentType).id();
+        if (id >= this.ticksByTypeId.length || this.ticksByTypeId[id] == null) {
+            return 0;
+        }
+        return ObjectSizes.primitiveArray(this.ticksByTypeId[id].length, Long.BYTES);
+    }
+
+    /**
+     * Returns the tick at which the given component, held by the given entity, last changed: the later of when it was
+     * put onto the entity and, for a {@link Tracked} component, when it was last changed in place.
+     */
+    long get(final Entity entity, final Component component) {
+        final var id = ComponentType.of(component.getClass()).id();
+        final var index = entity.index();
+
+        var tick = NEVER;
+        if (id < this.ticksByTypeId.length) {
+            final var ticks = this.ticksByTypeId[id];
+            if (ticks != null && index < ticks.length) {
+                tick = ticks[index];
+            }
+        }
+        if (component instanceof Tracked tracked) {
+            tick = Math.max(tick, tracked.getChangedTick());
+        }
+        return tick;
+    }
+}
@@ -0,0 +1,81 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+/**
+ * A fixed-capacity block of entities belonging to a single {@link Archetype}. Components are stored column-wise: each
+ * component type of the archetype owns one array, and the component for the entity at row N of this chunk is found at
+ * index N of every column. Rows [0, size) are always occupied, which means iterating a column is a linear scan over a
+ * contiguous array.
+ */
+final class Chunk {
+
+    private final Entity[] entities;
+    private final Component[][] columns;
+
+    private int size;
+
+    Chunk(final int columnCount, final int capacity) {
+        this.entities = new Entity[capacity];
+        this.columns = new Component[columnCount][capacity];
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int capacity() {
+        return this.entities.length;
+    }
+
+    boolean isFull() {
+        return this.size == this.entities.length;
+    }
+
+    Entity entityAt(final int row) {
+        return this.entities[row];
+    }
+
+    void setEntityAt(final int row, final Entity entity) {
+        this.entities[row] = entity;
+    }
+
+    Entity[] entities() {
+        return this.entities;
+    }
+
+    Component[] column(final int column) {
+        return this.columns[column];
+    }
+
+    Component get(final int column, final int row) {
+        return this.columns[column][row];
+    }
+
+    void set(final int column, final int row, final Component component) {
+        this.columns[column][row] = component;
+    }
+
+    /**
+     * Appends the given entity to the end of this chunk, returning its row. The caller is responsible for filling in
+     * the entity's components.
+     */
+    int append(final Entity entity) {
+        final var row = this.size++;
+        this.entities[row] = entity;
+        return row;
+    }
+
+    /**
+     * Removes the last row of this chunk, returning the entity that occupied it.
+     */
+    Entity removeLast() {
+        final var row = --this.size;
+        final var entity = this.entities[row];
+        this.entities[row] = null;
+        for (final var column : this.columns) {
+            column[row] = null;
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,181 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A record of structural changes (spawning and destroying entities, adding and removing components) to be applied to
+ * an {@link EntityManager} later, in one batch, by {@link #playback(EntityManager)}. Recording a change rather than
+ * applying it immediately makes it safe to request changes while iterating a {@link QueryResult} or calling
+ * forEachComponent -- e.g. from within a Script -- and lets many changes be applied without synchronizing on each one.
+ * <p>
+ * Commands may be recorded from any number of threads at once. Each thread records into its own buffer, so recording
+ * takes no locks and, once a thread's buffer has grown to its working size, allocates nothing (beyond any varargs
+ * arrays). Commands recorded by a single thread are played back in the order they were recorded; buffers of different
+ * threads are played back one after another, in the order in which the threads first recorded a command. A thread's
+ * buffer is dropped at the first playback after the thread has died, so short-lived recording threads are not kept.
+ * <p>
+ * Playback must not overlap with recording: it is meant to run at a sync point, once all threads that may record
+ * commands have finished (e.g. after a system's update has returned).
+ */
+public final class CommandBuffer {
+
+    private final List<Recorder> recorders;
+    private final ThreadLocal<Recorder> recorder;
+
+    public CommandBuffer() {
+        this.recorders = new CopyOnWriteArrayList<>();
+        this.recorder = ThreadLocal.withInitial(() -> {
+            final var recorder = new Recorder(Thread.currentThread());
+            this.recorders.add(recorder);
+            return recorder;
+        });
+    }
+
+    /**
+     * Records the creation of a new entity with the given name (which may be null) and components.
+     */
+    public void spawn(final String name, final Component... components) {
+        this.recorder.get().record(Command.SPAWN, name, components);
+    }
+
+    /**
+     * Records the destruction of the given entity.
+     */
+    public void destroy(final Entity entity) {
+        this.recorder.get().record(Command.DESTROY, entity, null);
+    }
+
+    /**
+     * Records the addition (or replacement) of a component on the given entity.
+     */
+    public <T extends Component> void putComponent(final Entity entity, final T component) {
+        this.recorder.get().record(Command.PUT_COMPONENT, entity, component);
+    }
+
+    /**
+     * Records the removal of the given entity's component of the given type.
+     */
+    public <T extends Component> void removeComponent(final Entity entity, final Class<T> componentType) {
+        this.recorder.get().record(Command.REMOVE_COMPONENT, entity, componentType);
+    }
+
+    /**
+     * Returns the number of commands recorded since the last playback.
+     */
+    public int size() {
+        var size = 0;
+        for (final var recorder : this.recorders) {
+            size += recorder.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Applies every recorded command to the given entity manager, then clears this buffer. Commands which refer to an
+     * entity that is no longer alive by the time they are played back are ignored, as the equivalent direct calls
+     * would be.
+     */
+    public void playback(final EntityManager entityManager) {
+        for (final var recorder : this.recorders) {
+            recorder.playback(entityManager);
+        }
+        this.recorders.removeIf(Recorder::isAbandoned);
+    }
+
+    @Override
+    public String toString() {
+        return "CommandBuffer["
+            + "size=" + size() + ", "
+            + "threads=" + this.recorders.size()
+            + ']';
+    }
+
+    private enum Command {
+        SPAWN,
+        DESTROY,
+        PUT_COMPONENT,
+        REMOVE_COMPONENT,
+    }
+
+    /**
+     * The commands recorded by a single thread, stored column-wise so that recording a command does not allocate. Only
+     * the owning thread records; the size is volatile so that other threads may read it (see CommandBuffer::size).
+     */
+    private static final class Recorder {
+
+        private static final int DEFAULT_CAPACITY = 64;
+
+        private final WeakReference<Thread> owner;
+        private Command[] commands;
+        private Object[] targets;
+        private Object[] arguments;
+        private volatile int size;
+
+        private Recorder(final Thread owner) {
+            this.owner = new WeakReference<>(owner);
+            this.commands = new Command[DEFAULT_CAPACITY];
+            this.targets = new Object[DEFAULT_CAPACITY];
+            this.arguments = new Object[DEFAULT_CAPACITY];
+        }
+
+        private void record(final Command command, final Object target, final Object argument) {
+            if (this.size == this.commands.length) {
+                final var newCapacity = this.commands.length * 2;
+                this.commands = Arrays.copyOf(this.commands, newCapacity);
+                this.targets = Arrays.copyOf(this.targets, newCapacity);
+                this.arguments = Arrays.copyOf(this.arguments, newCapacity);
+            }
+            this.commands[this.size] = command;
+            this.targets[this.size] = target;
+            this.arguments[this.size] = argument;
+            this.size++;
+        }
+
+        /**
+         * Returns true if this recorder is empty and its thread has died, and so can never record again.
+         */
+        private boolean isAbandoned() {
+            final var thread = this.owner.get();
+            return this.size == 0 && (thread == null || !thread.isAlive());
+        }
+
+        private void playback(final EntityManager entityManager) {
+            /*
+             * Playing back a command may itself record new commands on this thread (e.g. a component whose addition
+             * triggers further changes), so re-read the size on every iteration.
+             */
+            for (var i = 0; i < this.size; i++) {
+                final var target = this.targets[i];
+                final var argument = this.arguments[i];
+                switch (this.commands[i]) {
+                    case SPAWN -> {
+                        final var entity = entityManager.newEntity((String) target);
+                        for (final var component : (Component[]) argument) {
+                            entityManager.putComponent(entity, component);
+                        }
+                    }
+                    case DESTROY -> entityManager.destroyEntity((Entity) target);
+                    case PUT_COMPONENT -> entityManager.putComponent((Entity) target, (Component) argument);
+                    case REMOVE_COMPONENT -> {
+                        @SuppressWarnings("unchecked") final var type = (Class<? extends Component>) argument;
+                        entityManager.removeComponent((Entity) target, type);
+                    }
+                }
+            }
+
+            Arrays.fill(this.commands, 0, this.size, null);
+            Arrays.fill(this.targets, 0, this.size, null);
+            Arrays.fill(this.arguments, 0, this.size, null);
+            this.size = 0;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+/**
+ * Receives an entity and one of its components, during QueryResult::forEach.
+ */
+@FunctionalInterface
+public interface ComponentConsumer<A extends Component> {
+
+    void accept(Entity entity, A a);
+}
@@ -0,0 +1,36 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+/**
+ * The estimated heap usage of the components of one concrete type, as part of a {@link MemoryFootprint}.
+ *
+ * @param count         the number of components of the type held
+ * @param capacity      the number of slots the manager has allocated for them (hash table slots, array or chunk rows)
+ * @param retainedBytes the size of the components themselves, with the objects they own (see MemoryFootprint)
+ * @param overheadBytes the size of the manager's storage for them: maps, arrays, and change ticks
+ */
+public record ComponentFootprint(Class<? extends Component> type,
+                                 int count,
+                                 int capacity,
+                                 long retainedBytes,
+                                 long overheadBytes) {
+
+    /**
+     * Returns the fraction of the allocated slots which are unused, between 0 and 1.
+     */
+    public double fragmentation() {
+        return this.capacity == 0 ? 0 : 1 - (double) this.count / this.capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentFootprint["
+            + "type=" + this.type.getSimpleName() + ", "
+            + "count=" + this.count + ", "
+            + "capacity=" + this.capacity + ", "
+            + "retainedBytes=" + this.retainedBytes + ", "
+            + "overheadBytes=" + this.overheadBytes
+            + ']';
+    }
+}
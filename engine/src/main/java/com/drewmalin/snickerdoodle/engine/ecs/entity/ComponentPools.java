@@ -0,0 +1,50 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentPool;
+
+import java.util.Arrays;
+
+/**
+ * The {@link ComponentPool}s registered with an {@link EntityManager}, indexed by the ComponentType id of each pool's
+ * component type. The manager hands every component of a destroyed entity to release, which returns it to the pool for
+ * its exact type, if there is one.
+ * <p>
+ * This class performs no locking; callers are responsible for guarding it.
+ */
+final class ComponentPools {
+
+    private ComponentPool<?>[] poolsByTypeId;
+    private int count;
+
+    ComponentPools() {
+        this.poolsByTypeId = new ComponentPool<?>[0];
+    }
+
+    void register(final ComponentPool<?> pool) {
+        final var id = ComponentType.of(pool.type()).id();
+        if (id >= this.poolsByTypeId.length) {
+            this.poolsByTypeId = Arrays.copyOf(this.poolsByTypeId, Math.max(id + 1, ComponentType.count()));
+        }
+        if (this.poolsByTypeId[id] == null) {
+            this.count++;
+        }
+        this.poolsByTypeId[id] = pool;
+    }
+
+    boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    void release(final Component component) {
+        if (component == null || this.count == 0) {
+            return;
+        }
+
+        final var id = ComponentType.of(component.getClass()).id();
+        if (id < this.poolsByTypeId.length && this.poolsByTypeId[id] != null) {
+            @SuppressWarnings("unchecked") final var pool = (ComponentPool<Component>) this.poolsByTypeId[id];
+            pool.release(component);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+/**
+ * Receives an entity and three of its components, during QueryResult::forEach.
+ */
+@FunctionalInterface
+public interface ComponentTriConsumer<A extends Component, B extends Component, C extends Component> {
+
+    void accept(Entity entity, A a, B b, C c);
+}
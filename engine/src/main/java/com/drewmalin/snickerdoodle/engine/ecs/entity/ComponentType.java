@@ -0,0 +1,149 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A registered component class. Every class which is stored or looked up through an {@link EntityManager} is assigned
+ * a dense, process-wide id the first time it is seen, along with a precomputed bitset of the ids of all of its
+ * component supertypes (superclasses and interfaces, itself included). This turns "is a component of type X assignable
+ * to type Y?" into a single bit test, and lets each type keep a list of every registered type assignable to it -- so a
+ * polymorphic lookup such as getComponent(entity, Material.class) only visits the types which can actually match,
+ * rather than every type ever registered.
+ * <p>
+ * Registration is thread-safe; lookups of an already-registered class do not lock.
+ */
+final class ComponentType {
+
+    private static final Object REGISTRY_LOCK = new Object();
+    private static final Map<Class<?>, ComponentType> REGISTRY = new HashMap<>();
+    private static final ClassValue<ComponentType> CACHE = new ClassValue<>() {
+        @Override
+        protected ComponentType computeValue(final Class<?> type) {
+            return register(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final int id;
+    private final List<ComponentType> assignableTypes;
+
+    private volatile long[] supertypes;
+
+    private ComponentType(final Class<?> type, final int id) {
+        this.type = type;
+        this.id = id;
+        this.assignableTypes = new CopyOnWriteArrayList<>();
+        this.supertypes = new long[0];
+    }
+
+    static ComponentType of(final Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Returns the number of component types registered so far. Every registered id is less than this value.
+     */
+    static int count() {
+        synchronized (REGISTRY_LOCK) {
+            return REGISTRY.size();
+        }
+    }
+
+    /**
+     * Returns every component type registered so far.
+     */
+    static List<ComponentType> all() {
+        synchronized (REGISTRY_LOCK) {
+            return List.copyOf(REGISTRY.values());
+        }
+    }
+
+    Class<?> type() {
+        return this.type;
+    }
+
+    int id() {
+        return this.id;
+    }
+
+    /**
+     * Returns true if a component of this type may be used wherever the given type is expected.
+     */
+    boolean isAssignableTo(final ComponentType other) {
+        final var words = this.supertypes;
+        final var word = other.id >>> 6;
+        return word < words.length && (words[word] & (1L << other.id)) != 0;
+    }
+
+    /**
+     * Returns every registered type which is assignable to this type, this type included. The list grows as new types
+     * are registered, and is safe to iterate while that happens.
+     */
+    List<ComponentType> assignableTypes() {
+        return this.assignableTypes;
+    }
+
+    private static ComponentType register(final Class<?> type) {
+        synchronized (REGISTRY_LOCK) {
+            final var existing = REGISTRY.get(type);
+            if (existing != null) {
+                return existing;
+            }
+
+            final var componentType = new ComponentType(type, REGISTRY.size());
+            REGISTRY.put(type, componentType);
+
+            /*
+             * Register every component supertype (which may recursively register their supertypes), record each in
+             * this type's supertype bitset, and let each supertype know that this type is assignable to it.
+             */
+            final var supertypes = new ArrayList<ComponentType>();
+            supertypes.add(componentType);
+            for (final var supertype : componentSupertypesOf(type)) {
+                supertypes.add(register(supertype));
+            }
+
+            final var words = new long[(REGISTRY.size() >>> 6) + 1];
+            for (final var supertype : supertypes) {
+                words[supertype.id >>> 6] |= 1L << supertype.id;
+                supertype.assignableTypes.add(componentType);
+            }
+            componentType.supertypes = words;
+            return componentType;
+        }
+    }
+
+    private static List<Class<?>> componentSupertypesOf(final Class<?> type) {
+        final var supertypes = new ArrayList<Class<?>>();
+        collectComponentSupertypes(type, supertypes);
+        return supertypes;
+    }
+
+    private static void collectComponentSupertypes(final Class<?> type, final List<Class<?>> supertypes) {
+        final var superclass = type.getSuperclass();
+        if (superclass != null && Component.class.isAssignableFrom(superclass) && !supertypes.contains(superclass)) {
+            supertypes.add(superclass);
+            collectComponentSupertypes(superclass, supertypes);
+        }
+        for (final var anInterface : type.getInterfaces()) {
+            if (Component.class.isAssignableFrom(anInterface) && !supertypes.contains(anInterface)) {
+                supertypes.add(anInterface);
+                collectComponentSupertypes(anInterface, supertypes);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentType["
+            + "type=" + this.type.getName() + ", "
+            + "id=" + this.id
+            + ']';
+    }
+}
@@ -0,0 +1,156 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tracked;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * As {@link ChangeTicks}, but safe to use from many threads at once: each component type's ticks are kept in an
+ * {@link AtomicLongArray}, so stamping and reading a tick take no locks. The only locks are taken when a type is seen
+ * for the first time, and when a type's array must grow to fit a new entity index -- and then only on that type, and
+ * only by the writers which must grow it.
+ */
+final class ConcurrentChangeTicks {
+
+    private final Object typesLock = new Object();
+    private final ChangeClock clock;
+
+    /*
+     * Every type's ticks, indexed by ComponentType id. Null where no component of that type has been stamped. Only
+     * published once completely filled in.
+     */
+    private volatile TypeTicks[] ticksByTypeId;
+
+    ConcurrentChangeTicks(final ChangeClock clock) {
+        this.clock = clock;
+        this.ticksByTypeId = new TypeTicks[0];
+    }
+
+    /**
+     * Stamps the given component, which has just been put onto the given entity, as changed at the current tick, and
+     * attaches it to the clock if it is Tracked.
+     */
+    void mark(final Entity entity, final Component component) {
+        if (component instanceof Tracked tracked) {
+            tracked.attach(this.clock);
+        }
+        ticksOf(ComponentType.of(component.getClass()).id()).set(entity.index(), this.clock.current());
+    }
+
+    /**
+     * Returns the tick at which the given component, held by the given entity, last changed: the later of when it was
+     * put onto the entity and, for a {@link Tracked} component, when it was last changed in place.
+     */
+    long get(final Entity entity, final Component component) {
+        final var id = ComponentType.of(component.getClass()).id();
+        final var byTypeId = this.ticksByTypeId;
+
+        var tick = ChangeTicks.NEVER;
+        if (id < byTypeId.length && byTypeId[id] != null) {
+            tick = byTypeId[id].get(entity.index());
+        }
+        if (component instanceof Tracked tracked) {
+            tick = Math.max(tick, tracked.getChangedTick());
+        }
+        return tick;
+    }
+
+    /**
+     * Returns the estimated heap size of the ticks kept for the given (concrete) type.
+     */
+    long estimateBytes(final Class<?> componentType) {
+        final var id = ComponentType.of(componentType).id();
+        final var byTypeId = this.ticksByTypeId;
+        if (id >= byTypeId.length || byTypeId[id] == null) {
+            return 0;
+        }
+        return ObjectSizes.instance(AtomicLongArray.class)
+            + ObjectSizes.primitiveArray(byTypeId[id].ticks.length(), Long.BYTES);
+    }
+
+    private TypeTicks ticksOf(final int id) {
+        final var byTypeId = this.ticksByTypeId;
+        if (id < byTypeId.length && byTypeId[id] != null) {
+            return byTypeId[id];
+        }
+
+        synchronized (this.typesLock) {
+            var current = this.ticksByTypeId;
+            if (id < current.length && current[id] != null) {
+                return current[id];
+            }
+            current = Arrays.copyOf(current, Math.max(current.length, Math.max(id + 1, ComponentType.count())));
+            final var ticks = new TypeTicks();
+            current[id] = ticks;
+            this.ticksByTypeId = current;
+            return ticks;
+        }
+    }
+
+    /**
+     * The ticks of one component type, indexed by Entity::index. Stores and reads take no locks; only growing the array
+     * does. A growth publishes the new array before copying the old one into it, and keeps the old one readable until
+     * the copy is done:
+     * <ul>
+     *     <li>a store which lands in the old array after its slot was copied sees that the array has since been
+     *     replaced, and is repeated on the new one;</li>
+     *     <li>a read which finds the new array also reads the old one, if it is still being copied, and takes the later
+     *     tick -- ticks only ever increase, so the later of the two is the latest.</li>
+     * </ul>
+     */
+    private static final class TypeTicks {
+
+        private volatile AtomicLongArray ticks;
+        private volatile AtomicLongArray copying;
+
+        private TypeTicks() {
+            this.ticks = new AtomicLongArray(64);
+        }
+
+        long get(final int index) {
+            final var current = this.ticks;
+            var tick = index < current.length() ? current.get(index) : ChangeTicks.NEVER;
+            final var old = this.copying;
+            if (old != null && index < old.length()) {
+                tick = Math.max(tick, old.get(index));
+            }
+            return tick;
+        }
+
+        void set(final int index, final long tick) {
+            var current = this.ticks;
+            while (true) {
+                if (index >= current.length()) {
+                    current = grow(index + 1);
+                }
+                current.set(index, tick);
+                final var latest = this.ticks;
+                if (latest == current) {
+                    return;
+                }
+                current = latest;
+            }
+        }
+
+        private synchronized AtomicLongArray grow(final int length) {
+            final var current = this.ticks;
+            if (length <= current.length()) {
+                return current;
+            }
+            final var grown = new AtomicLongArray(Math.max(length, current.length() * 2));
+            this.copying = current;
+            this.ticks = grown;
+            for (var i = 0; i < current.length(); i++) {
+                final var tick = current.get(i);
+                if (tick != ChangeTicks.NEVER) {
+                    grown.accumulateAndGet(i, tick, Math::max);
+                }
+            }
+            this.copying = null;
+            return grown;
+        }
+    }
+}
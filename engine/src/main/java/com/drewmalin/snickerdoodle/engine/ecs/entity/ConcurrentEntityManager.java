@@ -0,0 +1,533 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentPool;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tag;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * An {@link EntityManager} which may be read from many threads at once without contention. Each component type is
+ * stored in its own {@link ConcurrentHashMap}, and the set of live entities (and their names) is kept in concurrent
+ * maps too, so getComponent, isAlive, getName, getEntitiesWithComponent and forEachComponent take no locks at all.
+ * <p>
+ * Writes are striped: putComponent and removeComponent on different component types (or on different entities of the
+ * same type) proceed in parallel, locking only the affected hash bin; their change ticks are stamped, and read back by
+ * getChangedTick, without locking (see {@link ConcurrentChangeTicks}). Allocating and freeing entity handles, and
+ * keeping the cached query results up to date, are serialized -- these are structural changes, which are expected to
+ * be rare relative to reads, and are best deferred to the command buffer when made from worker threads. Tags are kept
+ * under the same lock as entity handles; bulk updates through setTagged take it once.
+ * <p>
+ * Iteration (forEachComponent, and the collections returned by getEntitiesWithComponent) is weakly consistent: it
+ * reflects the state of the manager at some point during the iteration, and never throws
+ * ConcurrentModificationException. A {@link QueryResult} is only safe to read concurrently while no structural changes
+ * are being made.
+ */
+public class ConcurrentEntityManager
+    implements EntityManager {
+
+    private final EntityAllocator entities;
+    private final Set<Entity> liveEntities;
+    private final Map<Entity, String> names;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Entity, Component>> entityComponentMaps;
+    private final QueryCache queries;
+    private final ChangeClock clock;
+    private final ConcurrentChangeTicks changeTicks;
+    private final ComponentPools pools;
+    private final Tags tags;
+    private final EntityIndexes indexes;
+    private final CommandBuffer commandBuffer;
+    private final EntityEvents events;
+    private final WorldSnapshots snapshots;
+
+    private final Object entityLock = new Object();
+    private final Object queryLock = new Object();
+
+    public ConcurrentEntityManager() {
+        this.entities = new EntityAllocator();
+        this.liveEntities = ConcurrentHashMap.newKeySet();
+        this.names = new ConcurrentHashMap<>();
+        this.entityComponentMaps = new ConcurrentHashMap<>();
+        this.queries = new QueryCache(this, this::walk);
+        this.clock = new ChangeClock();
+        this.changeTicks = new ConcurrentChangeTicks(this.clock);
+        this.pools = new ComponentPools();
+        this.tags = new Tags();
+        this.indexes = new EntityIndexes(this.clock);
+        this.commandBuffer = new CommandBuffer();
+        this.events = new EntityEvents();
+        this.snapshots = new WorldSnapshots(this, this.entities, this.tags, this.entityLock, this::adopt);
+    }
+
+    @Override
+    public Entity newEntity(final String name) {
+        final Entity entity;
+        synchronized (this.entityLock) {
+            entity = this.entities.allocate(name);
+            this.tags.onEntityCreated(entity);
+        }
+        publish(entity, name);
+        return entity;
+    }
+
+    @Override
+    public List<Entity> newEntities(final String name, final int count, final IntFunction<Component[]> components) {
+        final var created = new ArrayList<Entity>(count);
+        synchronized (this.entityLock) {
+            for (var i = 0; i < count; i++) {
+                final var entity = this.entities.allocate(name);
+                this.tags.onEntityCreated(entity);
+                created.add(entity);
+            }
+        }
+
+        for (var i = 0; i < count; i++) {
+            final var entity = created.get(i);
+            publish(entity, name);
+            for (final var component : components.apply(i)) {
+                putComponent(entity, component);
+            }
+        }
+        return created;
+    }
+
+    private void adopt(final Entity entity) {
+        final String name;
+        synchronized (this.entityLock) {
+            this.tags.onEntityCreated(entity);
+            name = this.entities.getName(entity);
+        }
+        publish(entity, name);
+    }
+
+    private void publish(final Entity entity, final String name) {
+        /*
+         * Publish the name before the entity itself, so that any reader which observes the entity as alive also
+         * observes its name.
+         */
+        if (name != null) {
+            this.names.put(entity, name);
+        }
+        this.liveEntities.add(entity);
+        this.events.entityCreated(entity);
+    }
+
+    @Override
+    public void destroyEntity(final Entity entity) {
+        synchronized (this.entityLock) {
+            if (!this.entities.free(entity)) {
+                return;
+            }
+            this.tags.onEntityDestroyed(entity);
+        }
+
+        this.liveEntities.remove(entity);
+        this.names.remove(entity);
+        for (final var entityComponentMap : this.entityComponentMaps.values()) {
+            final var component = entityComponentMap.remove(entity);
+            if (component != null) {
+                synchronized (this.pools) {
+                    this.pools.release(component);
+                }
+            }
+        }
+        synchronized (this.queryLock) {
+            this.queries.onEntityDestroyed(entity);
+            this.indexes.onEntityDestroyed(entity);
+        }
+        this.events.entityDestroyed(entity);
+    }
+
+    @Override
+    public boolean isAlive(final Entity entity) {
+        return this.liveEntities.contains(entity);
+    }
+
+    @Override
+    public Optional<String> getName(final Entity entity) {
+        return Optional.ofNullable(this.names.get(entity));
+    }
+
+    @Override
+    public Optional<Entity> getEntityByName(final String name) {
+        synchronized (this.entityLock) {
+            return Optional.ofNullable(this.entities.firstNamed(name));
+        }
+    }
+
+    @Override
+    public Set<Entity> getEntitiesByName(final String name) {
+        synchronized (this.entityLock) {
+            return this.entities.allNamed(name);
+        }
+    }
+
+    @Override
+    public <T extends Component> void putComponent(final Entity entity, final T component) {
+        if (!isAlive(entity)) {
+            return;
+        }
+
+        final var entityComponentMap = this.entityComponentMaps.computeIfAbsent(
+            component.getClass(),
+            type -> new ConcurrentHashMap<>()
+        );
+        this.changeTicks.mark(entity, component);
+        if (entityComponentMap.put(entity, component) != null) {
+            synchronized (this.queryLock) {
+                if (isAlive(entity)) {
+                    this.indexes.onComponentPut(entity, component);
+                }
+            }
+            this.events.componentAdded(entity, component.getClass());
+            return;
+        }
+
+        synchronized (this.queryLock) {
+            /*
+             * The entity may have been destroyed by another thread while the component was being stored. If so, undo
+             * the store; otherwise, any concurrent destroyEntity has yet to update the queries, and will do so after
+             * this.
+             */
+            if (!isAlive(entity)) {
+                entityComponentMap.remove(entity, component);
+                return;
+            }
+            this.queries.onComponentAdded(entity, component.getClass());
+            this.indexes.onComponentPut(entity, component);
+        }
+        this.events.componentAdded(entity, component.getClass());
+    }
+
+    @Override
+    public <T extends Component> Optional<T> getComponent(final Entity entity, final Class<T> componentType) {
+        return Optional.ofNullable(getComponentOrNull(entity, componentType));
+    }
+
+    @Override
+    public <T extends Component> T getComponentOrNull(final Entity entity, final Class<T> componentType) {
+        if (!isAlive(entity)) {
+            return null;
+        }
+
+        for (final var type : ComponentType.of(componentType).assignableTypes()) {
+            final var entityComponentMap = this.entityComponentMaps.get(type.type());
+            final var component = entityComponentMap == null ? null : entityComponentMap.get(entity);
+            if (component != null) {
+                @SuppressWarnings("unchecked") T typedComponent = (T) component;
+                return typedComponent;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long currentTick() {
+        return this.clock.current();
+    }
+
+    @Override
+    public long advanceTick() {
+        return this.clock.advance();
+    }
+
+    @Override
+    public <T extends Component> long getChangedTick(final Entity entity, final Class<T> componentType) {
+        final var component = getComponentOrNull(entity, componentType);
+        if (component == null) {
+            return ChangeTicks.NEVER;
+        }
+        return this.changeTicks.get(entity, component);
+    }
+
+    @Override
+    public <T extends Component> Optional<T> removeComponent(final Entity entity, final Class<T> componentType) {
+        if (!isAlive(entity)) {
+            return Optional.empty();
+        }
+
+        for (final var type : ComponentType.of(componentType).assignableTypes()) {
+            final var entityComponentMap = this.entityComponentMaps.get(type.type());
+            final var component = entityComponentMap == null ? null : entityComponentMap.remove(entity);
+            if (component != null) {
+                synchronized (this.queryLock) {
+                    this.queries.onComponentRemoved(entity, component.getClass());
+                    this.indexes.onComponentRemoved(entity, component);
+                }
+                this.events.componentRemoved(entity, component.getClass());
+                @SuppressWarnings("unchecked") T typedComponent = (T) component;
+                return Optional.of(typedComponent);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void addTag(final Entity entity, final Tag tag) {
+        synchronized (this.entityLock) {
+            if (this.entities.isAlive(entity)) {
+                this.tags.add(entity, tag);
+            }
+        }
+    }
+
+    @Override
+    public void removeTag(final Entity entity, final Tag tag) {
+        synchronized (this.entityLock) {
+            if (this.entities.isAlive(entity)) {
+                this.tags.remove(entity, tag);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasTag(final Entity entity, final Tag tag) {
+        synchronized (this.entityLock) {
+            return this.entities.isAlive(entity) && this.tags.has(entity, tag);
+        }
+    }
+
+    @Override
+    public void setTagged(final Tag tag, final BitSet entityIndices) {
+        synchronized (this.entityLock) {
+            this.tags.set(tag, entityIndices);
+        }
+    }
+
+    @Override
+    public BitSet getTagged(final TagFilter filter) {
+        synchronized (this.entityLock) {
+            return this.tags.select(filter);
+        }
+    }
+
+    @Override
+    public void forEachTagged(final TagFilter filter, final Consumer<? super Entity> consumer) {
+        final var selected = getTagged(filter);
+        for (var index = selected.nextSetBit(0); index >= 0; index = selected.nextSetBit(index + 1)) {
+            final Entity entity;
+            synchronized (this.entityLock) {
+                entity = this.entities.entityAt(index);
+            }
+            if (entity != null) {
+                consumer.accept(entity);
+            }
+        }
+    }
+
+    @Override
+    public <T extends Component> Set<Entity> getEntitiesWithComponent(final Class<T> componentType) {
+        final var set = new HashSet<Entity>();
+        for (final var type : ComponentType.of(componentType).assignableTypes()) {
+            final var entityComponentMap = this.entityComponentMaps.get(type.type());
+            if (entityComponentMap != null) {
+                set.addAll(entityComponentMap.keySet());
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public <T extends Component> void forEachComponent(final Class<T> componentType,
+                                                       final BiConsumer<Entity, ? super T> consumer) {
+        final var types = ComponentType.of(componentType).assignableTypes();
+        for (var typeIndex = 0; typeIndex < types.size(); typeIndex++) {
+            final var entityComponentMap = this.entityComponentMaps.get(types.get(typeIndex).type());
+            if (entityComponentMap == null) {
+                continue;
+            }
+            for (final var entityComponent : entityComponentMap.entrySet()) {
+                /*
+                 * An entity may hold components of several types assignable to componentType -- only the first is
+                 * passed to the consumer, matching the behavior of getComponent.
+                 */
+                if (typeIndex > 0 && containedInAny(types, typeIndex, entityComponent.getKey())) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked") T component = (T) entityComponent.getValue();
+                consumer.accept(entityComponent.getKey(), component);
+            }
+        }
+    }
+
+    /**
+     * Walks a query result, resolving once the map of each type which has no subtypes, so that each component then costs
+     * a single lock-free map read. Slots are positions in the result.
+     */
+    private QueryStorage.Walk walk(final QueryResult result,
+                                   final Class<? extends Component> typeA,
+                                   final Class<? extends Component> typeB,
+                                   final Class<? extends Component> typeC) {
+        final var mapA = soleMapOf(typeA);
+        final var mapB = soleMapOf(typeB);
+        final var mapC = soleMapOf(typeC);
+
+        final var entities = result.entities();
+        final var size = result.size();
+        return new QueryStorage.Walk() {
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void forEach(final int from,
+                                final int to,
+                                final ComponentTriConsumer<Component, Component, Component> consumer) {
+                for (var i = from; i < to; i++) {
+                    final var entity = entities[i];
+                    consumer.accept(entity,
+                        componentOf(mapA, typeA, entity),
+                        componentOf(mapB, typeB, entity),
+                        componentOf(mapC, typeC, entity));
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the map holding every component assignable to the given type, if the type has no subtypes and the map
+     * exists; otherwise (or if the type is null) null.
+     */
+    private Map<Entity, Component> soleMapOf(final Class<?> type) {
+        if (type == null || ComponentType.of(type).assignableTypes().size() != 1) {
+            return null;
+        }
+        return this.entityComponentMaps.get(type);
+    }
+
+    /**
+     * Returns the entity's component of the given type (or null, if the type is null): from the type's sole map, if
+     * resolved, otherwise from the first map of its assignable types which holds one.
+     */
+    private Component componentOf(final Map<Entity, Component> soleMap, final Class<?> type, final Entity entity) {
+        if (type == null) {
+            return null;
+        }
+        if (soleMap != null) {
+            return soleMap.get(entity);
+        }
+        final var types = ComponentType.of(type).assignableTypes();
+        for (var i = 0; i < types.size(); i++) {
+            final var entityComponentMap = this.entityComponentMaps.get(types.get(i).type());
+            final var component = entityComponentMap == null ? null : entityComponentMap.get(entity);
+            if (component != null) {
+                return component;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public QueryResult query(final Query query) {
+        synchronized (this.queryLock) {
+            return this.queries.get(query);
+        }
+    }
+
+    @Override
+    public <T extends Component> void registerPool(final ComponentPool<T> pool) {
+        synchronized (this.pools) {
+            this.pools.register(pool);
+        }
+    }
+
+    @Override
+    public <T extends Component> void registerIndex(final EntityIndex<T, ?> index) {
+        synchronized (this.queryLock) {
+            forEachComponent(index.componentType(), index::put);
+            this.indexes.register(index);
+        }
+    }
+
+    @Override
+    public void registerSnapshotExtension(final SnapshotExtension<?> extension) {
+        this.snapshots.register(extension);
+    }
+
+    @Override
+    public WorldSnapshot snapshot(final WorldSnapshot previous) {
+        return this.snapshots.capture(previous);
+    }
+
+    @Override
+    public void restore(final WorldSnapshot snapshot) {
+        this.snapshots.restore(snapshot);
+    }
+
+    @Override
+    public void recycle(final WorldSnapshot snapshot) {
+        this.snapshots.recycle(snapshot);
+    }
+
+    @Override
+    public MemoryFootprint getFootprint() {
+        final var footprint = MemoryFootprint.builder();
+        synchronized (this.entityLock) {
+            footprint
+                .entities(this.entities.size(), this.entities.indexCapacity())
+                .entityOverhead(this.entities.estimateBytes() + this.tags.estimateBytes());
+        }
+        footprint.entityOverhead(ObjectSizes.concurrentHashMap(this.liveEntities.size())
+            + ObjectSizes.concurrentHashMap(this.names.size())
+            + ObjectSizes.concurrentHashMap(this.entityComponentMaps.size()));
+
+        for (final var entityComponentMap : this.entityComponentMaps.entrySet()) {
+            @SuppressWarnings("unchecked") Class<? extends Component> type =
+                (Class<? extends Component>) entityComponentMap.getKey();
+            final var components = entityComponentMap.getValue();
+            final var count = components.size();
+            final var ticks = this.changeTicks.estimateBytes(type);
+            footprint.storage(type, count, ObjectSizes.tableLength(count),
+                ObjectSizes.concurrentHashMap(count) + ticks);
+            for (final var component : components.values()) {
+                footprint.retain(component);
+            }
+        }
+        return footprint.build();
+    }
+
+    @Override
+    public CommandBuffer getCommandBuffer() {
+        return this.commandBuffer;
+    }
+
+    @Override
+    public EntityEvents getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Returns true if the entity holds a component of any of the first count of the given types.
+     */
+    private boolean containedInAny(final List<ComponentType> types, final int count, final Entity entity) {
+        for (var i = 0; i < count; i++) {
+            final var entityComponentMap = this.entityComponentMaps.get(types.get(i).type());
+            if (entityComponentMap != null && entityComponentMap.containsKey(entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentEntityManager["
+            + "entities=" + this.liveEntities.size() + ", "
+            + "componentTypes=" + this.entityComponentMaps.size()
+            + ']';
+    }
+}
@@ -1,77 +1,209 @@
 package com.drewmalin.snickerdoodle.engine.ecs.entity;
 
+import com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentPool;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tag;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 public class DefaultEntityManager implements EntityManager {
 
-    private final Set<Entity> entities;
+    private final EntityAllocator entities;
     private final Map<Class<?>, Map<Entity, ? extends Component>> entityComponentMaps;
+    private final QueryCache queries;
+    private final ChangeClock clock;
+    private final ChangeTicks changeTicks;
+    private final ComponentPools pools;
+    private final Tags tags;
+    private final EntityIndexes indexes;
+    private final CommandBuffer commandBuffer;
+    private final EntityEvents events;
+    private final WorldSnapshots snapshots;
 
     private final Object entityLock = new Object();
 
     public DefaultEntityManager() {
-        this.entities = new HashSet<>();
+        this.entities = new EntityAllocator();
         entityComponentMaps = new HashMap<>();
+        this.queries = new QueryCache(this, this::walk);
+        this.clock = new ChangeClock();
+        this.changeTicks = new ChangeTicks(this.clock);
+        this.pools = new ComponentPools();
+        this.tags = new Tags();
+        this.indexes = new EntityIndexes(this.clock);
+        this.commandBuffer = new CommandBuffer();
+        this.events = new EntityEvents();
+        this.snapshots = new WorldSnapshots(this, this.entities, this.tags, this.entityLock, this::adopt);
     }
 
     @Override
     public Entity newEntity(final String name) {
+        final Entity entity;
         synchronized (this.entityLock) {
-            final Entity entity = new Entity(UUID.randomUUID(), name);
-            this.entities.add(entity);
-            return entity;
+            entity = this.entities.allocate(name);
+            this.tags.onEntityCreated(entity);
+        }
+        this.events.entityCreated(entity);
+        return entity;
+    }
+
+    private void adopt(final Entity entity) {
+        synchronized (this.entityLock) {
+            this.tags.onEntityCreated(entity);
+        }
+        this.events.entityCreated(entity);
+    }
+
+    @Override
+    public List<Entity> newEntities(final String name, final int count, final IntFunction<Component[]> components) {
+        /*
+         * Take each lock once for the whole batch, rather than twice per component.
+         */
+        final var created = new ArrayList<Entity>(count);
+        synchronized (this.entityLock) {
+            for (var i = 0; i < count; i++) {
+                final var entity = this.entities.allocate(name);
+                this.tags.onEntityCreated(entity);
+                created.add(entity);
+            }
+        }
+
+        synchronized (this.entityComponentMaps) {
+            for (var i = 0; i < count; i++) {
+                if (!isAlive(created.get(i))) {
+                    continue;
+                }
+                this.events.entityCreated(created.get(i));
+                for (final var component : components.apply(i)) {
+                    store(created.get(i), component);
+                }
+            }
+        }
+        return created;
+    }
+
+    @Override
+    public void destroyEntity(final Entity entity) {
+        synchronized (this.entityLock) {
+            if (!this.entities.free(entity)) {
+                return;
+            }
+            this.tags.onEntityDestroyed(entity);
+        }
+
+        synchronized (this.entityComponentMaps) {
+            for (final var entityComponentMap : this.entityComponentMaps.values()) {
+                this.pools.release(entityComponentMap.remove(entity));
+            }
+            this.queries.onEntityDestroyed(entity);
+            this.indexes.onEntityDestroyed(entity);
+        }
+        this.events.entityDestroyed(entity);
+    }
+
+    @Override
+    public boolean isAlive(final Entity entity) {
+        synchronized (this.entityLock) {
+            return this.entities.isAlive(entity);
+        }
+    }
+
+    @Override
+    public Optional<String> getName(final Entity entity) {
+        synchronized (this.entityLock) {
+            return Optional.ofNullable(this.entities.getName(entity));
+        }
+    }
+
+    @Override
+    public Optional<Entity> getEntityByName(final String name) {
+        synchronized (this.entityLock) {
+            return Optional.ofNullable(this.entities.firstNamed(name));
+        }
+    }
+
+    @Override
+    public Set<Entity> getEntitiesByName(final String name) {
+        synchronized (this.entityLock) {
+            return this.entities.allNamed(name);
         }
     }
 
     @Override
     public <T extends Component> void putComponent(final Entity entity, final T component) {
         synchronized (this.entityLock) {
-            if (!this.entities.contains(entity)) {
+            if (!this.entities.isAlive(entity)) {
                 return;
             }
         }
 
         synchronized (this.entityComponentMaps) {
-            if (!this.entityComponentMaps.containsKey(component.getClass())) {
-                this.entityComponentMaps.put(component.getClass(), new HashMap<Entity, T>());
+            /*
+             * The entity may have been destroyed since the check above. destroyEntity sweeps the maps under this
+             * monitor, so a store made while the entity is still alive here is swept up, and none is made after.
+             */
+            if (isAlive(entity)) {
+                store(entity, component);
             }
+        }
+    }
 
-            final var rawEntityComponentMap = this.entityComponentMaps.get(component.getClass());
-            if (rawEntityComponentMap == null) {
+    /**
+     * Stores the component for the given entity, which must be alive. Must be called while holding the
+     * entityComponentMaps monitor, having checked that the entity is alive while holding it.
+     */
+    private <T extends Component> void store(final Entity entity, final T component) {
+        if (!this.entityComponentMaps.containsKey(component.getClass())) {
+            this.entityComponentMaps.put(component.getClass(), new HashMap<Entity, T>());
+        }
+
+        final var rawEntityComponentMap = this.entityComponentMaps.get(component.getClass());
+        if (rawEntityComponentMap == null) {
 //                LOGGER.error("Attempted to put a component onto entity {}, which does not exist", entity);
-                throw new IllegalArgumentException(String.format("Attempted to put a component onto entity %s, which does not exist", entity));
-            }
+            throw new IllegalArgumentException(String.format("Attempted to put a component onto entity %s, which does not exist", entity));
+        }
 
-            @SuppressWarnings("unchecked") HashMap<Entity, T> entityComponentMap = (HashMap<Entity, T>) rawEntityComponentMap;
-            entityComponentMap.put(entity, component);
+        @SuppressWarnings("unchecked") HashMap<Entity, T> entityComponentMap = (HashMap<Entity, T>) rawEntityComponentMap;
+        this.changeTicks.mark(entity, component);
+        if (entityComponentMap.put(entity, component) == null) {
+            this.queries.onComponentAdded(entity, component.getClass());
         }
+        this.indexes.onComponentPut(entity, component);
+        this.events.componentAdded(entity, component.getClass());
     }
 
     @Override
     public <T extends Component> Optional<T> getComponent(final Entity entity, final Class<T> componentType) {
+        return Optional.ofNullable(getComponentOrNull(entity, componentType));
+    }
+
+    @Override
+    public <T extends Component> T getComponentOrNull(final Entity entity, final Class<T> componentType) {
         synchronized (this.entityLock) {
-            if (!this.entities.contains(entity)) {
-                return Optional.empty();
+            if (!this.entities.isAlive(entity)) {
+                return null;
             }
         }
 
         synchronized (this.entityComponentMaps) {
             var entityComponentMap = this.entityComponentMaps.get(componentType);
             if (entityComponentMap == null) {
-                // a direct mapping for componentType was not found -- instead, scan through the set of all
-                // mapped types and see if componentType is actually a supertype of some previously-mapped
-                // type. if no mapping is found still, return an empty Optional.
+                // a direct mapping for componentType was not found -- instead, check the mapped types which are
+                // known to be subtypes of componentType. if no mapping is found still, return null.
                 // todo: should getComponent therefore be "getComponents"?
-                for (final var type : this.entityComponentMaps.keySet()) {
-                    if (componentType.isAssignableFrom(type) && this.entityComponentMaps.get(type).containsKey(entity)) {
-                        entityComponentMap = this.entityComponentMaps.get(type);
+                for (final var type : ComponentType.of(componentType).assignableTypes()) {
+                    final var candidate = this.entityComponentMaps.get(type.type());
+                    if (candidate != null && candidate.containsKey(entity)) {
+                        entityComponentMap = candidate;
                         break;
                     }
                 }
                 if (entityComponentMap == null) {
-                    return Optional.empty();
+                    return null;
                 }
             }
 
@@ -81,11 +213,115 @@ public class DefaultEntityManager implements EntityManager {
 //                LOGGER.error("Attempted to get a component for entity {}, which does not exist", entity);
 //                LOGGER.debug("have: {}", entityComponentMap);
 //                throw new IllegalArgumentException(String.format("Attempted to get a component for entity %s, which does not exist", entity));
+                return null;
+            }
+
+            @SuppressWarnings("unchecked") T component = (T) rawComponent;
+            return component;
+        }
+    }
+
+    @Override
+    public long currentTick() {
+        return this.clock.current();
+    }
+
+    @Override
+    public long advanceTick() {
+        return this.clock.advance();
+    }
+
+    @Override
+    public <T extends Component> long getChangedTick(final Entity entity, final Class<T> componentType) {
+        synchronized (this.entityComponentMaps) {
+            final var component = getComponentOrNull(entity, componentType);
+            return component == null ? ChangeTicks.NEVER : this.changeTicks.get(entity, component);
+        }
+    }
+
+    @Override
+    public <T extends Component> Optional<T> removeComponent(final Entity entity, final Class<T> componentType) {
+        synchronized (this.entityLock) {
+            if (!this.entities.isAlive(entity)) {
                 return Optional.empty();
             }
+        }
+
+        synchronized (this.entityComponentMaps) {
+            Component rawComponent = null;
+            for (final var type : ComponentType.of(componentType).assignableTypes()) {
+                rawComponent = removeFrom(this.entityComponentMaps.get(type.type()), entity);
+                if (rawComponent != null) {
+                    break;
+                }
+            }
+
+            if (rawComponent != null) {
+                this.queries.onComponentRemoved(entity, rawComponent.getClass());
+                this.indexes.onComponentRemoved(entity, rawComponent);
+                this.events.componentRemoved(entity, rawComponent.getClass());
+            }
 
             @SuppressWarnings("unchecked") T component = (T) rawComponent;
-            return Optional.of(component);
+            return Optional.ofNullable(component);
+        }
+    }
+
+    private static Component removeFrom(final Map<Entity, ? extends Component> entityComponentMap,
+                                        final Entity entity) {
+        return entityComponentMap == null ? null : entityComponentMap.remove(entity);
+    }
+
+    @Override
+    public void addTag(final Entity entity, final Tag tag) {
+        synchronized (this.entityLock) {
+            if (this.entities.isAlive(entity)) {
+                this.tags.add(entity, tag);
+            }
+        }
+    }
+
+    @Override
+    public void removeTag(final Entity entity, final Tag tag) {
+        synchronized (this.entityLock) {
+            if (this.entities.isAlive(entity)) {
+                this.tags.remove(entity, tag);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasTag(final Entity entity, final Tag tag) {
+        synchronized (this.entityLock) {
+            return this.entities.isAlive(entity) && this.tags.has(entity, tag);
+        }
+    }
+
+    @Override
+    public void setTagged(final Tag tag, final BitSet entityIndices) {
+        synchronized (this.entityLock) {
+            this.tags.set(tag, entityIndices);
+        }
+    }
+
+    @Override
+    public BitSet getTagged(final TagFilter filter) {
+        synchronized (this.entityLock) {
+            return this.tags.select(filter);
+        }
+    }
+
+    @Override
+    public void forEachTagged(final TagFilter filter, final Consumer<? super Entity> consumer) {
+        final var selected = getTagged(filter);
+        for (var index = selected.nextSetBit(0); index >= 0; index = selected.nextSetBit(index + 1)) {
+            final Entity entity;
+            synchronized (this.entityLock) {
+                entity = this.entities.entityAt(index);
+            }
+            if (entity != null) {
+                consumer.accept(entity);
+            }
         }
     }
 
@@ -94,12 +330,10 @@ public class DefaultEntityManager implements EntityManager {
         synchronized (this.entityComponentMaps) {
             final var set = new HashSet<Entity>();
 
-            for (final var type : this.entityComponentMaps.keySet()) {
-                if (componentType.isAssignableFrom(type)) {
-                    final var entityComponentMap = this.entityComponentMaps.get(type);
-                    if (entityComponentMap != null) {
-                        set.addAll(entityComponentMap.keySet());
-                    }
+            for (final var type : ComponentType.of(componentType).assignableTypes()) {
+                final var entityComponentMap = this.entityComponentMaps.get(type.type());
+                if (entityComponentMap != null) {
+                    set.addAll(entityComponentMap.keySet());
                 }
             }
 //            if (entityComponentMap == null) {
@@ -115,4 +349,205 @@ public class DefaultEntityManager implements EntityManager {
             return set;
         }
     }
+
+    @Override
+    public <T extends Component> void forEachComponent(final Class<T> componentType,
+                                                       final BiConsumer<Entity, ? super T> consumer) {
+        synchronized (this.entityComponentMaps) {
+            final var types = ComponentType.of(componentType).assignableTypes();
+            for (var typeIndex = 0; typeIndex < types.size(); typeIndex++) {
+                final var entityComponentMap = this.entityComponentMaps.get(types.get(typeIndex).type());
+                if (entityComponentMap == null) {
+                    continue;
+                }
+                for (final var entityComponent : entityComponentMap.entrySet()) {
+                    /*
+                     * An entity may hold components of several types assignable to componentType -- only the first is
+                     * passed to the consumer, matching the behavior of getComponent.
+                     */
+                    if (typeIndex > 0 && containedInAny(types, typeIndex, entityComponent.getKey())) {
+                        continue;
+                    }
+                    @SuppressWarnings("unchecked") T component = (T) entityComponent.getValue();
+                    consumer.accept(entityComponent.getKey(), component);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks a query result, resolving once the map of each type which has no subtypes, and taking the lock once per
+     * entity rather than twice per component. The lock is not held while the consumer runs. Slots are positions in the
+     * result.
+     */
+    private QueryStorage.Walk walk(final QueryResult result,
+                                   final Class<? extends Component> typeA,
+                                   final Class<? extends Component> typeB,
+                                   final Class<? extends Component> typeC) {
+        final Map<Entity, ? extends Component> mapA;
+        final Map<Entity, ? extends Component> mapB;
+        final Map<Entity, ? extends Component> mapC;
+        synchronized (this.entityComponentMaps) {
+            mapA = soleMapOf(typeA);
+            mapB = soleMapOf(typeB);
+            mapC = soleMapOf(typeC);
+        }
+
+        final var entities = result.entities();
+        final var size = result.size();
+        return new QueryStorage.Walk() {
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void forEach(final int from,
+                                final int to,
+                                final ComponentTriConsumer<Component, Component, Component> consumer) {
+                for (var i = from; i < to; i++) {
+                    final var entity = entities[i];
+                    final Component a;
+                    final Component b;
+                    final Component c;
+                    synchronized (DefaultEntityManager.this.entityComponentMaps) {
+                        a = componentOf(mapA, typeA, entity);
+                        b = componentOf(mapB, typeB, entity);
+                        c = componentOf(mapC, typeC, entity);
+                    }
+                    consumer.accept(entity, a, b, c);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the map holding every component assignable to the given type, if the type has no subtypes and the map
+     * exists; otherwise (or if the type is null) null.
+     */
+    private Map<Entity, ? extends Component> soleMapOf(final Class<?> type) {
+        if (type == null || ComponentType.of(type).assignableTypes().size() != 1) {
+            return null;
+        }
+        return this.entityComponentMaps.get(type);
+    }
+
+    /**
+     * Returns the entity's component of the given type (or null, if the type is null): from the type's sole map, if
+     * resolved, otherwise from the first map of its assignable types which holds one.
+     */
+    private Component componentOf(final Map<Entity, ? extends Component> soleMap,
+                                  final Class<?> type,
+                                  final Entity entity) {
+        if (type == null) {
+            return null;
+        }
+        if (soleMap != null) {
+            return soleMap.get(entity);
+        }
+        final var types = ComponentType.of(type).assignableTypes();
+        for (var i = 0; i < types.size(); i++) {
+            final var entityComponentMap = this.entityComponentMaps.get(types.get(i).type());
+            final var component = entityComponentMap == null ? null : entityComponentMap.get(entity);
+            if (component != null) {
+                return component;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public QueryResult query(final Query query) {
+        synchronized (this.entityComponentMaps) {
+            return this.queries.get(query);
+        }
+    }
+
+    @Override
+    public <T extends Component> void registerPool(final ComponentPool<T> pool) {
+        synchronized (this.entityComponentMaps) {
+            this.pools.register(pool);
+        }
+    }
+
+    @Override
+    public <T extends Component> void registerIndex(final EntityIndex<T, ?> index) {
+        synchronized (this.entityComponentMaps) {
+            forEachComponent(index.componentType(), index::put);
+            this.indexes.register(index);
+        }
+    }
+
+    @Override
+    public void registerSnapshotExtension(final SnapshotExtension<?> extension) {
+        this.snapshots.register(extension);
+    }
+
+    @Override
+    public WorldSnapshot snapshot(final WorldSnapshot previous) {
+        return this.snapshots.capture(previous);
+    }
+
+    @Override
+    public void restore(final WorldSnapshot snapshot) {
+        this.snapshots.restore(snapshot);
+    }
+
+    @Override
+    public void recycle(final WorldSnapshot snapshot) {
+        this.snapshots.recycle(snapshot);
+    }
+
+    @Override
+    public MemoryFootprint getFootprint() {
+        final var footprint = MemoryFootprint.builder();
+        synchronized (this.entityLock) {
+            footprint
+                .entities(this.entities.size(), this.entities.indexCapacity())
+                .entityOverhead(this.entities.estimateBytes() + this.tags.estimateBytes());
+        }
+
+        synchronized (this.entityComponentMaps) {
+            footprint.entityOverhead(ObjectSizes.hashMap(this.entityComponentMaps.size()));
+            for (final var entityComponentMap : this.entityComponentMaps.entrySet()) {
+                /*
+                 * A HashMap's table never shrinks, so after many removals the true overhead may exceed this estimate,
+                 * which sizes the table for the entries currently held.
+                 */
+                @SuppressWarnings("unchecked") Class<? extends Component> type =
+                    (Class<? extends Component>) entityComponentMap.getKey();
+                final var components = entityComponentMap.getValue();
+                footprint.storage(type, components.size(), ObjectSizes.tableLength(components.size()),
+                    ObjectSizes.hashMap(components.size()) + this.changeTicks.estimateBytes(type));
+                for (final var component : components.values()) {
+                    footprint.retain(component);
+                }
+            }
+        }
+        return footprint.build();
+    }
+
+    @Override
+    public CommandBuffer getCommandBuffer() {
+        return this.commandBuffer;
+    }
+
+    @Override
+    public EntityEvents getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Returns true if the entity holds a component of any of the first count of the given types.
+     */
+    private boolean containedInAny(final List<ComponentType> types, final int count, final Entity entity) {
+        for (var i = 0; i < count; i++) {
+            final var entityComponentMap = this.entityComponentMaps.get(types.get(i).type());
+            if (entityComponentMap != null && entityComponentMap.containsKey(entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -1,6 +1,36 @@
 package com.drewmalin.snickerdoodle.engine.ecs.entity;
 
-import java.util.UUID;
+/**
+ * A handle to an entity, packed into a single long: the low 32 bits hold the entity's index (its slot within the
+ * owning {@link EntityManager}) and the high 32 bits hold the generation of that slot. When an entity is destroyed its
+ * slot is recycled with a new generation, so a handle held past its entity's destruction is detected as stale rather
+ * than silently referring to whichever entity reused the slot.
+ */
+public record Entity(long id) {
 
-public record Entity(UUID id, String name) {
+    static Entity of(final int index, final int generation) {
+        return new Entity(((long) generation << 32) | (index & 0xFFFFFFFFL));
+    }
+
+    /**
+     * The slot of this entity within its {@link EntityManager}.
+     */
+    public int index() {
+        return (int) this.id;
+    }
+
+    /**
+     * The number of times this entity's slot had been recycled when this entity was created.
+     */
+    public int generation() {
+        return (int) (this.id >>> 32);
+    }
+
+    @Override
+    public String toString() {
+        return "Entity["
+            + "index=" + index() + ", "
+            + "generation=" + generation()
+            + ']';
+    }
 }
@@ -0,0 +1,229 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hands out {@link Entity} handles. Indices of destroyed entities are kept on a free list and reused (with their
+ * generation incremented) before any new index is claimed, so the index space stays as small as the peak number of
+ * live entities. Allocating and freeing are both O(1), and only grow the backing arrays when a new peak is reached.
+ * <p>
+ * Entity names are optional: they are kept in a side table which is only written when a name is given, along with a
+ * hash index from each name to the live entities which have it, so finding an entity by name is O(1).
+ * <p>
+ * This class performs no locking; callers are responsible for guarding it.
+ */
+final class EntityAllocator {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<String, Set<Entity>> entitiesByName;
+
+    private int[] generations;
+    private boolean[] alive;
+    private String[] names;
+    private int[] freeIndices;
+    private int freeCount;
+    private int nextIndex;
+    private int aliveCount;
+    private long version;
+
+    EntityAllocator() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    EntityAllocator(final int initialCapacity) {
+        this.entitiesByName = new HashMap<>();
+        this.generations = new int[initialCapacity];
+        this.alive = new boolean[initialCapacity];
+        this.names = new String[initialCapacity];
+        this.freeIndices = new int[initialCapacity];
+    }
+
+    Entity allocate(final String name) {
+        final int index;
+        if (this.freeCount > 0) {
+            index = this.freeIndices[--this.freeCount];
+        }
+        else {
+            index = this.nextIndex++;
+            ensureCapacity(this.nextIndex);
+        }
+
+        final var entity = Entity.of(index, this.generations[index]);
+        this.alive[index] = true;
+        this.names[index] = name;
+        if (name != null) {
+            this.entitiesByName.computeIfAbsent(name, n -> new LinkedHashSet<>()).add(entity);
+        }
+        this.aliveCount++;
+        this.version++;
+        return entity;
+    }
+
+    /**
+     * Frees the given entity's index for reuse. Returns false if the entity was already dead (or never allocated by
+     * this allocator).
+     */
+    boolean free(final Entity entity) {
+        if (!isAlive(entity)) {
+            return false;
+        }
+
+        final var index = entity.index();
+        final var name = this.names[index];
+        if (name != null) {
+            final var named = this.entitiesByName.get(name);
+            named.remove(entity);
+            if (named.isEmpty()) {
+                this.entitiesByName.remove(name);
+            }
+        }
+        this.alive[index] = false;
+        this.names[index] = null;
+        this.generations[index]++;
+        this.freeIndices[this.freeCount++] = index;
+        this.aliveCount--;
+        this.version++;
+        return true;
+    }
+
+    boolean isAlive(final Entity entity) {
+        final var index = entity.index();
+        return index >= 0
+            && index < this.nextIndex
+            && this.alive[index]
+            && this.generations[index] == entity.generation();
+    }
+
+    String getName(final Entity entity) {
+        return isAlive(entity) ? this.names[entity.index()] : null;
+    }
+
+    /**
+     * Returns the live entity with the given name which was created first, or null if there is none.
+     */
+    Entity firstNamed(final String name) {
+        final var named = this.entitiesByName.get(name);
+        return named == null ? null : named.iterator().next();
+    }
+
+    /**
+     * Returns a copy of the set of live entities with the given name.
+     */
+    Set<Entity> allNamed(final String name) {
+        final var named = this.entitiesByName.get(name);
+        return named == null ? Set.of() : Set.copyOf(named);
+    }
+
+    /**
+     * Returns the handle of the live entity at the given index, or null if no live entity occupies it.
+     */
+    Entity entityAt(final int index) {
+        if (index < 0 || index >= this.nextIndex || !this.alive[index]) {
+            return null;
+        }
+        return Entity.of(index, this.generations[index]);
+    }
+
+    /**
+     * Returns the number of live entities.
+     */
+    int size() {
+        return this.aliveCount;
+    }
+
+    /**
+     * Returns one more than the highest index ever allocated. Arrays indexed by {@link Entity#index()} need at least
+     * this capacity.
+     */
+    int indexCapacity() {
+        return this.nextIndex;
+    }
+
+    /**
+     * Returns a number which changes whenever an entity is allocated or freed (or the state is restored), so that an
+     * unchanged copy of this allocator may be reused.
+     */
+    long version() {
+        return this.version;
+    }
+
+    /**
+     * Returns the estimated heap size of this allocator, with the live entities' handles and the name index.
+     */
+    long estimateBytes() {
+        return ObjectSizes.primitiveArray(this.generations.length, 4)
+            + ObjectSizes.primitiveArray(this.alive.length, 1)
+            + ObjectSizes.referenceArray(this.names.length)
+            + ObjectSizes.primitiveArray(this.freeIndices.length, 4)
+            + ObjectSizes.hashMapOfSets(this.entitiesByName)
+            + this.aliveCount * ObjectSizes.instance(Entity.class);
+    }
+
+    /**
+     * Returns an independent copy of this allocator's state.
+     */
+    EntityAllocator copy() {
+        final var copy = new EntityAllocator(0);
+        copy.generations = Arrays.copyOf(this.generations, this.nextIndex);
+        copy.alive = Arrays.copyOf(this.alive, this.nextIndex);
+        copy.names = Arrays.copyOf(this.names, this.nextIndex);
+        copy.freeIndices = Arrays.copyOf(this.freeIndices, this.nextIndex);
+        copy.freeCount = this.freeCount;
+        copy.nextIndex = this.nextIndex;
+        copy.aliveCount = this.aliveCount;
+        copy.version = this.version;
+        copyNames(this.entitiesByName, copy.entitiesByName);
+        return copy;
+    }
+
+    /**
+     * Overwrites this allocator's state with that of the given copy, so that exactly the entities alive in the copy are
+     * alive, and the next entities allocated are those the copy would have allocated. The generation of every index
+     * not alive in the copy is kept at least as high as it is now, so that handles to entities allocated after the copy
+     * was taken do not become alive again.
+     */
+    void restoreFrom(final EntityAllocator copy) {
+        final var length = Math.max(this.nextIndex, copy.nextIndex);
+        ensureCapacity(length);
+        for (var index = 0; index < length; index++) {
+            final var copied = index < copy.nextIndex;
+            final var generation = copied ? copy.generations[index] : 0;
+            this.generations[index] = copied && copy.alive[index]
+                ? generation
+                : Math.max(generation, this.generations[index]);
+        }
+        System.arraycopy(copy.alive, 0, this.alive, 0, copy.nextIndex);
+        Arrays.fill(this.alive, copy.nextIndex, this.alive.length, false);
+        System.arraycopy(copy.names, 0, this.names, 0, copy.nextIndex);
+        Arrays.fill(this.names, copy.nextIndex, this.names.length, null);
+        System.arraycopy(copy.freeIndices, 0, this.freeIndices, 0, copy.freeCount);
+        this.freeCount = copy.freeCount;
+        this.nextIndex = copy.nextIndex;
+        this.aliveCount = copy.aliveCount;
+        this.version++;
+        this.entitiesByName.clear();
+        copyNames(copy.entitiesByName, this.entitiesByName);
+    }
+
+    private static void copyNames(final Map<String, Set<Entity>> from, final Map<String, Set<Entity>> to) {
+        for (final var named : from.entrySet()) {
+            to.put(named.getKey(), new LinkedHashSet<>(named.getValue()));
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= this.generations.length) {
+            return;
+        }
+        final var newCapacity = Math.max(capacity, this.generations.length * 2);
+        this.generations = Arrays.copyOf(this.generations, newCapacity);
+        this.alive = Arrays.copyOf(this.alive, newCapacity);
+        this.names = Arrays.copyOf(this.names, newCapacity);
+        this.freeIndices = Arrays.copyOf(this.freeIndices, newCapacity);
+    }
+}
@@ -0,0 +1,241 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stream of the structural changes made to an {@link EntityManager}: entities created and destroyed, and components
+ * added and removed. It lets systems which maintain data derived from the entities -- GPU buffers, spatial indexes,
+ * lookup tables -- update that data incrementally, rather than rescanning every entity each tick, and release it when
+ * the entity goes away.
+ * <p>
+ * Events are recorded into a ring buffer of preallocated columns (the kind of each event, its entity handle and its
+ * component type), so recording an event allocates nothing. Each {@link Subscription} reads the buffer through its own
+ * cursor, and should drain it once per tick (e.g. at the start of the subscribing system's update). The buffer never
+ * drops an event that some subscriber has yet to read: if a subscriber falls a full buffer behind, the buffer grows.
+ * A subscriber which stops draining must therefore be closed. While there are no subscribers, nothing is recorded.
+ * <p>
+ * This class is thread-safe. Events recorded by a single thread are delivered in the order they were recorded.
+ */
+public final class EntityEvents {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final List<Subscription> subscriptions;
+
+    private byte[] kinds;
+    private Entity[] entities;
+    private Class<?>[] componentTypes;
+    private int mask;
+
+    /*
+     * The total number of events ever recorded; the next event is written at position (head & mask).
+     */
+    private long head;
+
+    /*
+     * Read without locking, so that recording can return immediately while there are no subscribers.
+     */
+    private volatile boolean subscribed;
+
+    public EntityEvents() {
+        this.subscriptions = new ArrayList<>();
+        this.kinds = new byte[DEFAULT_CAPACITY];
+        this.entities = new Entity[DEFAULT_CAPACITY];
+        this.componentTypes = new Class<?>[DEFAULT_CAPACITY];
+        this.mask = DEFAULT_CAPACITY - 1;
+    }
+
+    /**
+     * The kinds of structural change.
+     */
+    public enum Kind {
+        /**
+         * An entity was created.
+         */
+        ENTITY_CREATED,
+        /**
+         * An entity was destroyed, along with all of its components. No COMPONENT_REMOVED events are recorded for
+         * them.
+         */
+        ENTITY_DESTROYED,
+        /**
+         * A component was put onto an entity, either added or replacing a component of the same class.
+         */
+        COMPONENT_ADDED,
+        /**
+         * A component was removed from an entity.
+         */
+        COMPONENT_REMOVED
+    }
+
+    /**
+     * Receives drained events.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called once per event. The component type is the concrete class of the added or removed component, or null
+         * for ENTITY_CREATED and ENTITY_DESTROYED.
+         */
+        void onEvent(Kind kind, Entity entity, Class<? extends Component> componentType);
+    }
+
+    /**
+     * Starts a new subscription, which receives every event recorded from now on.
+     */
+    public synchronized Subscription subscribe() {
+        final var subscription = new Subscription(this.head);
+        this.subscriptions.add(subscription);
+        this.subscribed = true;
+        return subscription;
+    }
+
+    void entityCreated(final Entity entity) {
+        record(Kind.ENTITY_CREATED, entity, null);
+    }
+
+    void entityDestroyed(final Entity entity) {
+        record(Kind.ENTITY_DESTROYED, entity, null);
+    }
+
+    void componentAdded(final Entity entity, final Class<?> componentType) {
+        record(Kind.COMPONENT_ADDED, entity, componentType);
+    }
+
+    void componentRemoved(final Entity entity, final Class<?> componentType) {
+        record(Kind.COMPONENT_REMOVED, entity, componentType);
+    }
+
+    private void record(final Kind kind, final Entity entity, final Class<?> componentType) {
+        if (!this.subscribed) {
+            return;
+        }
+
+        synchronized (this) {
+            if (this.head - oldestUnread() == this.kinds.length) {
+                grow();
+            }
+            final var position = (int) (this.head & this.mask);
+            this.kinds[position] = (byte) kind.ordinal();
+            this.entities[position] = entity;
+            this.componentTypes[position] = componentType;
+            this.head++;
+        }
+    }
+
+    /**
+     * Returns the position of the oldest event which some subscriber has yet to read. Must be called while holding
+     * this object's monitor.
+     */
+    private long oldestUnread() {
+        var oldest = this.head;
+        for (final var subscription : this.subscriptions) {
+            oldest = Math.min(oldest, subscription.cursor);
+        }
+        return oldest;
+    }
+
+    /**
+     * Doubles the capacity of the buffer, keeping every unread event at its position. Must be called while holding this
+     * object's monitor.
+     */
+    private void grow() {
+        final var capacity = this.kinds.length * 2;
+        final var kinds = new byte[capacity];
+        final var entities = new Entity[capacity];
+        final var componentTypes = new Class<?>[capacity];
+        final var mask = capacity - 1;
+
+        for (var position = oldestUnread(); position < this.head; position++) {
+            final var from = (int) (position & this.mask);
+            final var to = (int) (position & mask);
+            kinds[to] = this.kinds[from];
+            entities[to] = this.entities[from];
+            componentTypes[to] = this.componentTypes[from];
+        }
+
+        this.kinds = kinds;
+        this.entities = entities;
+        this.componentTypes = componentTypes;
+        this.mask = mask;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EntityEvents["
+            + "recorded=" + this.head + ", "
+            + "capacity=" + this.kinds.length + ", "
+            + "subscriptions=" + this.subscriptions.size()
+            + ']';
+    }
+
+    /**
+     * One subscriber's view of the event stream.
+     */
+    public final class Subscription
+        implements AutoCloseable {
+
+        private long cursor;
+
+        private Subscription(final long cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Passes every event recorded since the last drain to the given listener, oldest first, and returns the number
+         * of events passed. The listener may make further changes to the entity manager; events recorded by those
+         * changes are delivered by the next drain.
+         */
+        public int drain(final Listener listener) {
+            /*
+             * Take a consistent view of the buffer, then deliver the events without holding the lock -- so the listener
+             * may freely use the entity manager. The events between the cursor and the head cannot be overwritten in
+             * the meantime: this subscription's cursor holds them in place, and growing the buffer copies them into new
+             * arrays, leaving these ones untouched.
+             */
+            final long from;
+            final long to;
+            final byte[] kinds;
+            final Entity[] entities;
+            final Class<?>[] componentTypes;
+            final int mask;
+            synchronized (EntityEvents.this) {
+                from = this.cursor;
+                to = EntityEvents.this.head;
+                kinds = EntityEvents.this.kinds;
+                entities = EntityEvents.this.entities;
+                componentTypes = EntityEvents.this.componentTypes;
+                mask = EntityEvents.this.mask;
+            }
+
+            for (var position = from; position < to; position++) {
+                final var index = (int) (position & mask);
+                @SuppressWarnings("unchecked") Class<? extends Component> componentType =
+                    (Class<? extends Component>) componentTypes[index];
+                listener.onEvent(KINDS[kinds[index]], entities[index], componentType);
+            }
+
+            synchronized (EntityEvents.this) {
+                this.cursor = to;
+            }
+            return (int) (to - from);
+        }
+
+        /**
+         * Ends this subscription. Events not yet drained are discarded.
+         */
+        @Override
+        public void close() {
+            synchronized (EntityEvents.this) {
+                EntityEvents.this.subscriptions.remove(this);
+                EntityEvents.this.subscribed = !EntityEvents.this.subscriptions.isEmpty();
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tracked;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A secondary index from a key, computed from a component, to the entities holding that component -- e.g. from a
+ * grid cell, computed from a Transform's position, to the entities in that cell. Once registered with an
+ * {@link EntityManager} (see EntityManager::registerIndex), the index is kept up to date as components of its type are
+ * put, replaced and removed, and as entities are destroyed, so a lookup is a single hash probe rather than a scan.
+ * <p>
+ * A key computed from a {@link Tracked} component which is changed in place (rather than replaced) is recomputed
+ * lazily: each such change is reported to the index (through the manager's
+ * {@link com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock}), which notes the entity as dirty, and the next
+ * lookup re-keys just the dirty entities. An in-place change to a component of an indexed type therefore costs one
+ * hash probe, under the index's lock. Entities whose key function returns null are not indexed.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class EntityIndex<T extends Component, K> {
+
+    private final Class<T> componentType;
+    private final Function<? super T, ? extends K> keyFunction;
+    private final Map<K, Set<Entity>> entitiesByKey;
+
+    /*
+     * The entity, component and key (possibly null) each entry was filed with, indexed by Entity::index.
+     */
+    private Entity[] entities;
+    private Component[] components;
+    private Object[] keys;
+
+    /*
+     * The Entity::index of every filed Tracked component, and the indices of those changed in place since they were
+     * filed (each listed once, as marked in isDirty).
+     */
+    private final Map<Component, Integer> trackedIndices;
+    private int[] dirty;
+    private int dirtyCount;
+    private boolean[] isDirty;
+
+    private EntityIndex(final Class<T> componentType, final Function<? super T, ? extends K> keyFunction) {
+        this.componentType = componentType;
+        this.keyFunction = keyFunction;
+        this.entitiesByKey = new HashMap<>();
+        this.entities = new Entity[0];
+        this.components = new Component[0];
+        this.keys = new Object[0];
+        this.trackedIndices = new IdentityHashMap<>();
+        this.dirty = new int[16];
+        this.isDirty = new boolean[0];
+    }
+
+    public static <T extends Component, K> EntityIndex<T, K> of(final Class<T> componentType,
+                                                               final Function<? super T, ? extends K> keyFunction) {
+        return new EntityIndex<>(componentType, keyFunction);
+    }
+
+    public Class<T> componentType() {
+        return this.componentType;
+    }
+
+    /**
+     * Returns the entity filed under the given key. If several are, returns the one filed first.
+     */
+    public synchronized Optional<Entity> get(final K key) {
+        refresh();
+        final var entities = this.entitiesByKey.get(key);
+        return entities == null ? Optional.empty() : Optional.of(entities.iterator().next());
+    }
+
+    /**
+     * Returns a copy of the set of entities filed under the given key.
+     */
+    public synchronized Set<Entity> getAll(final K key) {
+        refresh();
+        final var entities = this.entitiesByKey.get(key);
+        return entities == null ? Set.of() : Set.copyOf(entities);
+    }
+
+    /**
+     * Returns the number of entities filed under the given key.
+     */
+    public synchronized int count(final K key) {
+        refresh();
+        final var entities = this.entitiesByKey.get(key);
+        return entities == null ? 0 : entities.size();
+    }
+
+    /**
+     * Files the given entity under the key of the given component, which has just been put onto it.
+     */
+    synchronized void put(final Entity entity, final Component component) {
+        unfile(entity.index());
+        file(entity, component);
+    }
+
+    /**
+     * Notes the entity filed with the given component, if any, as needing to be re-keyed, the component having been
+     * changed in place.
+     */
+    synchronized void changed(final Tracked component) {
+        final var index = this.trackedIndices.get(component);
+        if (index == null || this.isDirty[index]) {
+            return;
+        }
+        if (this.dirtyCount == this.dirty.length) {
+            this.dirty = Arrays.copyOf(this.dirty, this.dirtyCount * 2);
+        }
+        this.isDirty[index] = true;
+        this.dirty[this.dirtyCount++] = index;
+    }
+
+    /**
+     * Unfiles the given entity, if it was filed with the given component (which has just been removed from it), or with
+     * any component if the given component is null (the entity has been destroyed).
+     */
+    synchronized void remove(final Entity entity, final Component component) {
+        final var index = entity.index();
+        if (index >= this.entities.length || !entity.equals(this.entities[index])) {
+            return;
+        }
+        if (component == null || component == this.components[index]) {
+            unfile(index);
+        }
+    }
+
+    private void file(final Entity entity, final Component component) {
+        @SuppressWarnings("unchecked") T typedComponent = (T) component;
+        final K key = this.keyFunction.apply(typedComponent);
+
+        final var index = entity.index();
+        if (index >= this.entities.length) {
+            final var newLength = Math.max(index + 1, this.entities.length * 2);
+            this.entities = Arrays.copyOf(this.entities, newLength);
+            this.components = Arrays.copyOf(this.components, newLength);
+            this.keys = Arrays.copyOf(this.keys, newLength);
+            this.isDirty = Arrays.copyOf(this.isDirty, newLength);
+        }
+        this.entities[index] = entity;
+        this.components[index] = component;
+        this.keys[index] = key;
+        if (component instanceof Tracked) {
+            this.trackedIndices.put(component, index);
+        }
+        if (key != null) {
+            this.entitiesByKey.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(entity);
+        }
+    }
+
+    private void unfile(final int index) {
+        if (index >= this.entities.length || this.entities[index] == null) {
+            return;
+        }
+
+        final var entities = this.keys[index] == null ? null : this.entitiesByKey.get(this.keys[index]);
+        if (entities != null) {
+            entities.remove(this.entities[index]);
+            if (entities.isEmpty()) {
+                this.entitiesByKey.remove(this.keys[index]);
+            }
+        }
+        if (this.components[index] instanceof Tracked) {
+            this.trackedIndices.remove(this.components[index]);
+        }
+        this.entities[index] = null;
+        this.components[index] = null;
+        this.keys[index] = null;
+    }
+
+    /**
+     * Re-keys the entities whose Tracked components have been changed in place since they were filed.
+     */
+    private void refresh() {
+        for (var i = 0; i < this.dirtyCount; i++) {
+            final var index = this.dirty[i];
+            this.isDirty[index] = false;
+            final var entity = this.entities[index];
+            if (entity != null) {
+                final var component = this.components[index];
+                unfile(index);
+                file(entity, component);
+            }
+        }
+        this.dirtyCount = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EntityIndex["
+            + "componentType=" + this.componentType.getSimpleName() + ", "
+            + "keys=" + this.entitiesByKey.size()
+            + ']';
+    }
+}
@@ -0,0 +1,62 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tracked;
+
+import java.util.Arrays;
+
+/**
+ * The {@link EntityIndex}es registered with an {@link EntityManager}, which the manager notifies of every component put
+ * and removed, and every entity destroyed. While no index is registered, each notification is a single length check.
+ * Once one is, Tracked components changed in place are reported too, through the manager's clock.
+ * <p>
+ * Registration is copy-on-write, so notifications take no locks; the indexes lock themselves.
+ */
+final class EntityIndexes {
+
+    private final ChangeClock clock;
+    private volatile EntityIndex<?, ?>[] indexes;
+
+    EntityIndexes(final ChangeClock clock) {
+        this.clock = clock;
+        this.indexes = new EntityIndex<?, ?>[0];
+    }
+
+    synchronized void register(final EntityIndex<?, ?> index) {
+        final var indexes = Arrays.copyOf(this.indexes, this.indexes.length + 1);
+        indexes[indexes.length - 1] = index;
+        this.indexes = indexes;
+        this.clock.setListener(this::onChanged);
+    }
+
+    void onComponentPut(final Entity entity, final Component component) {
+        for (final var index : this.indexes) {
+            if (index.componentType().isInstance(component)) {
+                index.put(entity, component);
+            }
+        }
+    }
+
+    void onComponentRemoved(final Entity entity, final Component component) {
+        for (final var index : this.indexes) {
+            if (index.componentType().isInstance(component)) {
+                index.remove(entity, component);
+            }
+        }
+    }
+
+    void onChanged(final Tracked component) {
+        for (final var index : this.indexes) {
+            if (index.componentType().isInstance(component)) {
+                index.changed(component);
+            }
+        }
+    }
+
+    void onEntityDestroyed(final Entity entity) {
+        for (final var index : this.indexes) {
+            index.remove(entity, null);
+        }
+    }
+}
@@ -1,14 +1,60 @@
 package com.drewmalin.snickerdoodle.engine.ecs.entity;
 
 import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentPool;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tag;
 
+import java.util.BitSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 public interface EntityManager {
 
+    /**
+     * Creates a new entity. The name is optional (null is allowed), and is not required to be unique.
+     */
     Entity newEntity(String name);
 
+    /**
+     * Creates count new entities, each with the given name (which may be null) and the components returned for it by
+     * the given function (which is passed the entity's position within the batch), and returns them in creation order.
+     * This is equivalent to calling newEntity and then putComponent for each component, but lets the manager apply the
+     * whole batch at once -- taking its locks once, or placing each entity directly into its final storage.
+     */
+    List<Entity> newEntities(String name, int count, IntFunction<Component[]> components);
+
+    /**
+     * Destroys the given entity, along with all of its components. The entity's handle becomes stale: it is no longer
+     * alive, and future calls using it behave as they would for an entity which never existed. Destroying an entity
+     * which is not alive has no effect.
+     */
+    void destroyEntity(Entity entity);
+
+    /**
+     * Returns true if the given entity was created by this manager and has not since been destroyed.
+     */
+    boolean isAlive(Entity entity);
+
+    /**
+     * Returns the name the given entity was created with, if it had one and is still alive.
+     */
+    Optional<String> getName(Entity entity);
+
+    /**
+     * Returns the live entity with the given name. If several entities share the name, returns the one created first.
+     * Names are hash-indexed, so this costs the same however many entities there are.
+     */
+    Optional<Entity> getEntityByName(String name);
+
+    /**
+     * Returns every live entity with the given name.
+     */
+    Set<Entity> getEntitiesByName(String name);
+
     /**
      * Stores a component as being associated with the given entity. If a component of the same type exists
      * for this entity, it is replaced. If no such entity exists, an IllegalArgumentException is thrown.
@@ -21,8 +67,149 @@ public interface EntityManager {
      */
     <T extends Component> Optional<T> getComponent(Entity entity, Class<T> componentType);
 
+    /**
+     * As getComponent, but returns the component itself, or null if the entity does not exist or has no such component.
+     * Unlike getComponent, this allocates nothing, and so suits lookups made per entity, per tick.
+     */
+    <T extends Component> T getComponentOrNull(Entity entity, Class<T> componentType);
+
+    /**
+     * Removes the given entity's component of the given Component type, returning it. As with getComponent, the type
+     * may be a supertype of the stored component's type. If the entity does not exist, or has no such component,
+     * returns Optional.empty().
+     */
+    <T extends Component> Optional<T> removeComponent(Entity entity, Class<T> componentType);
+
+    /**
+     * Returns the tick of this manager's clock at which the given entity's component of the given type last changed:
+     * when it was put onto the entity or, for a {@link com.drewmalin.snickerdoodle.engine.ecs.component.Tracked}
+     * component, when it was last changed in place. Returns 0 if the entity does not exist or has no such component.
+     */
+    <T extends Component> long getChangedTick(Entity entity, Class<T> componentType);
+
+    /**
+     * Returns the current tick of this manager's own
+     * {@link com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock}. Changes made now are stamped with this
+     * value.
+     */
+    long currentTick();
+
+    /**
+     * Ends the current tick of this manager's clock, returning it. Called only by the engine; systems keep their own
+     * bookmark of the tick at which they last ran, rather than advancing the clock.
+     */
+    long advanceTick();
+
+    /**
+     * Tags the given entity. Tagging an entity which is not alive, or which already has the tag, has no effect.
+     */
+    void addTag(Entity entity, Tag tag);
+
+    /**
+     * Untags the given entity. Untagging an entity which is not alive, or which does not have the tag, has no effect.
+     */
+    void removeTag(Entity entity, Tag tag);
+
+    /**
+     * Returns true if the given entity is alive and has the given tag.
+     */
+    boolean hasTag(Entity entity, Tag tag);
+
+    /**
+     * Replaces the set of entities with the given tag: afterwards, exactly the live entities whose indices (see
+     * Entity::index) are set in the given bitset have it. This lets a pass which recomputes a tag for every entity --
+     * e.g. culling, writing "visible" -- build the bitset locally and apply it as one word-level copy.
+     */
+    void setTagged(Tag tag, BitSet entityIndices);
+
+    /**
+     * Returns a new bitset of the indices (see Entity::index) of the live entities matching the given filter.
+     */
+    BitSet getTagged(TagFilter filter);
+
+    /**
+     * Invokes the given consumer once for every live entity matching the given filter, in index order.
+     */
+    void forEachTagged(TagFilter filter, Consumer<? super Entity> consumer);
+
     /**
      * Retrieves all entities mapped to a component of the given type.
      */
     <T extends Component> Set<Entity> getEntitiesWithComponent(Class<T> componentType);
+
+    /**
+     * Invokes the given consumer once for every entity mapped to a component of the given type, passing the entity and
+     * its component. Unlike getEntitiesWithComponent, no intermediate collection is created. Adding component types to
+     * (or removing them from) entities from within the consumer is not supported; record such changes on the
+     * command buffer instead.
+     */
+    <T extends Component> void forEachComponent(Class<T> componentType, BiConsumer<Entity, ? super T> consumer);
+
+    /**
+     * Returns the live result of the given query. The result is computed on the first call for a given query, and is
+     * from then on updated as components are added and removed -- subsequent calls return the same, up-to-date result.
+     */
+    QueryResult query(Query query);
+
+    /**
+     * Registers a pool for components of the pool's exact type. From then on, whenever an entity is destroyed, its
+     * component of that type (if any) is released back to the pool.
+     */
+    <T extends Component> void registerPool(ComponentPool<T> pool);
+
+    /**
+     * Registers a secondary index, keyed on components of the index's type. The index is populated from the
+     * components already held, and from then on kept up to date as components of its type are put and removed, and as
+     * entities are destroyed.
+     */
+    <T extends Component> void registerIndex(EntityIndex<T, ?> index);
+
+    /**
+     * Registers state kept outside of this manager's components, which from then on is captured into every
+     * {@link WorldSnapshot} and restored from it (see {@link SnapshotExtension}).
+     */
+    void registerSnapshotExtension(SnapshotExtension<?> extension);
+
+    /**
+     * Captures the state of every entity, with its name, tags and components, as a {@link WorldSnapshot}. Given the
+     * previous snapshot of this manager (or null), the new snapshot shares everything unchanged since with it, and so
+     * costs little more than the changes themselves. Must not be called concurrently with any other use of this
+     * manager.
+     */
+    WorldSnapshot snapshot(WorldSnapshot previous);
+
+    /**
+     * Returns this manager to the state captured in the given snapshot: entities created since are destroyed, entities
+     * destroyed since are brought back under their original handles, and every component is put back as it was. Must
+     * not be called concurrently with any other use of this manager.
+     */
+    void restore(WorldSnapshot snapshot);
+
+    /**
+     * Hands back a snapshot of this manager which will not be used again, so that later snapshots may reuse its
+     * storage. The snapshot must not be restored, compared or captured against afterwards. Must not be called
+     * concurrently with any other use of this manager.
+     */
+    void recycle(WorldSnapshot snapshot);
+
+    /**
+     * Measures this manager's estimated heap usage: its entities, and the count, size, storage overhead and unused
+     * capacity of every component type it holds (see {@link MemoryFootprint}). This visits every component, and so
+     * suits periodic monitoring (see {@link FootprintReporter}) rather than use every tick.
+     */
+    MemoryFootprint getFootprint();
+
+    /**
+     * Returns this manager's command buffer, through which structural changes (spawning and destroying entities,
+     * adding and removing components) may be deferred -- e.g. when they are requested while iterating a QueryResult, or
+     * from another thread. The engine plays the buffer back against this manager once per update, after all systems
+     * have run.
+     */
+    CommandBuffer getCommandBuffer();
+
+    /**
+     * Returns the stream of structural changes made to this manager, to which systems maintaining derived data may
+     * subscribe.
+     */
+    EntityEvents getEvents();
 }
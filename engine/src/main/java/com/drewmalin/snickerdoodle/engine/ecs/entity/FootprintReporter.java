@@ -0,0 +1,145 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Measures an {@link EntityManager}'s {@link MemoryFootprint} at a fixed interval and hands it to a listener -- by
+ * default, the log -- from which it may be forwarded to a metrics system. The engine calls update once per batch of
+ * updates (see OpenGlEngine.Builder::footprintReporter); between intervals, update costs a clock read.
+ * <p>
+ * To help catch leaks, a warning is also logged when the number of components of a type has grown in each of several
+ * consecutive reports.
+ * <p>
+ * This class is not thread-safe; it is expected to be updated from the engine's update thread.
+ */
+public final class FootprintReporter {
+
+    private static final Logger LOGGER = LogManager.getLogger(FootprintReporter.class);
+    private static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(10);
+    private static final int DEFAULT_GROWTH_REPORTS = 5;
+
+    private final long intervalNanos;
+    private final int growthReports;
+    private final Consumer<MemoryFootprint> listener;
+    private final Map<Class<? extends Component>, Integer> lastCounts;
+    private final Map<Class<? extends Component>, Integer> growthStreaks;
+
+    private long lastReportNanos;
+
+    private FootprintReporter(final Builder builder) {
+        this.intervalNanos = (builder.interval == null ? DEFAULT_INTERVAL : builder.interval).toNanos();
+        this.growthReports = builder.growthReports == 0 ? DEFAULT_GROWTH_REPORTS : builder.growthReports;
+        this.listener = builder.listener == null ? FootprintReporter::log : builder.listener;
+        this.lastCounts = new HashMap<>();
+        this.growthStreaks = new HashMap<>();
+        this.lastReportNanos = System.nanoTime();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reports the given manager's footprint, if at least the interval has passed since the last report.
+     */
+    public void update(final EntityManager entityManager) {
+        final var now = System.nanoTime();
+        if (now - this.lastReportNanos < this.intervalNanos) {
+            return;
+        }
+        this.lastReportNanos = now;
+        report(entityManager.getFootprint());
+    }
+
+    /**
+     * Reports the given footprint now.
+     */
+    public void report(final MemoryFootprint footprint) {
+        this.listener.accept(footprint);
+
+        for (final var component : footprint.getComponents()) {
+            final var type = component.type();
+            final var last = this.lastCounts.put(type, component.count());
+            final var streak = last != null && component.count() > last
+                ? this.growthStreaks.merge(type, 1, Integer::sum)
+                : 0;
+            this.growthStreaks.put(type, streak);
+            if (streak == this.growthReports) {
+                LOGGER.warn("The number of {} components has grown in each of the last {} footprint reports, to {}; "
+                    + "they may be leaking", type.getSimpleName(), this.growthReports, component.count());
+            }
+        }
+    }
+
+    /**
+     * Logs the given footprint, with one line per component type, at INFO. This is the default listener.
+     */
+    public static void log(final MemoryFootprint footprint) {
+        LOGGER.info("ECS memory footprint: {}", footprint);
+        for (final var component : footprint.getComponents()) {
+            LOGGER.info("  {}: count={}, capacity={}, retainedBytes={}, overheadBytes={}, fragmentation={}",
+                component.type().getSimpleName(),
+                component.count(),
+                component.capacity(),
+                component.retainedBytes(),
+                component.overheadBytes(),
+                String.format("%.3f", component.fragmentation()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FootprintReporter["
+            + "intervalNanos=" + this.intervalNanos + ", "
+            + "growthReports=" + this.growthReports
+            + ']';
+    }
+
+    public static class Builder {
+
+        private Duration interval;
+        private int growthReports;
+        private Consumer<MemoryFootprint> listener;
+
+        private Builder() {
+
+        }
+
+        /**
+         * Sets the interval between reports. Defaults to 10 seconds.
+         */
+        public Builder interval(final Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Sets the number of consecutive reports in which a type's count must grow for a leak to be suspected.
+         * Defaults to 5.
+         */
+        public Builder growthReports(final int growthReports) {
+            this.growthReports = growthReports;
+            return this;
+        }
+
+        /**
+         * Sets the listener to which each footprint is handed, e.g. to publish it as metrics. Defaults to
+         * FootprintReporter::log.
+         */
+        public Builder listener(final Consumer<MemoryFootprint> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public FootprintReporter build() {
+            return new FootprintReporter(this);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The estimated heap usage of an {@link EntityManager}, as measured by EntityManager::getFootprint: how many entities
+ * and components it holds, how many bytes they retain, how many more its storage costs on top of them, and how much of
+ * that storage is allocated but unused.
+ * <p>
+ * All sizes are estimates (see {@link ObjectSizes} for the assumed layout). The bytes retained by a component are its
+ * own size plus that of the objects it references directly -- a Transform's vectors, a Hierarchy's matrix -- with
+ * arrays (such as mesh vertices, usually shared by many entities) counted only once. Storage overhead covers the
+ * manager's maps, arrays and chunks for each type, plus its per-entity bookkeeping (handles, names, tags, and index
+ * tables); query results, indexes and pools are not included.
+ */
+public final class MemoryFootprint {
+
+    private final int entityCount;
+    private final int entitySlots;
+    private final long entityOverheadBytes;
+    private final List<ComponentFootprint> components;
+
+    private MemoryFootprint(final Builder builder) {
+        this.entityCount = builder.entityCount;
+        this.entitySlots = builder.entitySlots;
+        this.entityOverheadBytes = builder.entityOverheadBytes;
+
+        final var components = new ArrayList<ComponentFootprint>(builder.totals.size());
+        for (final var totals : builder.totals.entrySet()) {
+            final var value = totals.getValue();
+            components.add(new ComponentFootprint(
+                totals.getKey(), value.count, value.capacity, value.retainedBytes, value.overheadBytes));
+        }
+        components.sort(Comparator.comparingLong(
+            (ComponentFootprint component) -> component.retainedBytes() + component.overheadBytes()).reversed());
+        this.components = Collections.unmodifiableList(components);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of live entities.
+     */
+    public int getEntityCount() {
+        return this.entityCount;
+    }
+
+    /**
+     * Returns the number of entity slots (see Entity::index) in use, live or free for reuse. Per-entity storage is
+     * sized by this number, not by the number of live entities.
+     */
+    public int getEntitySlots() {
+        return this.entitySlots;
+    }
+
+    /**
+     * Returns the estimated size of the manager's per-entity bookkeeping.
+     */
+    public long getEntityOverheadBytes() {
+        return this.entityOverheadBytes;
+    }
+
+    /**
+     * Returns the footprint of each concrete component type held, largest first.
+     */
+    public List<ComponentFootprint> getComponents() {
+        return this.components;
+    }
+
+    public Optional<ComponentFootprint> getComponent(final Class<? extends Component> type) {
+        for (final var component : this.components) {
+            if (component.type() == type) {
+                return Optional.of(component);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the total number of components held.
+     */
+    public long getComponentCount() {
+        var count = 0L;
+        for (final var component : this.components) {
+            count += component.count();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the estimated size of every component held, with the objects they own.
+     */
+    public long getRetainedBytes() {
+        var bytes = 0L;
+        for (final var component : this.components) {
+            bytes += component.retainedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the estimated size of the manager's storage: per-entity bookkeeping, plus every type's storage.
+     */
+    public long getOverheadBytes() {
+        var bytes = this.entityOverheadBytes;
+        for (final var component : this.components) {
+            bytes += component.overheadBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the fraction of all allocated slots -- entity slots and every type's component slots -- which are
+     * unused, between 0 and 1.
+     */
+    public double getFragmentation() {
+        long used = this.entityCount;
+        long capacity = this.entitySlots;
+        for (final var component : this.components) {
+            used += component.count();
+            capacity += component.capacity();
+        }
+        return capacity == 0 ? 0 : 1 - (double) used / capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryFootprint["
+            + "entityCount=" + this.entityCount + ", "
+            + "entitySlots=" + this.entitySlots + ", "
+            + "componentCount=" + getComponentCount() + ", "
+            + "retainedBytes=" + getRetainedBytes() + ", "
+            + "overheadBytes=" + getOverheadBytes() + ", "
+            + "fragmentation=" + String.format("%.3f", getFragmentation())
+            + ']';
+    }
+
+    /**
+     * Accumulates a footprint as a manager walks its storage. A type may be reported several times (e.g. once per
+     * archetype storing it); its counts and sizes are summed.
+     */
+    static final class Builder {
+
+        private final Map<Class<? extends Component>, Totals> totals;
+        private final Set<Object> seenArrays;
+        private int entityCount;
+        private int entitySlots;
+        private long entityOverheadBytes;
+
+        private Builder() {
+            this.totals = new LinkedHashMap<>();
+            this.seenArrays = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+
+        Builder entities(final int count, final int slots) {
+            this.entityCount = count;
+            this.entitySlots = slots;
+            return this;
+        }
+
+        Builder entityOverhead(final long bytes) {
+            this.entityOverheadBytes += bytes;
+            return this;
+        }
+
+        /**
+         * Adds count components of the given type, stored in the given number of slots at the given cost.
+         */
+        Builder storage(final Class<? extends Component> type,
+                        final int count,
+                        final int capacity,
+                        final long overheadBytes) {
+            final var totals = totalsOf(type);
+            totals.count += count;
+            totals.capacity += capacity;
+            totals.overheadBytes += overheadBytes;
+            return this;
+        }
+
+        /**
+         * Adds the retained size of the given component to that of its type.
+         */
+        Builder retain(final Component component) {
+            totalsOf(component.getClass()).retainedBytes += ObjectSizes.retained(component, this.seenArrays);
+            return this;
+        }
+
+        MemoryFootprint build() {
+            return new MemoryFootprint(this);
+        }
+
+        private Totals totalsOf(final Class<? extends Component> type) {
+            var totals = this.totals.get(type);
+            if (totals == null) {
+                totals = new Totals();
+                this.totals.put(type, totals);
+            }
+            return totals;
+        }
+    }
+
+    private static final class Totals {
+
+        private int count;
+        private int capacity;
+        private long retainedBytes;
+        private long overheadBytes;
+    }
+}
@@ -0,0 +1,187 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates of the heap size of objects, assuming the layout of a 64-bit HotSpot JVM with compressed references (the
+ * default below 32GB of heap): 12-byte object headers, 16-byte array headers, 4-byte references, and every object
+ * padded to a multiple of 8 bytes. Field sizes are read by reflection once per class.
+ */
+final class ObjectSizes {
+
+    static final long OBJECT_HEADER = 12;
+    static final long ARRAY_HEADER = 16;
+    static final long REFERENCE = 4;
+    static final long ALIGNMENT = 8;
+
+    /**
+     * The size of a HashMap.Node (or ConcurrentHashMap.Node): hash, key, value and next.
+     */
+    static final long HASH_NODE = align(OBJECT_HEADER + 4 + 3 * REFERENCE);
+
+    private static final long HASH_MAP = align(OBJECT_HEADER + 4 * REFERENCE + 4 * 4 + 4);
+    private static final long CONCURRENT_HASH_MAP = align(OBJECT_HEADER + 6 * REFERENCE + 8 + 3 * 4);
+
+    private static final ClassValue<Long> INSTANCE_SIZES = new ClassValue<>() {
+        @Override
+        protected Long computeValue(final Class<?> type) {
+            var size = OBJECT_HEADER;
+            for (var c = type; c != null; c = c.getSuperclass()) {
+                for (final var field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += sizeOf(field.getType());
+                    }
+                }
+            }
+            return align(size);
+        }
+    };
+
+    private static final ClassValue<Field[]> REFERENCE_FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(final Class<?> type) {
+            final var fields = new ArrayList<Field>();
+            for (var c = type; c != null; c = c.getSuperclass()) {
+                for (final var field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                    catch (final RuntimeException e) {
+                        /*
+                         * A field of a class in a module which is not open to us; its referent is not counted.
+                         */
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    private ObjectSizes() {
+    }
+
+    static long align(final long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Returns the size of an instance of the given class, excluding any objects it references.
+     */
+    static long instance(final Class<?> type) {
+        return INSTANCE_SIZES.get(type);
+    }
+
+    static long referenceArray(final int length) {
+        return align(ARRAY_HEADER + REFERENCE * length);
+    }
+
+    static long primitiveArray(final int length, final int elementBytes) {
+        return align(ARRAY_HEADER + (long) elementBytes * length);
+    }
+
+    /**
+     * Returns the size of the given object, excluding any objects it references.
+     */
+    static long shallow(final Object object) {
+        final var type = object.getClass();
+        if (!type.isArray()) {
+            return instance(type);
+        }
+        final var length = Array.getLength(object);
+        final var elementType = type.getComponentType();
+        return elementType.isPrimitive()
+            ? primitiveArray(length, (int) sizeOf(elementType))
+            : referenceArray(length);
+    }
+
+    /**
+     * Returns the size of the given object plus that of every object it references directly -- which, for a component,
+     * covers the vectors, matrices and arrays it owns. Arrays are assumed to be shared (e.g. the vertices of a mesh used
+     * by many entities), and are counted only the first time they are seen; enum constants are not counted at all.
+     */
+    static long retained(final Object object, final Set<Object> seenArrays) {
+        var size = shallow(object);
+        if (object.getClass().isArray()) {
+            return size;
+        }
+        for (final var field : REFERENCE_FIELDS.get(object.getClass())) {
+            final Object referent;
+            try {
+                referent = field.get(object);
+            }
+            catch (final IllegalAccessException e) {
+                continue;
+            }
+            if (referent == null || referent instanceof Enum<?>) {
+                continue;
+            }
+            if (referent.getClass().isArray() && !seenArrays.add(referent)) {
+                continue;
+            }
+            size += shallow(referent);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the size of a HashMap holding the given number of entries, excluding its keys and values: the map, its
+     * table (sized for the entries at the default load factor), and one node per entry.
+     */
+    static long hashMap(final int size) {
+        return HASH_MAP + referenceArray(tableLength(size)) + size * HASH_NODE;
+    }
+
+    /**
+     * As hashMap, for a ConcurrentHashMap.
+     */
+    static long concurrentHashMap(final int size) {
+        return CONCURRENT_HASH_MAP + referenceArray(tableLength(size)) + size * HASH_NODE;
+    }
+
+    /**
+     * Returns the number of table slots of a hash map holding the given number of entries at the default load factor.
+     */
+    static int tableLength(final int size) {
+        if (size == 0) {
+            return 0;
+        }
+        final var needed = (int) Math.ceil(size / 0.75);
+        return Math.max(16, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    /**
+     * Returns the size of a HashMap of (linked) sets, including the sets but not their elements.
+     */
+    static long hashMapOfSets(final Map<?, ? extends Set<?>> map) {
+        var size = hashMap(map.size());
+        for (final var set : map.values()) {
+            size += hashMap(set.size()) + set.size() * REFERENCE * 2;
+        }
+        return size;
+    }
+
+    private static long sizeOf(final Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+}
@@ -0,0 +1,251 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tracked;
+
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+/**
+ * Runs QueryResult::forEachParallel. The matching entities are split into chunks, which are run on the configured
+ * executor -- by default, the common {@link ForkJoinPool} -- and the calling thread waits for every chunk to finish
+ * before returning, so the tick never proceeds with an iteration still in flight.
+ * <p>
+ * On a ForkJoinPool, the range is split recursively in halves down to the chunk size, so idle workers steal the larger
+ * remaining halves from busy ones. On any other executor, the range is cut into a fixed number of chunks up front.
+ * Results too small to be worth splitting are iterated on the calling thread. Every chunk reads a range of slots
+ * straight out of the entity manager's own storage (see {@link QueryStorage}). Every manager allows concurrent reads
+ * while nothing changes it, but only the {@link ConcurrentEntityManager} allows changes -- even replacing a component
+ * in place -- from the chunks themselves; on the others, chunks must only change the components they are passed, and
+ * record everything else on the command buffer. Iteration scales best on managers whose reads take no locks (all but
+ * the {@link DefaultEntityManager}).
+ * <p>
+ * When assertions are enabled (-ea), each chunk also checks that its writes are isolated from every other chunk's:
+ * that no {@link Tracked} (i.e. mutable) component is handed to entities in two different chunks, and that the result
+ * is not structurally changed while it is being iterated. Either is a data race, and fails the iteration.
+ */
+public final class ParallelQueries {
+
+    private static final boolean CHECKS = ParallelQueries.class.desiredAssertionStatus();
+    private static final int DEFAULT_MIN_CHUNK_SIZE = 256;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static volatile Executor executor = ForkJoinPool.commonPool();
+    private static volatile int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    private static volatile int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+
+    private ParallelQueries() {
+    }
+
+    /**
+     * Runs parallel iterations on the given ForkJoinPool, with work stealing.
+     */
+    public static void setExecutor(final ForkJoinPool pool) {
+        setExecutor(pool, pool.getParallelism());
+    }
+
+    /**
+     * Runs parallel iterations on the given executor, which is expected to run up to the given number of chunks at
+     * once.
+     */
+    public static void setExecutor(final Executor executor, final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive, got: " + parallelism);
+        }
+        ParallelQueries.executor = executor;
+        ParallelQueries.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the smallest number of entities worth handing to a chunk of their own. Results no larger than this are
+     * iterated on the calling thread.
+     */
+    public static void setMinChunkSize(final int minChunkSize) {
+        if (minChunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive, got: " + minChunkSize);
+        }
+        ParallelQueries.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * Processes the entities at positions [from, to) of a result.
+     */
+    @FunctionalInterface
+    interface Chunk {
+
+        /**
+         * The claims are null unless write isolation checks are enabled.
+         */
+        void run(int from, int to, WriteClaims claims);
+    }
+
+    /**
+     * Runs the given chunk over [0, size), in parallel, and returns once every position has been processed. The
+     * modification count is sampled after each chunk, to detect structural changes made during the iteration.
+     */
+    static void run(final int size, final IntSupplier modificationCount, final Chunk chunk) {
+        final var executor = ParallelQueries.executor;
+        final var parallelism = ParallelQueries.parallelism;
+        final var chunkSize = Math.max(ParallelQueries.minChunkSize, size / (parallelism * CHUNKS_PER_THREAD) + 1);
+        final var owners = CHECKS ? new WriteOwners(modificationCount) : null;
+
+        if (size <= chunkSize || parallelism == 1) {
+            runChunk(chunk, 0, size, owners);
+        }
+        else if (executor instanceof ForkJoinPool pool) {
+            pool.invoke(new SplitTask(chunk, 0, size, chunkSize, owners));
+        }
+        else {
+            runOn(executor, chunk, size, chunkSize, owners);
+        }
+    }
+
+    private static void runChunk(final Chunk chunk, final int from, final int to, final WriteOwners owners) {
+        if (owners == null) {
+            chunk.run(from, to, null);
+            return;
+        }
+        chunk.run(from, to, owners.claimsFor(from));
+        owners.checkUnmodified();
+    }
+
+    private static void runOn(final Executor executor,
+                              final Chunk chunk,
+                              final int size,
+                              final int chunkSize,
+                              final WriteOwners owners) {
+        final var chunks = (size + chunkSize - 1) / chunkSize;
+        final var remaining = new CountDownLatch(chunks);
+        final var failure = new AtomicReference<Throwable>();
+        for (var i = 0; i < chunks; i++) {
+            final var from = i * chunkSize;
+            final var to = Math.min(size, from + chunkSize);
+            executor.execute(() -> {
+                try {
+                    runChunk(chunk, from, to, owners);
+                }
+                catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+                finally {
+                    remaining.countDown();
+                }
+            });
+        }
+
+        try {
+            remaining.await();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a parallel iteration", e);
+        }
+        if (failure.get() instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure.get() instanceof Error e) {
+            throw e;
+        }
+    }
+
+    private static final class SplitTask
+        extends RecursiveAction {
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final WriteOwners owners;
+
+        private SplitTask(final Chunk chunk,
+                          final int from,
+                          final int to,
+                          final int chunkSize,
+                          final WriteOwners owners) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.owners = owners;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.chunkSize) {
+                runChunk(this.chunk, this.from, this.to, this.owners);
+                return;
+            }
+            final var middle = (this.from + this.to) >>> 1;
+            invokeAll(
+                new SplitTask(this.chunk, this.from, middle, this.chunkSize, this.owners),
+                new SplitTask(this.chunk, middle, this.to, this.chunkSize, this.owners)
+            );
+        }
+    }
+
+    /**
+     * The chunk which first claimed each mutable component, shared by every chunk of one iteration.
+     */
+    private static final class WriteOwners {
+
+        private final Map<Component, Integer> owners;
+        private final IntSupplier modificationCount;
+        private final int expectedModificationCount;
+
+        private WriteOwners(final IntSupplier modificationCount) {
+            this.owners = Collections.synchronizedMap(new IdentityHashMap<>());
+            this.modificationCount = modificationCount;
+            this.expectedModificationCount = modificationCount.getAsInt();
+        }
+
+        WriteClaims claimsFor(final int chunk) {
+            return new WriteClaims(this, chunk);
+        }
+
+        void checkUnmodified() {
+            if (this.modificationCount.getAsInt() != this.expectedModificationCount) {
+                throw new ConcurrentModificationException(
+                    "A query result was structurally changed during forEachParallel; record structural changes on "
+                        + "the command buffer instead");
+            }
+        }
+    }
+
+    /**
+     * One chunk's view of the write isolation checks.
+     */
+    static final class WriteClaims {
+
+        private final WriteOwners owners;
+        private final int chunk;
+
+        private WriteClaims(final WriteOwners owners, final int chunk) {
+            this.owners = owners;
+            this.chunk = chunk;
+        }
+
+        /**
+         * Claims the given component, which is about to be handed to an entity in this chunk. Fails if the component
+         * is mutable and has already been handed to an entity in another chunk.
+         */
+        void claim(final Component component) {
+            if (!(component instanceof Tracked)) {
+                return;
+            }
+            final var owner = this.owners.owners.putIfAbsent(component, this.chunk);
+            if (owner != null && owner != this.chunk) {
+                throw new IllegalStateException(String.format(
+                    "Component %s is shared by entities in different chunks of forEachParallel; writes to it would "
+                        + "race", component));
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A description of a set of entities: those which have a component of every "with" type, and no component of any
+ * "without" type. As elsewhere in the {@link EntityManager}, a type matches any component assignable to it.
+ * <p>
+ * Queries are values -- two queries with the same types are equal -- and are meant to be created once (e.g. as a
+ * constant) and passed to {@link EntityManager#query(Query)} as often as needed.
+ */
+public record Query(Set<Class<? extends Component>> with, Set<Class<? extends Component>> without) {
+
+    public Query {
+        if (with.isEmpty()) {
+            throw new IllegalArgumentException("A query requires at least one component type");
+        }
+        with = Set.copyOf(with);
+        without = Set.copyOf(without);
+    }
+
+    @SafeVarargs
+    public static Query of(final Class<? extends Component>... with) {
+        return builder().with(with).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private final Set<Class<? extends Component>> with;
+        private final Set<Class<? extends Component>> without;
+
+        private Builder() {
+            this.with = new HashSet<>();
+            this.without = new HashSet<>();
+        }
+
+        @SafeVarargs
+        public final Builder with(final Class<? extends Component>... types) {
+            this.with.addAll(Arrays.asList(types));
+            return this;
+        }
+
+        @SafeVarargs
+        public final Builder without(final Class<? extends Component>... types) {
+            this.without.addAll(Arrays.asList(types));
+            return this;
+        }
+
+        public Query build() {
+            return new Query(this.with, this.without);
+        }
+    }
+}
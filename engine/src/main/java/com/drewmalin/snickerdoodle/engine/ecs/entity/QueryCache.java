@@ -0,0 +1,147 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Owns the {@link QueryResult}s of an {@link EntityManager}, and keeps them up to date. The owning manager is expected
+ * to report every structural change -- a component of a new type added to an entity, a component removed, an entity
+ * destroyed -- after the change has been applied. Replacing a component with another of the same type is not a
+ * structural change, and need not be reported.
+ * <p>
+ * Looking up a query is a read, and so may be done from many threads at once: a cached result is returned without
+ * locking, and creating a new one is serialized. Reports of changes perform no locking, and must not be made
+ * concurrently with anything else.
+ */
+final class QueryCache {
+
+    private final EntityManager entityManager;
+    private final QueryStorage storage;
+    private final Map<Query, QueryResult> results;
+
+    /*
+     * For each concrete component type seen so far, the results whose query mentions that type (or a supertype of it).
+     * These are the only results which a change to a component of that type can affect. Cleared whenever a new query
+     * is registered.
+     */
+    private final Map<Class<?>, List<QueryResult>> resultsByComponentType;
+
+    /**
+     * The given storage walks the results for QueryResult::forEach and QueryResult::forEachParallel.
+     */
+    QueryCache(final EntityManager entityManager, final QueryStorage storage) {
+        this.entityManager = entityManager;
+        this.storage = storage;
+        this.results = new ConcurrentHashMap<>();
+        this.resultsByComponentType = new HashMap<>();
+    }
+
+    QueryResult get(final Query query) {
+        final var existing = this.results.get(query);
+        if (existing != null) {
+            return existing;
+        }
+        return create(query);
+    }
+
+    private synchronized QueryResult create(final Query query) {
+        final var existing = this.results.get(query);
+        if (existing != null) {
+            return existing;
+        }
+
+        /*
+         * Populate the result once, starting from the entities which have the first required type. From here on the
+         * result is maintained incrementally.
+         */
+        final var result = new QueryResult(query, this.entityManager, this.storage);
+        final var firstType = query.with().iterator().next();
+        for (final var entity : this.entityManager.getEntitiesWithComponent(firstType)) {
+            if (matches(query, entity)) {
+                result.add(entity);
+            }
+        }
+
+        this.results.put(query, result);
+        this.resultsByComponentType.clear();
+        return result;
+    }
+
+    void onComponentAdded(final Entity entity, final Class<?> componentType) {
+        update(entity, componentType);
+    }
+
+    void onComponentRemoved(final Entity entity, final Class<?> componentType) {
+        update(entity, componentType);
+    }
+
+    void onEntityDestroyed(final Entity entity) {
+        for (final var result : this.results.values()) {
+            result.remove(entity);
+        }
+    }
+
+    private void update(final Entity entity, final Class<?> componentType) {
+        if (this.results.isEmpty()) {
+            return;
+        }
+        for (final var result : getResultsAffectedBy(componentType)) {
+            if (matches(result.query(), entity)) {
+                result.add(entity);
+            }
+            else {
+                result.remove(entity);
+            }
+        }
+    }
+
+    private boolean matches(final Query query, final Entity entity) {
+        for (final var type : query.with()) {
+            if (this.entityManager.getComponentOrNull(entity, type) == null) {
+                return false;
+            }
+        }
+        for (final var type : query.without()) {
+            if (this.entityManager.getComponentOrNull(entity, type) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<QueryResult> getResultsAffectedBy(final Class<?> componentType) {
+        final var cached = this.resultsByComponentType.get(componentType);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var type = ComponentType.of(componentType);
+        final var affected = new ArrayList<QueryResult>();
+        for (final var result : this.results.values()) {
+            if (mentions(result.query(), type)) {
+                affected.add(result);
+            }
+        }
+        this.resultsByComponentType.put(componentType, affected);
+        return affected;
+    }
+
+    private static boolean mentions(final Query query, final ComponentType componentType) {
+        for (final Class<? extends Component> type : query.with()) {
+            if (componentType.isAssignableTo(ComponentType.of(type))) {
+                return true;
+            }
+        }
+        for (final Class<? extends Component> type : query.without()) {
+            if (componentType.isAssignableTo(ComponentType.of(type))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
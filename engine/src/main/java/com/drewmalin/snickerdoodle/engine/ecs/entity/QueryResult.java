@@ -0,0 +1,295 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * The live set of entities matching a {@link Query}. A result is created by its {@link EntityManager} the first time
+ * the query is run, and is from then on kept up to date as components are added and removed -- so iterating it costs
+ * no more than the loop itself. Entities are stored densely, and may be visited either with an enhanced for loop or
+ * (to avoid even the iterator) by index:
+ * <pre>
+ * for (var i = 0; i &lt; result.size(); i++) {
+ *     final var entity = result.get(i);
+ * }
+ * </pre>
+ * or, to be handed each entity's components directly, with forEach:
+ * <pre>
+ * result.forEach(Transform.class, Mesh.class, (entity, transform, mesh) -&gt; ...);
+ * </pre>
+ * forEach is walked by the manager through its own storage (see {@link QueryStorage}), and so may visit the entities in
+ * a different order from get.
+ * Adding component types to (or removing them from) entities while iterating may move entities within the result,
+ * and is not supported.
+ * <p>
+ * Systems which only need to process what has changed (see
+ * {@link com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock}) may filter the result with
+ * forEachChangedSince; those which only process entities with certain tags (see {@link TagFilter}) may filter it with
+ * forEachTagged.
+ */
+public final class QueryResult
+    implements Iterable<Entity> {
+
+    private static final int ABSENT = -1;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final Query query;
+    private final EntityManager entityManager;
+    private final QueryStorage storage;
+
+    private int[] positions;
+    private Entity[] entities;
+    private int size;
+    private int modificationCount;
+
+    QueryResult(final Query query, final EntityManager entityManager, final QueryStorage storage) {
+        this.query = query;
+        this.entityManager = entityManager;
+        this.storage = storage;
+        this.positions = new int[0];
+        this.entities = new Entity[DEFAULT_CAPACITY];
+    }
+
+    public Query query() {
+        return this.query;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public Entity get(final int i) {
+        if (i >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + this.size);
+        }
+        return this.entities[i];
+    }
+
+    public boolean contains(final Entity entity) {
+        return positionOf(entity) != ABSENT;
+    }
+
+    /**
+     * Invokes the given consumer for every entity in this result whose component of the given type changed after the
+     * given tick (see EntityManager::getChangedTick).
+     */
+    public void forEachChangedSince(final Class<? extends Component> componentType,
+                                    final long tick,
+                                    final Consumer<? super Entity> consumer) {
+        for (var i = 0; i < this.size; i++) {
+            final var entity = this.entities[i];
+            if (this.entityManager.getChangedTick(entity, componentType) > tick) {
+                consumer.accept(entity);
+            }
+        }
+    }
+
+    /**
+     * Invokes the given consumer for every entity in this result, passing the entity and its component of the given
+     * type. The manager reads the components straight out of its own storage, so the loop costs little more than the
+     * call. The type should be one of the query's "with" types; for any other, the component passed may be null.
+     */
+    public <A extends Component> void forEach(final Class<A> typeA, final ComponentConsumer<? super A> consumer) {
+        @SuppressWarnings("unchecked") final var untyped = (ComponentConsumer<Component>) consumer;
+        forEachUntyped(typeA, null, null, (entity, a, b, c) -> untyped.accept(entity, a));
+    }
+
+    /**
+     * As forEach, passing two components of each entity.
+     */
+    public <A extends Component, B extends Component> void forEach(
+        final Class<A> typeA,
+        final Class<B> typeB,
+        final ComponentBiConsumer<? super A, ? super B> consumer) {
+        @SuppressWarnings("unchecked") final var untyped = (ComponentBiConsumer<Component, Component>) consumer;
+        forEachUntyped(typeA, typeB, null, (entity, a, b, c) -> untyped.accept(entity, a, b));
+    }
+
+    /**
+     * As forEach, passing three components of each entity.
+     */
+    public <A extends Component, B extends Component, C extends Component> void forEach(
+        final Class<A> typeA,
+        final Class<B> typeB,
+        final Class<C> typeC,
+        final ComponentTriConsumer<? super A, ? super B, ? super C> consumer) {
+        @SuppressWarnings("unchecked") final var untyped =
+            (ComponentTriConsumer<Component, Component, Component>) consumer;
+        forEachUntyped(typeA, typeB, typeC, untyped);
+    }
+
+    /**
+     * As forEach, but splits this result into chunks which are processed in parallel (see {@link ParallelQueries}),
+     * returning once every entity has been processed. Each chunk is a range of the manager's own storage (e.g. a run
+     * of chunk rows, or of a sparse set's dense arrays), read as forEach reads it. The consumer is called concurrently,
+     * and so must only change the components it is passed, in place. Any other change -- including putting a component
+     * in place of one the entity already has -- must be recorded on the command buffer, unless the manager is a
+     * ConcurrentEntityManager.
+     */
+    public <A extends Component> void forEachParallel(final Class<A> typeA,
+                                                      final ComponentConsumer<? super A> consumer) {
+        @SuppressWarnings("unchecked") final var untyped = (ComponentConsumer<Component>) consumer;
+        forEachParallelUntyped(typeA, null, null, (entity, a, b, c) -> untyped.accept(entity, a));
+    }
+
+    /**
+     * As forEachParallel, passing two components of each entity.
+     */
+    public <A extends Component, B extends Component> void forEachParallel(
+        final Class<A> typeA,
+        final Class<B> typeB,
+        final ComponentBiConsumer<? super A, ? super B> consumer) {
+        @SuppressWarnings("unchecked") final var untyped = (ComponentBiConsumer<Component, Component>) consumer;
+        forEachParallelUntyped(typeA, typeB, null, (entity, a, b, c) -> untyped.accept(entity, a, b));
+    }
+
+    /**
+     * As forEachParallel, passing three components of each entity.
+     */
+    public <A extends Component, B extends Component, C extends Component> void forEachParallel(
+        final Class<A> typeA,
+        final Class<B> typeB,
+        final Class<C> typeC,
+        final ComponentTriConsumer<? super A, ? super B, ? super C> consumer) {
+        @SuppressWarnings("unchecked") final var untyped =
+            (ComponentTriConsumer<Component, Component, Component>) consumer;
+        forEachParallelUntyped(typeA, typeB, typeC, untyped);
+    }
+
+    private void forEachUntyped(final Class<? extends Component> typeA,
+                                final Class<? extends Component> typeB,
+                                final Class<? extends Component> typeC,
+                                final ComponentTriConsumer<Component, Component, Component> consumer) {
+        final var walk = this.storage.walk(this, typeA, typeB, typeC);
+        walk.forEach(0, walk.size(), consumer);
+    }
+
+    private void forEachParallelUntyped(final Class<? extends Component> typeA,
+                                        final Class<? extends Component> typeB,
+                                        final Class<? extends Component> typeC,
+                                        final ComponentTriConsumer<Component, Component, Component> consumer) {
+        final var walk = this.storage.walk(this, typeA, typeB, typeC);
+        ParallelQueries.run(walk.size(), this::modificationCount, (from, to, claims) -> {
+            if (claims == null) {
+                walk.forEach(from, to, consumer);
+                return;
+            }
+            walk.forEach(from, to, (entity, a, b, c) -> {
+                claims.claim(a);
+                claims.claim(b);
+                claims.claim(c);
+                consumer.accept(entity, a, b, c);
+            });
+        });
+    }
+
+    /**
+     * Invokes the given consumer for every entity in this result which also matches the given tag filter. The filter is
+     * evaluated once, over the manager's tag bitsets, so each entity then costs a single bit test.
+     */
+    public void forEachTagged(final TagFilter filter, final Consumer<? super Entity> consumer) {
+        final var tagged = this.entityManager.getTagged(filter);
+        for (var i = 0; i < this.size; i++) {
+            final var entity = this.entities[i];
+            if (tagged.get(entity.index())) {
+                consumer.accept(entity);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Entity> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < QueryResult.this.size;
+            }
+
+            @Override
+            public Entity next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return QueryResult.this.entities[this.next++];
+            }
+        };
+    }
+
+    /**
+     * Returns the entities of this result, densely in [0, size).
+     */
+    Entity[] entities() {
+        return this.entities;
+    }
+
+    void add(final Entity entity) {
+        if (contains(entity)) {
+            return;
+        }
+
+        final var index = entity.index();
+        if (index >= this.positions.length) {
+            final var oldLength = this.positions.length;
+            this.positions = Arrays.copyOf(this.positions, Math.max(index + 1, oldLength * 2));
+            Arrays.fill(this.positions, oldLength, this.positions.length, ABSENT);
+        }
+        if (this.size == this.entities.length) {
+            this.entities = Arrays.copyOf(this.entities, this.entities.length * 2);
+        }
+
+        this.positions[index] = this.size;
+        this.entities[this.size++] = entity;
+        this.modificationCount++;
+    }
+
+    void remove(final Entity entity) {
+        final var position = positionOf(entity);
+        if (position == ABSENT) {
+            return;
+        }
+
+        final var last = --this.size;
+        if (position != last) {
+            final var moved = this.entities[last];
+            this.entities[position] = moved;
+            this.positions[moved.index()] = position;
+        }
+        this.entities[last] = null;
+        this.positions[entity.index()] = ABSENT;
+        this.modificationCount++;
+    }
+
+    private int modificationCount() {
+        return this.modificationCount;
+    }
+
+    private int positionOf(final Entity entity) {
+        final var index = entity.index();
+        if (index < 0 || index >= this.positions.length) {
+            return ABSENT;
+        }
+        final var position = this.positions[index];
+        if (position == ABSENT || !this.entities[position].equals(entity)) {
+            return ABSENT;
+        }
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResult["
+            + "query=" + this.query + ", "
+            + "size=" + this.size
+            + ']';
+    }
+}
@@ -0,0 +1,40 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+/**
+ * Walks the entities of a {@link QueryResult} through an entity manager's own storage, for QueryResult::forEach and
+ * QueryResult::forEachParallel. The manager resolves where the components of each type are held (a chunk column, a
+ * sparse set, a map) once per walk, rather than once per component per entity as getComponentOrNull would. Entities
+ * may be visited in any order.
+ */
+@FunctionalInterface
+interface QueryStorage {
+
+    /**
+     * Resolves the storage of the given types for a walk over the given result. A type which is null is passed as a
+     * null component.
+     */
+    Walk walk(QueryResult result,
+              Class<? extends Component> typeA,
+              Class<? extends Component> typeB,
+              Class<? extends Component> typeC);
+
+    /**
+     * A walk over the entities of a result, laid out as a range of slots in the manager's own order (e.g. the rows of
+     * each matching chunk in turn) -- so that the walk can be split into slot ranges, each of which reads straight out
+     * of the storage. Disjoint ranges may be walked concurrently.
+     */
+    interface Walk {
+
+        /**
+         * Returns the number of slots, which is the number of entities in the result.
+         */
+        int size();
+
+        /**
+         * Invokes the consumer once for every entity in slots [from, to), passing its components of the walk's types.
+         */
+        void forEach(int from, int to, ComponentTriConsumer<Component, Component, Component> consumer);
+    }
+}
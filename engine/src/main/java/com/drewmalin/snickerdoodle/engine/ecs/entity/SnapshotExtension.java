@@ -0,0 +1,22 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+/**
+ * State kept outside of an {@link EntityManager}'s components, but belonging to its entities -- e.g. an off-heap store
+ * of their transforms -- which is captured into the manager's {@link WorldSnapshot}s, and restored from them, alongside
+ * the components. Registered with EntityManager::registerSnapshotExtension.
+ *
+ * @param <S> the type of the captured state
+ */
+public interface SnapshotExtension<S> {
+
+    /**
+     * Returns a copy of the current state, which the snapshot holds and which must not be changed afterwards.
+     */
+    S capture();
+
+    /**
+     * Returns the state to the given copy, as returned by capture. Called once the manager's own entities and components
+     * have been restored.
+     */
+    void restore(S state);
+}
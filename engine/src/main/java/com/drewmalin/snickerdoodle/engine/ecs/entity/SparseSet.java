@@ -0,0 +1,156 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.Arrays;
+
+/**
+ * The components of a single type, stored as a sparse set: a "dense" pair of arrays holding the components and their
+ * owning entities back-to-back, and a "sparse" array mapping each {@link Entity#index()} to that entity's position in
+ * the dense arrays. Adding, replacing, looking up and removing a component are all O(1), and iterating every component
+ * of the type is a linear scan of the dense arrays.
+ */
+final class SparseSet {
+
+    private static final int ABSENT = -1;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final Class<? extends Component> type;
+
+    private int[] sparse;
+    private Entity[] denseEntities;
+    private Component[] denseComponents;
+    private int size;
+
+    SparseSet(final Class<? extends Component> type) {
+        this.type = type;
+        this.sparse = new int[0];
+        this.denseEntities = new Entity[DEFAULT_CAPACITY];
+        this.denseComponents = new Component[DEFAULT_CAPACITY];
+    }
+
+    Class<? extends Component> type() {
+        return this.type;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of dense slots allocated.
+     */
+    int capacity() {
+        return this.denseComponents.length;
+    }
+
+    /**
+     * Returns the estimated heap size of this set's arrays.
+     */
+    long estimateBytes() {
+        return ObjectSizes.primitiveArray(this.sparse.length, Integer.BYTES)
+            + ObjectSizes.referenceArray(this.denseEntities.length)
+            + ObjectSizes.referenceArray(this.denseComponents.length);
+    }
+
+    Entity[] entities() {
+        return this.denseEntities;
+    }
+
+    Component[] components() {
+        return this.denseComponents;
+    }
+
+    boolean contains(final Entity entity) {
+        return denseIndexOf(entity) != ABSENT;
+    }
+
+    Component get(final Entity entity) {
+        final var denseIndex = denseIndexOf(entity);
+        return denseIndex == ABSENT ? null : this.denseComponents[denseIndex];
+    }
+
+    /**
+     * Stores the component for the given entity, replacing (and returning) any component the entity already had in
+     * this set.
+     */
+    Component put(final Entity entity, final Component component) {
+        final var existing = denseIndexOf(entity);
+        if (existing != ABSENT) {
+            final var previous = this.denseComponents[existing];
+            this.denseComponents[existing] = component;
+            return previous;
+        }
+
+        ensureSparseCapacity(entity.index() + 1);
+        ensureDenseCapacity(this.size + 1);
+
+        final var denseIndex = this.size++;
+        this.denseEntities[denseIndex] = entity;
+        this.denseComponents[denseIndex] = component;
+        this.sparse[entity.index()] = denseIndex;
+        return null;
+    }
+
+    /**
+     * Removes (and returns) the given entity's component from this set. The last component in the dense arrays is
+     * moved into the vacated position, so that the dense arrays remain gap-free.
+     */
+    Component remove(final Entity entity) {
+        final var denseIndex = denseIndexOf(entity);
+        if (denseIndex == ABSENT) {
+            return null;
+        }
+
+        final var removed = this.denseComponents[denseIndex];
+        final var lastIndex = --this.size;
+        if (denseIndex != lastIndex) {
+            final var moved = this.denseEntities[lastIndex];
+            this.denseEntities[denseIndex] = moved;
+            this.denseComponents[denseIndex] = this.denseComponents[lastIndex];
+            this.sparse[moved.index()] = denseIndex;
+        }
+        this.denseEntities[lastIndex] = null;
+        this.denseComponents[lastIndex] = null;
+        this.sparse[entity.index()] = ABSENT;
+        return removed;
+    }
+
+    private int denseIndexOf(final Entity entity) {
+        final var index = entity.index();
+        if (index < 0 || index >= this.sparse.length) {
+            return ABSENT;
+        }
+        final var denseIndex = this.sparse[index];
+        if (denseIndex == ABSENT || !this.denseEntities[denseIndex].equals(entity)) {
+            return ABSENT;
+        }
+        return denseIndex;
+    }
+
+    private void ensureSparseCapacity(final int capacity) {
+        if (capacity <= this.sparse.length) {
+            return;
+        }
+        final var oldCapacity = this.sparse.length;
+        this.sparse = Arrays.copyOf(this.sparse, Math.max(capacity, oldCapacity * 2));
+        Arrays.fill(this.sparse, oldCapacity, this.sparse.length, ABSENT);
+    }
+
+    private void ensureDenseCapacity(final int capacity) {
+        if (capacity <= this.denseEntities.length) {
+            return;
+        }
+        final var newCapacity = Math.max(capacity, this.denseEntities.length * 2);
+        this.denseEntities = Arrays.copyOf(this.denseEntities, newCapacity);
+        this.denseComponents = Arrays.copyOf(this.denseComponents, newCapacity);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseSet["
+            + "type=" + this.type.getName() + ", "
+            + "size=" + this.size
+            + ']';
+    }
+}
@@ -0,0 +1,458 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentPool;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * An {@link EntityManager} which stores each component type in its own {@link SparseSet}. Adding and removing a
+ * component touches only that component's set, which makes this manager well suited to components which are attached
+ * and detached frequently (status effects, short-lived scripts). Compare with {@link ArchetypeEntityManager}, where
+ * the same change moves all of the entity's components to another archetype.
+ * <p>
+ * This manager performs no locking. Changes -- creating and destroying entities, putting and removing components and
+ * tags -- must be made from one thread at a time, normally the engine thread. Reads make no changes to shared state, so
+ * any number of threads may read at once (e.g. during QueryResult::forEachParallel, or a parallel stage of the
+ * SystemScheduler), provided that no change is made meanwhile.
+ */
+public class SparseSetEntityManager
+    implements EntityManager {
+
+    private final EntityAllocator entities;
+    private final List<SparseSet> sets;
+    private final QueryCache queries;
+    private final ChangeClock clock;
+    private final ChangeTicks changeTicks;
+    private final ComponentPools pools;
+    private final Tags tags;
+    private final EntityIndexes indexes;
+    private final CommandBuffer commandBuffer;
+    private final EntityEvents events;
+    private final WorldSnapshots snapshots;
+
+    /*
+     * Every set, indexed by the ComponentType id of the set's component type. Null where no component of that type has
+     * been stored.
+     */
+    private SparseSet[] setsByTypeId;
+
+    /*
+     * For each type looked up so far, every set whose type is assignable to it, in the order of the type's assignable
+     * types. Cleared whenever a new set is created.
+     */
+    private final Map<Class<?>, List<SparseSet>> setsByComponentType;
+
+    public SparseSetEntityManager() {
+        this.entities = new EntityAllocator();
+        this.sets = new ArrayList<>();
+        this.setsByTypeId = new SparseSet[0];
+        this.setsByComponentType = new ConcurrentHashMap<>();
+        this.queries = new QueryCache(this, this::walk);
+        this.clock = new ChangeClock();
+        this.changeTicks = new ChangeTicks(this.clock);
+        this.pools = new ComponentPools();
+        this.tags = new Tags();
+        this.indexes = new EntityIndexes(this.clock);
+        this.commandBuffer = new CommandBuffer();
+        this.events = new EntityEvents();
+        this.snapshots = new WorldSnapshots(this, this.entities, this.tags, this.entities, this::adopt);
+    }
+
+    @Override
+    public Entity newEntity(final String name) {
+        final var entity = this.entities.allocate(name);
+        adopt(entity);
+        return entity;
+    }
+
+    private void adopt(final Entity entity) {
+        this.tags.onEntityCreated(entity);
+        this.events.entityCreated(entity);
+    }
+
+    @Override
+    public List<Entity> newEntities(final String name, final int count, final IntFunction<Component[]> components) {
+        /*
+         * Adding a component only ever touches that component's set, so there is no cheaper way to place a batch than
+         * one entity at a time.
+         */
+        final var created = new ArrayList<Entity>(count);
+        for (var i = 0; i < count; i++) {
+            final var entity = newEntity(name);
+            for (final var component : components.apply(i)) {
+                putComponent(entity, component);
+            }
+            created.add(entity);
+        }
+        return created;
+    }
+
+    @Override
+    public void destroyEntity(final Entity entity) {
+        if (!this.entities.free(entity)) {
+            return;
+        }
+        this.tags.onEntityDestroyed(entity);
+        for (final var set : this.sets) {
+            this.pools.release(set.remove(entity));
+        }
+        this.queries.onEntityDestroyed(entity);
+        this.indexes.onEntityDestroyed(entity);
+        this.events.entityDestroyed(entity);
+    }
+
+    @Override
+    public boolean isAlive(final Entity entity) {
+        return this.entities.isAlive(entity);
+    }
+
+    @Override
+    public Optional<String> getName(final Entity entity) {
+        return Optional.ofNullable(this.entities.getName(entity));
+    }
+
+    @Override
+    public Optional<Entity> getEntityByName(final String name) {
+        return Optional.ofNullable(this.entities.firstNamed(name));
+    }
+
+    @Override
+    public Set<Entity> getEntitiesByName(final String name) {
+        return this.entities.allNamed(name);
+    }
+
+    @Override
+    public <T extends Component> void putComponent(final Entity entity, final T component) {
+        if (!this.entities.isAlive(entity)) {
+            return;
+        }
+        this.changeTicks.mark(entity, component);
+        if (getOrCreateSet(component.getClass()).put(entity, component) == null) {
+            this.queries.onComponentAdded(entity, component.getClass());
+        }
+        this.indexes.onComponentPut(entity, component);
+        this.events.componentAdded(entity, component.getClass());
+    }
+
+    @Override
+    public <T extends Component> Optional<T> getComponent(final Entity entity, final Class<T> componentType) {
+        return Optional.ofNullable(getComponentOrNull(entity, componentType));
+    }
+
+    @Override
+    public <T extends Component> T getComponentOrNull(final Entity entity, final Class<T> componentType) {
+        if (!this.entities.isAlive(entity)) {
+            return null;
+        }
+
+        for (final var type : ComponentType.of(componentType).assignableTypes()) {
+            final var set = getSet(type);
+            final var component = set == null ? null : set.get(entity);
+            if (component != null) {
+                @SuppressWarnings("unchecked") T typedComponent = (T) component;
+                return typedComponent;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long currentTick() {
+        return this.clock.current();
+    }
+
+    @Override
+    public long advanceTick() {
+        return this.clock.advance();
+    }
+
+    @Override
+    public <T extends Component> long getChangedTick(final Entity entity, final Class<T> componentType) {
+        final var component = getComponentOrNull(entity, componentType);
+        return component == null ? ChangeTicks.NEVER : this.changeTicks.get(entity, component);
+    }
+
+    @Override
+    public <T extends Component> Optional<T> removeComponent(final Entity entity, final Class<T> componentType) {
+        if (!this.entities.isAlive(entity)) {
+            return Optional.empty();
+        }
+
+        for (final var type : ComponentType.of(componentType).assignableTypes()) {
+            final var set = getSet(type);
+            final var component = set == null ? null : set.remove(entity);
+            if (component != null) {
+                this.queries.onComponentRemoved(entity, set.type());
+                this.indexes.onComponentRemoved(entity, component);
+                this.events.componentRemoved(entity, set.type());
+                @SuppressWarnings("unchecked") T typedComponent = (T) component;
+                return Optional.of(typedComponent);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void addTag(final Entity entity, final Tag tag) {
+        if (this.entities.isAlive(entity)) {
+            this.tags.add(entity, tag);
+        }
+    }
+
+    @Override
+    public void removeTag(final Entity entity, final Tag tag) {
+        if (this.entities.isAlive(entity)) {
+            this.tags.remove(entity, tag);
+        }
+    }
+
+    @Override
+    public boolean hasTag(final Entity entity, final Tag tag) {
+        return this.entities.isAlive(entity) && this.tags.has(entity, tag);
+    }
+
+    @Override
+    public void setTagged(final Tag tag, final BitSet entityIndices) {
+        this.tags.set(tag, entityIndices);
+    }
+
+    @Override
+    public BitSet getTagged(final TagFilter filter) {
+        return this.tags.select(filter);
+    }
+
+    @Override
+    public void forEachTagged(final TagFilter filter, final Consumer<? super Entity> consumer) {
+        final var selected = this.tags.select(filter);
+        for (var index = selected.nextSetBit(0); index >= 0; index = selected.nextSetBit(index + 1)) {
+            consumer.accept(this.entities.entityAt(index));
+        }
+    }
+
+    @Override
+    public <T extends Component> Set<Entity> getEntitiesWithComponent(final Class<T> componentType) {
+        final var result = new HashSet<Entity>();
+        for (final var set : getSetsWithComponent(componentType)) {
+            final var entities = set.entities();
+            for (var i = 0; i < set.size(); i++) {
+                result.add(entities[i]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends Component> void forEachComponent(final Class<T> componentType,
+                                                       final BiConsumer<Entity, ? super T> consumer) {
+        final var matchingSets = getSetsWithComponent(componentType);
+        for (var setIndex = 0; setIndex < matchingSets.size(); setIndex++) {
+            final var set = matchingSets.get(setIndex);
+            final var entities = set.entities();
+            final var components = set.components();
+            for (var i = 0; i < set.size(); i++) {
+                /*
+                 * An entity may hold components of several types assignable to componentType -- only the first is
+                 * passed to the consumer, matching the behavior of getComponent.
+                 */
+                if (setIndex > 0 && containedInAny(matchingSets, setIndex, entities[i])) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked") T component = (T) components[i];
+                consumer.accept(entities[i], component);
+            }
+        }
+    }
+
+    /**
+     * Walks a query result through the sparse sets, resolving each type's sets once. If the first type is held in a
+     * single set which holds exactly the result's entities -- e.g. for a query of just that type -- the slots are that
+     * set's dense arrays; otherwise they are the result's, each component being looked up in its type's sets.
+     */
+    private QueryStorage.Walk walk(final QueryResult result,
+                                   final Class<? extends Component> typeA,
+                                   final Class<? extends Component> typeB,
+                                   final Class<? extends Component> typeC) {
+        final var setsA = getSetsWithComponent(typeA);
+        final var setsB = typeB == null ? List.<SparseSet>of() : getSetsWithComponent(typeB);
+        final var setsC = typeC == null ? List.<SparseSet>of() : getSetsWithComponent(typeC);
+
+        final var dense = setsA.size() == 1
+            && setsA.get(0).size() == result.size()
+            && result.query().with().contains(typeA);
+        final var entities = dense ? setsA.get(0).entities() : result.entities();
+        final var components = dense ? setsA.get(0).components() : null;
+        final var size = result.size();
+        return new QueryStorage.Walk() {
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void forEach(final int from,
+                                final int to,
+                                final ComponentTriConsumer<Component, Component, Component> consumer) {
+                for (var i = from; i < to; i++) {
+                    final var entity = entities[i];
+                    consumer.accept(entity,
+                        components != null ? components[i] : get(setsA, entity),
+                        get(setsB, entity),
+                        get(setsC, entity));
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the entity's component from the first of the given sets which holds one, as getComponentOrNull does.
+     */
+    private static Component get(final List<SparseSet> sets, final Entity entity) {
+        for (var i = 0; i < sets.size(); i++) {
+            final var component = sets.get(i).get(entity);
+            if (component != null) {
+                return component;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public QueryResult query(final Query query) {
+        return this.queries.get(query);
+    }
+
+    @Override
+    public <T extends Component> void registerPool(final ComponentPool<T> pool) {
+        this.pools.register(pool);
+    }
+
+    @Override
+    public <T extends Component> void registerIndex(final EntityIndex<T, ?> index) {
+        forEachComponent(index.componentType(), index::put);
+        this.indexes.register(index);
+    }
+
+    @Override
+    public void registerSnapshotExtension(final SnapshotExtension<?> extension) {
+        this.snapshots.register(extension);
+    }
+
+    @Override
+    public WorldSnapshot snapshot(final WorldSnapshot previous) {
+        return this.snapshots.capture(previous);
+    }
+
+    @Override
+    public void restore(final WorldSnapshot snapshot) {
+        this.snapshots.restore(snapshot);
+    }
+
+    @Override
+    public void recycle(final WorldSnapshot snapshot) {
+        this.snapshots.recycle(snapshot);
+    }
+
+    @Override
+    public MemoryFootprint getFootprint() {
+        final var footprint = MemoryFootprint.builder()
+            .entities(this.entities.size(), this.entities.indexCapacity())
+            .entityOverhead(this.entities.estimateBytes() + this.tags.estimateBytes());
+        for (final var set : this.sets) {
+            footprint.storage(set.type(), set.size(), set.capacity(),
+                set.estimateBytes() + this.changeTicks.estimateBytes(set.type()));
+            final var components = set.components();
+            for (var i = 0; i < set.size(); i++) {
+                footprint.retain(components[i]);
+            }
+        }
+        return footprint.build();
+    }
+
+    @Override
+    public CommandBuffer getCommandBuffer() {
+        return this.commandBuffer;
+    }
+
+    @Override
+    public EntityEvents getEvents() {
+        return this.events;
+    }
+
+    private static boolean containedInAny(final List<SparseSet> sets, final int count, final Entity entity) {
+        for (var i = 0; i < count; i++) {
+            if (sets.get(i).contains(entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private SparseSet getSet(final ComponentType type) {
+        final var id = type.id();
+        return id < this.setsByTypeId.length ? this.setsByTypeId[id] : null;
+    }
+
+    private SparseSet getOrCreateSet(final Class<? extends Component> type) {
+        final var componentType = ComponentType.of(type);
+        final var existing = getSet(componentType);
+        if (existing != null) {
+            return existing;
+        }
+
+        final var id = componentType.id();
+        if (id >= this.setsByTypeId.length) {
+            this.setsByTypeId = Arrays.copyOf(this.setsByTypeId, Math.max(id + 1, ComponentType.count()));
+        }
+
+        final var set = new SparseSet(type);
+        this.setsByTypeId[id] = set;
+        this.sets.add(set);
+        this.setsByComponentType.clear();
+        return set;
+    }
+
+    /**
+     * Returns every set whose type is assignable to the given type. The list is built on the first lookup of the type
+     * -- which may be made by any reading thread, so it is only published once complete -- and is dropped whenever a
+     * new set is created.
+     */
+    private List<SparseSet> getSetsWithComponent(final Class<?> componentType) {
+        final var cached = this.setsByComponentType.get(componentType);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var matching = new ArrayList<SparseSet>();
+        for (final var type : ComponentType.of(componentType).assignableTypes()) {
+            final var set = getSet(type);
+            if (set != null) {
+                matching.add(set);
+            }
+        }
+        final var raced = this.setsByComponentType.putIfAbsent(componentType, matching);
+        return raced == null ? matching : raced;
+    }
+
+    @Override
+    public String toString() {
+        return "SparseSetEntityManager["
+            + "entities=" + this.entities.size() + ", "
+            + "componentTypes=" + this.sets.size()
+            + ']';
+    }
+}
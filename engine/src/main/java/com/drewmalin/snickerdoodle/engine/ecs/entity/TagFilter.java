@@ -0,0 +1,68 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tag;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A set-algebra expression over {@link Tag}s: the entities which have every "all" tag (AND), at least one "any" tag
+ * (OR, if any are given), and no "none" tag (NOT). The manager evaluates a filter a word (64 entities) at a time over
+ * its per-tag bitsets, so the cost is proportional to the number of entity indices, not to the number of tagged
+ * entities.
+ * <p>
+ * A filter may be applied on its own (EntityManager::forEachTagged) or alongside a {@link Query}, to narrow a query's
+ * result (QueryResult::forEachTagged).
+ */
+public record TagFilter(Set<Tag> all, Set<Tag> any, Set<Tag> none) {
+
+    public TagFilter {
+        if (all.isEmpty() && any.isEmpty() && none.isEmpty()) {
+            throw new IllegalArgumentException("A tag filter requires at least one tag");
+        }
+        all = Set.copyOf(all);
+        any = Set.copyOf(any);
+        none = Set.copyOf(none);
+    }
+
+    public static TagFilter of(final Tag... all) {
+        return builder().all(all).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private final Set<Tag> all;
+        private final Set<Tag> any;
+        private final Set<Tag> none;
+
+        private Builder() {
+            this.all = new HashSet<>();
+            this.any = new HashSet<>();
+            this.none = new HashSet<>();
+        }
+
+        public Builder all(final Tag... tags) {
+            this.all.addAll(Arrays.asList(tags));
+            return this;
+        }
+
+        public Builder any(final Tag... tags) {
+            this.any.addAll(Arrays.asList(tags));
+            return this;
+        }
+
+        public Builder none(final Tag... tags) {
+            this.none.addAll(Arrays.asList(tags));
+            return this;
+        }
+
+        public TagFilter build() {
+            return new TagFilter(this.all, this.any, this.none);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tag;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The {@link Tag}s held by the entities of an {@link EntityManager}, kept as one bitset per tag (indexed by Tag id)
+ * over {@link Entity#index()}, alongside a bitset of the live indices. Every set operation -- applying a
+ * {@link TagFilter}, replacing a tag's members in bulk -- is done with BitSet's word-level and/or/andNot.
+ * <p>
+ * This class performs no locking; callers are responsible for guarding it.
+ */
+final class Tags {
+
+    private static final BitSet EMPTY = new BitSet();
+
+    private final BitSet live;
+    private BitSet[] membersByTagId;
+    private long version;
+
+    Tags() {
+        this.live = new BitSet();
+        this.membersByTagId = new BitSet[0];
+    }
+
+    void onEntityCreated(final Entity entity) {
+        this.live.set(entity.index());
+        this.version++;
+    }
+
+    /**
+     * Clears the destroyed entity's index from every tag, so that the index's next occupant starts untagged.
+     */
+    void onEntityDestroyed(final Entity entity) {
+        final var index = entity.index();
+        this.live.clear(index);
+        this.version++;
+        for (final var members : this.membersByTagId) {
+            if (members != null) {
+                members.clear(index);
+            }
+        }
+    }
+
+    void add(final Entity entity, final Tag tag) {
+        membersOf(tag).set(entity.index());
+        this.version++;
+    }
+
+    void remove(final Entity entity, final Tag tag) {
+        membersOf(tag).clear(entity.index());
+        this.version++;
+    }
+
+    boolean has(final Entity entity, final Tag tag) {
+        return peek(tag).get(entity.index());
+    }
+
+    /**
+     * Replaces the members of the given tag with the live entities among the given indices.
+     */
+    void set(final Tag tag, final BitSet indices) {
+        final var members = membersOf(tag);
+        members.clear();
+        members.or(indices);
+        members.and(this.live);
+        this.version++;
+    }
+
+    /**
+     * Returns a number which changes whenever any tag (or the set of live indices) changes, so that an unchanged copy
+     * may be reused.
+     */
+    long version() {
+        return this.version;
+    }
+
+    /**
+     * Returns the estimated heap size of every tag's members.
+     */
+    long estimateBytes() {
+        var bytes = estimateBytes(this.live) + ObjectSizes.referenceArray(this.membersByTagId.length);
+        for (final var members : this.membersByTagId) {
+            if (members != null) {
+                bytes += estimateBytes(members);
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(final BitSet bits) {
+        return ObjectSizes.instance(BitSet.class) + ObjectSizes.primitiveArray(bits.size() / Long.SIZE, Long.BYTES);
+    }
+
+    /**
+     * Returns an independent copy of every tag's members.
+     */
+    Tags copy() {
+        final var copy = new Tags();
+        copy.restoreFrom(this);
+        copy.version = this.version;
+        return copy;
+    }
+
+    /**
+     * Overwrites every tag's members with those of the given copy.
+     */
+    void restoreFrom(final Tags copy) {
+        this.live.clear();
+        this.live.or(copy.live);
+        this.membersByTagId = new BitSet[copy.membersByTagId.length];
+        for (var id = 0; id < copy.membersByTagId.length; id++) {
+            if (copy.membersByTagId[id] != null) {
+                this.membersByTagId[id] = (BitSet) copy.membersByTagId[id].clone();
+            }
+        }
+        this.version++;
+    }
+
+    /**
+     * Returns a new bitset of the indices of the live entities matching the given filter.
+     */
+    BitSet select(final TagFilter filter) {
+        /*
+         * Start from the intersection of the "all" tags -- or, if there are none, from every live entity -- then
+         * narrow it to the union of the "any" tags, and subtract each "none" tag.
+         */
+        var result = filter.all().isEmpty() ? (BitSet) this.live.clone() : null;
+        for (final var tag : filter.all()) {
+            if (result == null) {
+                result = (BitSet) peek(tag).clone();
+            }
+            else {
+                result.and(peek(tag));
+            }
+        }
+
+        if (!filter.any().isEmpty()) {
+            final var union = new BitSet();
+            for (final var tag : filter.any()) {
+                union.or(peek(tag));
+            }
+            result.and(union);
+        }
+
+        for (final var tag : filter.none()) {
+            result.andNot(peek(tag));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the members of the given tag, without creating a bitset for a tag which has never been used. The result
+     * must not be modified.
+     */
+    private BitSet peek(final Tag tag) {
+        final var id = tag.id();
+        if (id >= this.membersByTagId.length || this.membersByTagId[id] == null) {
+            return EMPTY;
+        }
+        return this.membersByTagId[id];
+    }
+
+    private BitSet membersOf(final Tag tag) {
+        final var id = tag.id();
+        if (id >= this.membersByTagId.length) {
+            this.membersByTagId = Arrays.copyOf(this.membersByTagId, id + 1);
+        }
+        if (this.membersByTagId[id] == null) {
+            this.membersByTagId[id] = new BitSet();
+        }
+        return this.membersByTagId[id];
+    }
+}
@@ -0,0 +1,381 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentCodec;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Hierarchy;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Tracked;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Transform;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The complete state of an {@link EntityManager} -- its entities, their names and tags, and their components -- as of
+ * one moment, captured by EntityManager::snapshot and written back by EntityManager::restore. Used for rollback,
+ * undo, and deterministic re-simulation.
+ * <p>
+ * Components are stored in columns, one per concrete component type: the ids of the entities holding a component of
+ * that type, and either
+ * <ul>
+ *     <li>the components' state flattened into one float array, for types with a registered {@link ComponentCodec}
+ *     (such as Transform);</li>
+ *     <li>a copy of each component, for types with a registered copy function (such as Hierarchy), which are copied
+ *     afresh on every capture and every restore; or</li>
+ *     <li>the components themselves, by reference, for all other types -- which must therefore be replaced rather than
+ *     changed in place, and not released to a pool, for a restore to be exact. A {@link Tracked} type, being changed
+ *     in place by design, is refused: capturing one without a codec or copy function fails.</li>
+ * </ul>
+ * <p>
+ * A snapshot captured with a previous snapshot of the same manager stores only what has changed since: every column
+ * (and the entity and tag state) which is unchanged is shared with the previous snapshot rather than copied, and a
+ * flattened column in which only a few components have changed stores just those, as a delta over the previous
+ * column. A static world therefore costs almost nothing to capture, and a moving one a single flat array per type.
+ * <p>
+ * State kept outside of the components, by the {@link SnapshotExtension}s registered with the manager, is captured and
+ * restored alongside them, in full.
+ * <p>
+ * Snapshots are immutable, and may be kept, restored and compared (see forEachDifference) in any order, until handed
+ * back to EntityManager::recycle, after which the manager reuses their storage and they must not be used again.
+ */
+public final class WorldSnapshot {
+
+    private static final Map<Class<?>, ComponentCodec<?>> CODECS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, UnaryOperator<Component>> COPIES = new ConcurrentHashMap<>();
+
+    static {
+        registerCodec(Transform.CODEC);
+        registerCopy(Hierarchy.class, Hierarchy::copy);
+    }
+
+    private final EntityManager owner;
+    private final long tick;
+    private final EntityAllocator entities;
+    private final Tags tags;
+    private final Map<Class<?>, Column> columns;
+    private final Map<SnapshotExtension<?>, Object> extensions;
+    private final int sharedColumnCount;
+    private final int deltaColumnCount;
+
+    private boolean recycled;
+
+    WorldSnapshot(final EntityManager owner,
+                  final long tick,
+                  final EntityAllocator entities,
+                  final Tags tags,
+                  final Map<Class<?>, Column> columns,
+                  final Map<SnapshotExtension<?>, Object> extensions,
+                  final int sharedColumnCount,
+                  final int deltaColumnCount) {
+        this.owner = owner;
+        this.tick = tick;
+        this.entities = entities;
+        this.tags = tags;
+        this.columns = columns;
+        this.extensions = extensions;
+        this.sharedColumnCount = sharedColumnCount;
+        this.deltaColumnCount = deltaColumnCount;
+    }
+
+    /**
+     * Registers a codec, with which every snapshot from then on flattens components of the codec's exact type.
+     */
+    public static void registerCodec(final ComponentCodec<?> codec) {
+        CODECS.put(codec.type(), codec);
+    }
+
+    /**
+     * Registers a copy function, with which every snapshot from then on copies components of the given exact type that
+     * have no codec, rather than holding them by reference. The function must return a new component, sharing no
+     * state which is changed in place with the one given.
+     */
+    public static <T extends Component> void registerCopy(final Class<T> type, final UnaryOperator<T> copy) {
+        COPIES.put(type, component -> copy.apply(type.cast(component)));
+    }
+
+    static ComponentCodec<?> codecOf(final Class<?> type) {
+        return CODECS.get(type);
+    }
+
+    /**
+     * Returns the copy function registered for the given type, or null if it has none. Fails if the type has none but
+     * is changed in place by design (i.e. is Tracked).
+     */
+    static UnaryOperator<Component> copyOf(final Class<?> type) {
+        final var copy = COPIES.get(type);
+        if (copy == null && Tracked.class.isAssignableFrom(type)) {
+            throw new IllegalStateException(String.format(
+                "Cannot snapshot %s, which is changed in place: register a codec or copy function for it",
+                type.getName()));
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the tick of the manager's clock (see EntityManager::currentTick) at which this snapshot was captured.
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Returns the number of live entities in this snapshot.
+     */
+    public int getEntityCount() {
+        return this.entities.size();
+    }
+
+    /**
+     * Returns the number of component columns (i.e. concrete component types held by at least one entity).
+     */
+    public int getColumnCount() {
+        return this.columns.size();
+    }
+
+    /**
+     * Returns the number of columns shared, unchanged, with the previous snapshot this one was captured against.
+     */
+    public int getSharedColumnCount() {
+        return this.sharedColumnCount;
+    }
+
+    /**
+     * Returns the number of columns stored as a delta over the previous snapshot this one was captured against.
+     */
+    public int getDeltaColumnCount() {
+        return this.deltaColumnCount;
+    }
+
+    /**
+     * Invokes the given consumer once for every component which differs between this snapshot and the given one: held
+     * by an entity in only one of them, or held by both with a different state (or, for components captured by
+     * reference or copy, a different instance -- so every copied component differs). Columns shared between the two
+     * snapshots are skipped without being read.
+     */
+    public void forEachDifference(final WorldSnapshot other,
+                                  final BiConsumer<Entity, Class<? extends Component>> consumer) {
+        checkNotRecycled();
+        other.checkNotRecycled();
+        final var types = new HashSet<Class<?>>(this.columns.keySet());
+        types.addAll(other.columns.keySet());
+        for (final var type : types) {
+            final var mine = this.columns.get(type);
+            final var theirs = other.columns.get(type);
+            if (mine != theirs) {
+                @SuppressWarnings("unchecked") Class<? extends Component> componentType =
+                    (Class<? extends Component>) type;
+                diff(mine, theirs, componentType, consumer);
+            }
+        }
+    }
+
+    private static void diff(final Column mine,
+                             final Column theirs,
+                             final Class<? extends Component> type,
+                             final BiConsumer<Entity, Class<? extends Component>> consumer) {
+        final var myState = mine == null ? null : mine.materialize();
+        final var theirState = theirs == null ? null : theirs.materialize();
+
+        final var theirPositions = new HashMap<Long, Integer>();
+        if (theirs != null) {
+            for (var i = 0; i < theirs.size; i++) {
+                theirPositions.put(theirs.ids[i], i);
+            }
+        }
+        if (mine != null) {
+            for (var i = 0; i < mine.size; i++) {
+                final var position = theirPositions.remove(mine.ids[i]);
+                if (position == null || !Column.sameState(mine, myState, i, theirs, theirState, position)) {
+                    consumer.accept(new Entity(mine.ids[i]), type);
+                }
+            }
+        }
+        for (final var id : theirPositions.keySet()) {
+            consumer.accept(new Entity(id), type);
+        }
+    }
+
+    EntityManager owner() {
+        return this.owner;
+    }
+
+    EntityAllocator entities() {
+        return this.entities;
+    }
+
+    Tags tags() {
+        return this.tags;
+    }
+
+    Column column(final Class<?> type) {
+        return this.columns.get(type);
+    }
+
+    Map<Class<?>, Column> columns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the state captured from each snapshot extension registered with the manager at the time of capture.
+     */
+    Map<SnapshotExtension<?>, Object> extensions() {
+        return this.extensions;
+    }
+
+    void markRecycled() {
+        checkNotRecycled();
+        this.recycled = true;
+    }
+
+    void checkNotRecycled() {
+        if (this.recycled) {
+            throw new IllegalStateException("Snapshot has been recycled: " + this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WorldSnapshot["
+            + "tick=" + this.tick + ", "
+            + "entityCount=" + getEntityCount() + ", "
+            + "columnCount=" + getColumnCount() + ", "
+            + "sharedColumnCount=" + this.sharedColumnCount + ", "
+            + "deltaColumnCount=" + this.deltaColumnCount
+            + ']';
+    }
+
+    /**
+     * The components of one concrete type: either flattened by the type's codec (in full, or as a delta over a base
+     * column with the same entities), or held directly -- as copies, if the type has a copy function, otherwise by
+     * reference. The ids and data arrays may be longer than needed, having been recycled.
+     */
+    static final class Column {
+
+        final ComponentCodec<?> codec;
+        final UnaryOperator<Component> copy;
+        final long[] ids;
+        final int size;
+        final float[] data;
+        final Component[] components;
+        final Column base;
+        final int[] deltaPositions;
+        final int depth;
+
+        /*
+         * The column whose ids array this one shares (itself, if it allocated the array), and the number of snapshots and
+         * columns which refer to this one. Both are used only by WorldSnapshots, to recycle the arrays of columns no
+         * longer referred to.
+         */
+        final Column idsOwner;
+        int references;
+
+        private Column(final ComponentCodec<?> codec,
+                       final UnaryOperator<Component> copy,
+                       final long[] ids,
+                       final Column idsOwner,
+                       final int size,
+                       final float[] data,
+                       final Component[] components,
+                       final Column base,
+                       final int[] deltaPositions) {
+            this.codec = codec;
+            this.copy = copy;
+            this.ids = ids;
+            this.idsOwner = idsOwner == null ? this : idsOwner;
+            this.size = size;
+            this.data = data;
+            this.components = components;
+            this.base = base;
+            this.deltaPositions = deltaPositions;
+            this.depth = base == null ? 0 : base.depth + 1;
+            if (idsOwner != null) {
+                idsOwner.references++;
+            }
+            if (base != null) {
+                base.references++;
+            }
+        }
+
+        static Column flattened(final ComponentCodec<?> codec, final long[] ids, final int size, final float[] data) {
+            return new Column(codec, null, ids, null, size, data, null, null, null);
+        }
+
+        /**
+         * A column with the same entities as the given one, with the given state.
+         */
+        static Column flattened(final ComponentCodec<?> codec, final Column sameEntities, final float[] data) {
+            return new Column(codec, null, sameEntities.ids, sameEntities.idsOwner, sameEntities.size, data, null, null,
+                null);
+        }
+
+        /**
+         * A column with the same entities as the base, of which those at the given positions have the given state.
+         */
+        static Column delta(final Column base, final int[] positions, final float[] data) {
+            return new Column(base.codec, null, base.ids, base.idsOwner, base.size, data, null, base, positions);
+        }
+
+        static Column held(final UnaryOperator<Component> copy,
+                           final long[] ids,
+                           final int size,
+                           final Component[] components) {
+            return new Column(null, copy, ids, null, size, null, components, null, null);
+        }
+
+        /**
+         * A column with the same entities as the given one, holding the given components.
+         */
+        static Column held(final UnaryOperator<Component> copy,
+                           final Column sameEntities,
+                           final Component[] components) {
+            return new Column(null, copy, sameEntities.ids, sameEntities.idsOwner, sameEntities.size, null, components,
+                null, null);
+        }
+
+        /**
+         * Writes the flattened state of every component in this column to dest, which must hold size * width floats.
+         */
+        void materialize(final float[] dest) {
+            if (this.base == null) {
+                System.arraycopy(this.data, 0, dest, 0, this.size * this.codec.width());
+                return;
+            }
+            this.base.materialize(dest);
+            final var width = this.codec.width();
+            for (var i = 0; i < this.deltaPositions.length; i++) {
+                System.arraycopy(this.data, i * width, dest, this.deltaPositions[i] * width, width);
+            }
+        }
+
+        private float[] materialize() {
+            if (this.codec == null) {
+                return null;
+            }
+            final var state = new float[this.size * this.codec.width()];
+            materialize(state);
+            return state;
+        }
+
+        private static boolean sameState(final Column mine,
+                                         final float[] myState,
+                                         final int myPosition,
+                                         final Column theirs,
+                                         final float[] theirState,
+                                         final int theirPosition) {
+            if (mine.codec == null || theirs.codec == null) {
+                return mine.codec == theirs.codec
+                    && mine.components[myPosition] == theirs.components[theirPosition];
+            }
+            final var width = mine.codec.width();
+            for (var i = 0; i < width; i++) {
+                if (Float.compare(myState[myPosition * width + i], theirState[theirPosition * width + i]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.drewmalin.snickerdoodle.engine.ecs.entity;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.ComponentCodec;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Captures and restores the {@link WorldSnapshot}s of one {@link EntityManager}, through the manager's own public
+ * methods plus its allocator and tags. The scratch arrays into which each column is gathered are kept between calls, so
+ * that a capture allocates only what the snapshot itself stores -- and even that is taken, where possible, from the
+ * snapshots handed back to recycle. A column's arrays are reused once no snapshot, and no other column (as a delta over
+ * it, or sharing its ids), still refers to it.
+ * <p>
+ * This class performs no locking of its own beyond holding the given lock while touching the allocator and tags;
+ * snapshot and restore must not run concurrently with any other use of the manager.
+ */
+final class WorldSnapshots {
+
+    /**
+     * The longest chain of delta columns read through on restore, after which a column is stored in full again.
+     */
+    private static final int MAX_DELTA_DEPTH = 8;
+
+    /**
+     * The largest fraction (as a divisor) of a column's components which may change for it to be stored as a delta.
+     */
+    private static final int DELTA_DIVISOR = 4;
+
+    /**
+     * The most recycled arrays of each kind kept for reuse.
+     */
+    private static final int MAX_FREE = 32;
+
+    private final EntityManager manager;
+    private final EntityAllocator entities;
+    private final Tags tags;
+    private final Object lock;
+    private final Consumer<Entity> adopt;
+    private final List<SnapshotExtension<?>> extensions;
+
+    private Entity[] gathered;
+    private Component[] components;
+    private int count;
+    private int[] changed;
+    private float[] state;
+    private final BitSet indices;
+
+    private final List<float[]> freeData;
+    private final List<long[]> freeIds;
+    private Map<Class<?>, WorldSnapshot.Column> freeColumns;
+
+    /**
+     * The adopt function is called, after the allocator has been restored, for each entity which is alive in the
+     * snapshot but was not alive in the manager: it must do whatever the manager's newEntity does besides allocating.
+     */
+    WorldSnapshots(final EntityManager manager,
+                   final EntityAllocator entities,
+                   final Tags tags,
+                   final Object lock,
+                   final Consumer<Entity> adopt) {
+        this.manager = manager;
+        this.entities = entities;
+        this.tags = tags;
+        this.lock = lock;
+        this.adopt = adopt;
+        this.extensions = new CopyOnWriteArrayList<>();
+        this.gathered = new Entity[64];
+        this.components = new Component[64];
+        this.changed = new int[64];
+        this.state = new float[0];
+        this.indices = new BitSet();
+        this.freeData = new ArrayList<>();
+        this.freeIds = new ArrayList<>();
+    }
+
+    void register(final SnapshotExtension<?> extension) {
+        this.extensions.add(extension);
+    }
+
+    WorldSnapshot capture(final WorldSnapshot previous) {
+        if (previous != null) {
+            previous.checkNotRecycled();
+        }
+
+        /*
+         * A snapshot of another manager shares nothing with this one.
+         */
+        final var base = previous != null && previous.owner() == this.manager ? previous : null;
+        final var tick = this.manager.currentTick();
+
+        final EntityAllocator entities;
+        final Tags tags;
+        synchronized (this.lock) {
+            entities = base != null && base.entities().version() == this.entities.version()
+                ? base.entities()
+                : this.entities.copy();
+            tags = base != null && base.tags().version() == this.tags.version()
+                ? base.tags()
+                : this.tags.copy();
+        }
+
+        final var columns = this.freeColumns == null ? new HashMap<Class<?>, WorldSnapshot.Column>() : this.freeColumns;
+        this.freeColumns = null;
+        var shared = 0;
+        var deltas = 0;
+        for (final var componentType : ComponentType.all()) {
+            final var type = componentType.type();
+            if (!isConcrete(type)) {
+                continue;
+            }
+            gather(type);
+            if (this.count == 0) {
+                continue;
+            }
+
+            final var previousColumn = base == null ? null : base.column(type);
+            final var column = capture(type, previousColumn, base == null ? 0 : base.getTick());
+            if (column == previousColumn) {
+                shared++;
+            }
+            else if (column.base != null) {
+                deltas++;
+            }
+            column.references++;
+            columns.put(type, column);
+        }
+        clearGathered();
+
+        final var extensions = new IdentityHashMap<SnapshotExtension<?>, Object>();
+        for (final var extension : this.extensions) {
+            extensions.put(extension, extension.capture());
+        }
+        return new WorldSnapshot(this.manager, tick, entities, tags, columns, extensions, shared, deltas);
+    }
+
+    /**
+     * Hands back a snapshot which will not be used again, so that later captures may reuse its arrays.
+     */
+    void recycle(final WorldSnapshot snapshot) {
+        if (snapshot.owner() != this.manager) {
+            throw new IllegalArgumentException("Snapshot was not captured by this manager: " + snapshot);
+        }
+        snapshot.markRecycled();
+        final var columns = snapshot.columns();
+        for (final var column : columns.values()) {
+            release(column);
+        }
+        columns.clear();
+        this.freeColumns = columns;
+    }
+
+    /**
+     * Drops one reference to the given column, recycling its arrays (and dropping its own references) if it was the
+     * last.
+     */
+    private void release(final WorldSnapshot.Column column) {
+        if (--column.references > 0) {
+            return;
+        }
+        if (column.data != null && this.freeData.size() < MAX_FREE) {
+            this.freeData.add(column.data);
+        }
+        if (column.idsOwner == column) {
+            if (this.freeIds.size() < MAX_FREE) {
+                this.freeIds.add(column.ids);
+            }
+        }
+        else {
+            release(column.idsOwner);
+        }
+        if (column.base != null) {
+            release(column.base);
+        }
+    }
+
+    /**
+     * Returns the column for the gathered components of the given type: the previous column, if nothing has changed;
+     * otherwise a delta over it, if few of the same entities' components have changed; otherwise a new column.
+     */
+    private WorldSnapshot.Column capture(final Class<?> type,
+                                         final WorldSnapshot.Column last,
+                                         final long since) {
+        /*
+         * A column stored differently (i.e. captured before the type's codec or copy function was registered) is not
+         * reused.
+         */
+        final var codec = WorldSnapshot.codecOf(type);
+        final var copy = codec == null ? WorldSnapshot.copyOf(type) : null;
+        final var previous = last != null && last.codec == codec && last.copy == copy ? last : null;
+        final var sameEntities = previous != null && sameEntities(previous);
+        if (codec == null) {
+            /*
+             * Components held by reference are unchanged if the same instances are still held. Copies are taken afresh,
+             * as their originals may since have been changed in place.
+             */
+            if (copy == null && sameEntities && sameComponents(previous)) {
+                return previous;
+            }
+            final var components = new Component[this.count];
+            for (var i = 0; i < this.count; i++) {
+                components[i] = copy == null ? this.components[i] : copy.apply(this.components[i]);
+            }
+            return sameEntities
+                ? WorldSnapshot.Column.held(copy, previous, components)
+                : WorldSnapshot.Column.held(copy, ids(), this.count, components);
+        }
+
+        if (!sameEntities) {
+            return WorldSnapshot.Column.flattened(codec, ids(), this.count, write(codec, null, this.count));
+        }
+
+        var changedCount = 0;
+        if (this.changed.length < this.count) {
+            this.changed = new int[this.gathered.length];
+        }
+        for (var i = 0; i < this.count; i++) {
+            if (this.manager.getChangedTick(this.gathered[i], this.components[i].getClass()) >= since) {
+                this.changed[changedCount++] = i;
+            }
+        }
+
+        if (changedCount == 0) {
+            return previous;
+        }
+        if (changedCount <= this.count / DELTA_DIVISOR && previous.depth < MAX_DELTA_DEPTH) {
+            final var positions = Arrays.copyOf(this.changed, changedCount);
+            return WorldSnapshot.Column.delta(previous, positions, write(codec, positions, changedCount));
+        }
+        return WorldSnapshot.Column.flattened(codec, previous, write(codec, null, this.count));
+    }
+
+    void restore(final WorldSnapshot snapshot) {
+        snapshot.checkNotRecycled();
+
+        /*
+         * Step 1: destroy every live entity which is not alive in the snapshot, and note those which are.
+         */
+        this.indices.clear();
+        final int capacity;
+        synchronized (this.lock) {
+            capacity = this.entities.indexCapacity();
+        }
+        for (var index = 0; index < capacity; index++) {
+            final Entity entity;
+            synchronized (this.lock) {
+                entity = this.entities.entityAt(index);
+            }
+            if (entity == null) {
+                continue;
+            }
+            if (snapshot.entities().isAlive(entity)) {
+                this.indices.set(index);
+            }
+            else {
+                this.manager.destroyEntity(entity);
+            }
+        }
+
+        /*
+         * Step 2: restore the allocator, then bring every other entity alive in the snapshot into the manager, and
+         * restore the tags over them.
+         */
+        synchronized (this.lock) {
+            this.entities.restoreFrom(snapshot.entities());
+        }
+        final var restored = snapshot.entities();
+        for (var index = 0; index < restored.indexCapacity(); index++) {
+            final var entity = restored.entityAt(index);
+            if (entity != null && !this.indices.get(index)) {
+                this.adopt.accept(entity);
+            }
+        }
+        synchronized (this.lock) {
+            this.tags.restoreFrom(snapshot.tags());
+        }
+
+        /*
+         * Step 3: restore each column, writing flattened state into the existing components where possible, then
+         * remove the components which were put since the snapshot was captured.
+         */
+        for (final var componentType : ComponentType.all()) {
+            final var type = componentType.type();
+            if (isConcrete(type)) {
+                restore(type, snapshot.column(type));
+            }
+        }
+        clearGathered();
+
+        /*
+         * Step 4: restore the state of every extension registered when the snapshot was captured.
+         */
+        for (final var extension : this.extensions) {
+            if (snapshot.extensions().containsKey(extension)) {
+                restore(extension, snapshot.extensions().get(extension));
+            }
+        }
+    }
+
+    private static <S> void restore(final SnapshotExtension<S> extension, final Object state) {
+        @SuppressWarnings("unchecked") final S typed = (S) state;
+        extension.restore(typed);
+    }
+
+    private void restore(final Class<?> type, final WorldSnapshot.Column column) {
+        this.indices.clear();
+        if (column != null) {
+            if (column.codec != null) {
+                final var length = column.size * column.codec.width();
+                if (this.state.length < length) {
+                    this.state = new float[length];
+                }
+                column.materialize(this.state);
+            }
+            for (var i = 0; i < column.size; i++) {
+                final var entity = new Entity(column.ids[i]);
+                this.indices.set(entity.index());
+                if (column.codec != null) {
+                    restore(column.codec, entity, i * column.codec.width());
+                }
+                else if (column.copy != null) {
+                    this.manager.putComponent(entity, column.copy.apply(column.components[i]));
+                }
+                else if (this.manager.getComponentOrNull(entity, column.components[i].getClass())
+                    != column.components[i]) {
+                    this.manager.putComponent(entity, column.components[i]);
+                }
+            }
+        }
+
+        gather(type);
+        for (var i = 0; i < this.count; i++) {
+            if (!this.indices.get(this.gathered[i].index())) {
+                this.manager.removeComponent(this.gathered[i], this.components[i].getClass());
+            }
+        }
+    }
+
+    private <T extends Component> void restore(final ComponentCodec<T> codec, final Entity entity, final int offset) {
+        final var current = this.manager.getComponentOrNull(entity, codec.type());
+        if (current != null && current.getClass() == codec.type()) {
+            codec.read(this.state, offset, current);
+            return;
+        }
+        final var component = codec.create();
+        codec.read(this.state, offset, component);
+        this.manager.putComponent(entity, component);
+    }
+
+    /**
+     * Gathers every entity holding a component of exactly the given type, with that component, into the scratch
+     * arrays.
+     */
+    private void gather(final Class<?> type) {
+        this.count = 0;
+        @SuppressWarnings("unchecked") Class<? extends Component> componentType = (Class<? extends Component>) type;
+        this.manager.forEachComponent(componentType, (entity, component) -> {
+            if (component.getClass() != type) {
+                return;
+            }
+            if (this.count == this.gathered.length) {
+                this.gathered = Arrays.copyOf(this.gathered, this.count * 2);
+                this.components = Arrays.copyOf(this.components, this.count * 2);
+            }
+            this.gathered[this.count] = entity;
+            this.components[this.count++] = component;
+        });
+    }
+
+    /**
+     * Drops the scratch arrays' references, so that they do not keep destroyed entities' components reachable.
+     */
+    private void clearGathered() {
+        Arrays.fill(this.components, null);
+        this.count = 0;
+    }
+
+    private boolean sameEntities(final WorldSnapshot.Column column) {
+        if (column.size != this.count) {
+            return false;
+        }
+        for (var i = 0; i < this.count; i++) {
+            if (column.ids[i] != this.gathered[i].id()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameComponents(final WorldSnapshot.Column column) {
+        for (var i = 0; i < this.count; i++) {
+            if (column.components[i] != this.components[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] ids() {
+        final var ids = takeIds(this.count);
+        for (var i = 0; i < this.count; i++) {
+            ids[i] = this.gathered[i].id();
+        }
+        return ids;
+    }
+
+    /**
+     * Flattens the gathered components at the given positions (or, if null, the first count) into a new (or recycled)
+     * array.
+     */
+    private <T extends Component> float[] write(final ComponentCodec<T> codec, final int[] positions, final int count) {
+        final var width = codec.width();
+        final var data = takeData(count * width);
+        for (var i = 0; i < count; i++) {
+            final var component = this.components[positions == null ? i : positions[i]];
+            @SuppressWarnings("unchecked") T typed = (T) component;
+            codec.write(typed, data, i * width);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the shortest recycled float array of at least the given length, or a new one if there is none.
+     */
+    private float[] takeData(final int length) {
+        var best = -1;
+        for (var i = 0; i < this.freeData.size(); i++) {
+            final var candidate = this.freeData.get(i).length;
+            if (candidate >= length && (best == -1 || candidate < this.freeData.get(best).length)) {
+                best = i;
+            }
+        }
+        if (best == -1) {
+            return new float[length];
+        }
+        final var data = this.freeData.get(best);
+        this.freeData.set(best, this.freeData.get(this.freeData.size() - 1));
+        this.freeData.remove(this.freeData.size() - 1);
+        return data;
+    }
+
+    /**
+     * Returns the shortest recycled long array of at least the given length, or a new one if there is none.
+     */
+    private long[] takeIds(final int length) {
+        var best = -1;
+        for (var i = 0; i < this.freeIds.size(); i++) {
+            final var candidate = this.freeIds.get(i).length;
+            if (candidate >= length && (best == -1 || candidate < this.freeIds.get(best).length)) {
+                best = i;
+            }
+        }
+        if (best == -1) {
+            return new long[length];
+        }
+        final var ids = this.freeIds.get(best);
+        this.freeIds.set(best, this.freeIds.get(this.freeIds.size() - 1));
+        this.freeIds.remove(this.freeIds.size() - 1);
+        return ids;
+    }
+
+    private static boolean isConcrete(final Class<?> type) {
+        return !type.isInterface() && !Modifier.isAbstract(type.getModifiers());
+    }
+}
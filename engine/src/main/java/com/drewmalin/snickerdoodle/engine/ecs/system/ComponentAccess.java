@@ -0,0 +1,78 @@
+package com.drewmalin.snickerdoodle.engine.ecs.system;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The component types a unit of work (a script, or a system) reads and writes, declared so that it may be run
+ * concurrently with others it cannot interfere with. Two declarations conflict if either writes a type the other reads
+ * or writes; types are compared by assignability, so writing Color conflicts with reading Material.
+ */
+public record ComponentAccess(Set<Class<? extends Component>> reads, Set<Class<? extends Component>> writes) {
+
+    public ComponentAccess {
+        reads = Set.copyOf(reads);
+        writes = Set.copyOf(writes);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns true if this and the given access may not run concurrently.
+     */
+    public boolean conflictsWith(final ComponentAccess other) {
+        return overlaps(this.writes, other.writes)
+            || overlaps(this.writes, other.reads)
+            || overlaps(this.reads, other.writes);
+    }
+
+    /**
+     * Returns true if this reads any type it also writes.
+     */
+    public boolean readsWrittenTypes() {
+        return overlaps(this.reads, this.writes);
+    }
+
+    private static boolean overlaps(final Set<Class<? extends Component>> a, final Set<Class<? extends Component>> b) {
+        for (final var x : a) {
+            for (final var y : b) {
+                if (x.isAssignableFrom(y) || y.isAssignableFrom(x)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static class Builder {
+
+        private final Set<Class<? extends Component>> reads;
+        private final Set<Class<? extends Component>> writes;
+
+        private Builder() {
+            this.reads = new HashSet<>();
+            this.writes = new HashSet<>();
+        }
+
+        @SafeVarargs
+        public final Builder reads(final Class<? extends Component>... types) {
+            this.reads.addAll(Arrays.asList(types));
+            return this;
+        }
+
+        @SafeVarargs
+        public final Builder writes(final Class<? extends Component>... types) {
+            this.writes.addAll(Arrays.asList(types));
+            return this;
+        }
+
+        public ComponentAccess build() {
+            return new ComponentAccess(this.reads, this.writes);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.drewmalin.snickerdoodle.engine.ecs.system;
+
+import com.drewmalin.snickerdoodle.engine.Engine;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Hierarchy;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Transform;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Query;
+import com.drewmalin.snickerdoodle.engine.scene.Scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Propagates world matrices down the entity hierarchy, breadth-first: every root is processed, then every child of a
+ * root, and so on. Within a level, each entity depends only on its parent (already processed), so the level is
+ * recomputed as one batch -- in parallel, once the batch is large enough to be worth it.
+ * <p>
+ * Only stale entities are recomputed: those whose own Transform has changed, whose parent has changed, or whose
+ * parent's world matrix was itself recomputed. A static scene therefore costs one pass over the hierarchy to find
+ * that nothing has changed, and no matrix math.
+ */
+public class DefaultHierarchySystem
+    implements HierarchySystem {
+
+    private static final Query HIERARCHY = Query.of(Hierarchy.class);
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    private static final int UNVISITED = -1;
+    private static final int VISITING = -2;
+
+    private final List<List<Entity>> levels;
+
+    /*
+     * The depth of every entity within the hierarchy, indexed by Entity::index, computed afresh on every update.
+     */
+    private int[] depths;
+
+    /*
+     * The stale entities of the level being processed, reused across levels and updates.
+     */
+    private Hierarchy[] staleNodes;
+    private Hierarchy[] staleParents;
+    private Transform[] staleLocals;
+    private long[] staleTicks;
+
+    public DefaultHierarchySystem() {
+        this.levels = new ArrayList<>();
+        this.depths = new int[0];
+        this.staleNodes = new Hierarchy[0];
+        this.staleParents = new Hierarchy[0];
+        this.staleLocals = new Transform[0];
+        this.staleTicks = new long[0];
+    }
+
+    @Override
+    public void update(final Engine engine, final Scene scene) {
+        final var entityManager = scene.getEntityManager();
+        final var nodes = entityManager.query(HIERARCHY);
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        /*
+         * Step 1: bucket every entity by its depth in the hierarchy.
+         */
+        for (final var level : this.levels) {
+            level.clear();
+        }
+        Arrays.fill(this.depths, UNVISITED);
+        for (var i = 0; i < nodes.size(); i++) {
+            final var entity = nodes.get(i);
+            final var depth = depthOf(entity, entityManager);
+            while (this.levels.size() <= depth) {
+                this.levels.add(new ArrayList<>());
+            }
+            this.levels.get(depth).add(entity);
+        }
+
+        /*
+         * Step 2: walk the levels top-down, recomputing the stale entities of each level as a batch.
+         */
+        for (final var level : this.levels) {
+            final var staleCount = collectStale(level, entityManager);
+            if (staleCount >= PARALLEL_THRESHOLD) {
+                IntStream.range(0, staleCount).parallel().forEach(this::recompute);
+            }
+            else {
+                for (var i = 0; i < staleCount; i++) {
+                    recompute(i);
+                }
+            }
+            Arrays.fill(this.staleNodes, 0, staleCount, null);
+            Arrays.fill(this.staleParents, 0, staleCount, null);
+            Arrays.fill(this.staleLocals, 0, staleCount, null);
+        }
+    }
+
+    @Override
+    public void destroy() {
+
+    }
+
+    private int collectStale(final List<Entity> level, final EntityManager entityManager) {
+        ensureStaleCapacity(level.size());
+
+        var count = 0;
+        for (final var entity : level) {
+            final var node = entityManager.getComponent(entity, Hierarchy.class).orElseThrow();
+
+            /*
+             * An entity at depth 0 is a root -- even one whose parent exists but closes a cycle (or is itself), which
+             * would otherwise be computed from its own descendants' matrices.
+             */
+            final var parent = this.depths[entity.index()] == 0 ? null : parentOf(node, entityManager);
+            final var localTick = entityManager.getChangedTick(entity, Transform.class);
+            if (node.isStale(localTick, parent)) {
+                this.staleNodes[count] = node;
+                this.staleParents[count] = parent;
+                this.staleLocals[count] = entityManager.getComponent(entity, Transform.class).orElse(null);
+                this.staleTicks[count] = localTick;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void recompute(final int i) {
+        this.staleNodes[i].update(this.staleLocals[i], this.staleTicks[i], this.staleParents[i]);
+    }
+
+    /**
+     * Returns the depth of the given entity: 0 for a root, or one more than the depth of its parent. An entity whose
+     * parent no longer exists (or is not itself part of the hierarchy), or whose parent closes a cycle, is treated as a
+     * root. Returns VISITING if the entity is already being visited -- i.e. it is part of a cycle.
+     */
+    private int depthOf(final Entity entity, final EntityManager entityManager) {
+        final var index = entity.index();
+        if (index >= this.depths.length) {
+            final var oldLength = this.depths.length;
+            this.depths = Arrays.copyOf(this.depths, Math.max(index + 1, oldLength * 2));
+            Arrays.fill(this.depths, oldLength, this.depths.length, UNVISITED);
+        }
+        if (this.depths[index] != UNVISITED) {
+            return this.depths[index];
+        }
+
+        this.depths[index] = VISITING;
+        final var node = entityManager.getComponent(entity, Hierarchy.class).orElseThrow();
+        final var parentDepth = parentOf(node, entityManager) == null
+            ? VISITING
+            : depthOf(node.getParent(), entityManager);
+        final var depth = parentDepth < 0 ? 0 : parentDepth + 1;
+        this.depths[index] = depth;
+        return depth;
+    }
+
+    private static Hierarchy parentOf(final Hierarchy node, final EntityManager entityManager) {
+        final var parent = node.getParent();
+        return parent == null ? null : entityManager.getComponent(parent, Hierarchy.class).orElse(null);
+    }
+
+    private void ensureStaleCapacity(final int capacity) {
+        if (capacity <= this.staleNodes.length) {
+            return;
+        }
+        final var newCapacity = Math.max(capacity, this.staleNodes.length * 2);
+        this.staleNodes = Arrays.copyOf(this.staleNodes, newCapacity);
+        this.staleParents = Arrays.copyOf(this.staleParents, newCapacity);
+        this.staleLocals = Arrays.copyOf(this.staleLocals, newCapacity);
+        this.staleTicks = Arrays.copyOf(this.staleTicks, newCapacity);
+    }
+}
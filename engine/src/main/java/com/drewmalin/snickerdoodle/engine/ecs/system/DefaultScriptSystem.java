@@ -1,12 +1,26 @@
 package com.drewmalin.snickerdoodle.engine.ecs.system;
 
 import com.drewmalin.snickerdoodle.engine.Engine;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Query;
 import com.drewmalin.snickerdoodle.engine.scene.Scene;
+import com.drewmalin.snickerdoodle.engine.script.BatchScript;
 import com.drewmalin.snickerdoodle.engine.script.Script;
 
+/**
+ * Invokes every script, one entity at a time, on the calling thread -- except {@link BatchScript}s, each of which is
+ * invoked once for all of the entities it is attached to, after the other scripts.
+ */
 public class DefaultScriptSystem
     implements ScriptSystem {
 
+    private static final Query SCRIPTED = Query.of(Script.class);
+
+    private final ScriptBatches batches;
+
+    public DefaultScriptSystem() {
+        this.batches = new ScriptBatches();
+    }
+
     @Override
     public void update(final Engine engine, final Scene scene, final double dt) {
         if (engine.getState() == Engine.State.PAUSED) {
@@ -14,8 +28,26 @@ public class DefaultScriptSystem
         }
 
         final var entityManager = scene.getEntityManager();
-        for (final var entity : entityManager.getEntitiesWithComponent(Script.class)) {
-            entityManager.getComponent(entity, Script.class).get().invoke(entity, entityManager, dt);
+        /*
+         * Scripts iterate a live query result, so structural changes made from within a script should be recorded on
+         * the entity manager's command buffer, which the engine plays back once every system has updated.
+         */
+        final var scripted = entityManager.query(SCRIPTED);
+        scripted.forEach(Script.class, (entity, script) -> {
+            if (script instanceof BatchScript<?> batchScript) {
+                this.batches.count(batchScript);
+            }
+            else {
+                script.invoke(entity, entityManager, dt);
+            }
+        });
+
+        try {
+            this.batches.fill(entityManager, scripted);
+            this.batches.run(entityManager, dt);
+        }
+        finally {
+            this.batches.clear();
         }
     }
 
@@ -0,0 +1,13 @@
+package com.drewmalin.snickerdoodle.engine.ecs.system;
+
+import com.drewmalin.snickerdoodle.engine.Engine;
+import com.drewmalin.snickerdoodle.engine.scene.Scene;
+
+/**
+ * Keeps the world matrices of every entity with a {@link com.drewmalin.snickerdoodle.engine.ecs.component.Hierarchy}
+ * up to date.
+ */
+public interface HierarchySystem extends System {
+
+    void update(Engine engine, Scene scene);
+}
@@ -0,0 +1,286 @@
+package com.drewmalin.snickerdoodle.engine.ecs.system;
+
+import com.drewmalin.snickerdoodle.engine.Engine;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Query;
+import com.drewmalin.snickerdoodle.engine.scene.Scene;
+import com.drewmalin.snickerdoodle.engine.script.BatchScript;
+import com.drewmalin.snickerdoodle.engine.script.ParallelScript;
+import com.drewmalin.snickerdoodle.engine.script.Script;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A {@link ScriptSystem} which runs {@link ParallelScript}s on a work-stealing pool. Each update:
+ * <ol>
+ *     <li>every script which does not declare its access is invoked first, one at a time, on the calling thread --
+ *     exactly as DefaultScriptSystem would, including invoking each BatchScript once for all of its entities;</li>
+ *     <li>the declared scripts are grouped by their access, and the groups packed into stages, such that no two groups
+ *     in a stage conflict (see ComponentAccess::conflictsWith);</li>
+ *     <li>the stages run one after another. Within a stage, every group runs at once, and each group's entities are
+ *     split into chunks which idle workers steal from busy ones -- unless the group reads what it writes, in which case
+ *     its entities are run one at a time (but still alongside the stage's other groups).</li>
+ * </ol>
+ * The update returns once every script has run. Scripts run concurrently look components up through the entity manager
+ * from many threads, which every manager allows while nothing changes it -- hence the ParallelScript contract's
+ * requirement that changes other than in-place writes go to the command buffer. They scale best on managers whose
+ * reads take no locks (all but the DefaultEntityManager).
+ */
+public class ParallelScriptSystem
+    implements ScriptSystem {
+
+    private static final Query SCRIPTED = Query.of(Script.class);
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final Group serial;
+    private final ScriptBatches batches;
+    private final Map<ComponentAccess, Group> groupsByAccess;
+    private final List<Group> groups;
+    private final List<List<Group>> stages;
+
+    public ParallelScriptSystem() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelScriptSystem(final ForkJoinPool pool) {
+        this.pool = pool;
+        this.serial = new Group(null);
+        this.batches = new ScriptBatches();
+        this.groupsByAccess = new HashMap<>();
+        this.groups = new ArrayList<>();
+        this.stages = new ArrayList<>();
+    }
+
+    @Override
+    public void update(final Engine engine, final Scene scene, final double dt) {
+        if (engine.getState() == Engine.State.PAUSED) {
+            return;
+        }
+
+        /*
+         * Step 1: sort this tick's scripts into the serial group, the batches and one group per declared access. Equal
+         * accesses share a group, however many instances of them the scripts return.
+         */
+        final var entityManager = scene.getEntityManager();
+        final var scripted = entityManager.query(SCRIPTED);
+        scripted.forEach(Script.class, (entity, script) -> {
+            if (script instanceof ParallelScript parallelScript) {
+                groupOf(parallelScript.getAccess()).add(entity, script);
+            }
+            else if (script instanceof BatchScript<?> batchScript) {
+                this.batches.count(batchScript);
+            }
+            else {
+                this.serial.add(entity, script);
+            }
+        });
+
+        try {
+            /*
+             * Step 2: run the undeclared scripts, and then the batches, which may touch anything, on their own.
+             */
+            this.serial.run(0, this.serial.size, entityManager, dt);
+            this.batches.fill(entityManager, scripted);
+            this.batches.run(entityManager, dt);
+
+            /*
+             * Step 3: run each stage of mutually non-conflicting groups on the pool.
+             */
+            for (final var stage : planStages()) {
+                if (this.pool.getParallelism() == 1) {
+                    for (final var group : stage) {
+                        group.run(0, group.size, entityManager, dt);
+                    }
+                }
+                else {
+                    this.pool.invoke(new StageTask(stage, entityManager, dt, chunkSize(stage)));
+                }
+            }
+        }
+        finally {
+            clear();
+        }
+    }
+
+    private Group groupOf(final ComponentAccess access) {
+        var group = this.groupsByAccess.get(access);
+        if (group == null) {
+            group = new Group(access);
+            this.groupsByAccess.put(access, group);
+            this.groups.add(group);
+        }
+        return group;
+    }
+
+    /**
+     * Packs this tick's non-empty groups into stages, placing each group into the first stage it conflicts with no
+     * member of.
+     */
+    private List<List<Group>> planStages() {
+        this.stages.clear();
+        for (final var group : this.groups) {
+            if (group.size == 0) {
+                continue;
+            }
+            List<Group> placed = null;
+            for (final var stage : this.stages) {
+                if (!conflictsWithAny(group, stage)) {
+                    placed = stage;
+                    break;
+                }
+            }
+            if (placed == null) {
+                placed = new ArrayList<>();
+                this.stages.add(placed);
+            }
+            placed.add(group);
+        }
+        return this.stages;
+    }
+
+    private static boolean conflictsWithAny(final Group group, final List<Group> stage) {
+        for (final var other : stage) {
+            if (group.access.conflictsWith(other.access)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int chunkSize(final List<Group> stage) {
+        var size = 0;
+        for (final var group : stage) {
+            size += group.size;
+        }
+        return Math.max(MIN_CHUNK_SIZE, size / (this.pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+    }
+
+    /**
+     * Empties every group, dropping those which held no scripts this tick (e.g. because the scripts declaring their
+     * access were removed).
+     */
+    private void clear() {
+        this.serial.clear();
+        this.batches.clear();
+        final var iterator = this.groups.iterator();
+        while (iterator.hasNext()) {
+            final var group = iterator.next();
+            if (group.size == 0) {
+                this.groupsByAccess.remove(group.access);
+                iterator.remove();
+            }
+            group.clear();
+        }
+        this.stages.clear();
+    }
+
+    @Override
+    public void destroy() {
+
+    }
+
+    /**
+     * The entities whose scripts share one access declaration, gathered anew each tick.
+     */
+    private static final class Group {
+
+        private final ComponentAccess access;
+        private final boolean selfConflicting;
+        private Entity[] entities;
+        private Script[] scripts;
+        private int size;
+
+        private Group(final ComponentAccess access) {
+            this.access = access;
+            this.selfConflicting = access == null || access.readsWrittenTypes();
+            this.entities = new Entity[16];
+            this.scripts = new Script[16];
+        }
+
+        void add(final Entity entity, final Script script) {
+            if (this.size == this.entities.length) {
+                this.entities = Arrays.copyOf(this.entities, this.size * 2);
+                this.scripts = Arrays.copyOf(this.scripts, this.size * 2);
+            }
+            this.entities[this.size] = entity;
+            this.scripts[this.size++] = script;
+        }
+
+        void run(final int from, final int to, final EntityManager entityManager, final double dt) {
+            for (var i = from; i < to; i++) {
+                this.scripts[i].invoke(this.entities[i], entityManager, dt);
+            }
+        }
+
+        void clear() {
+            Arrays.fill(this.scripts, 0, this.size, null);
+            this.size = 0;
+        }
+    }
+
+    private static final class StageTask
+        extends RecursiveAction {
+
+        private final List<Group> stage;
+        private final EntityManager entityManager;
+        private final double dt;
+        private final int chunkSize;
+
+        private StageTask(final List<Group> stage,
+                          final EntityManager entityManager,
+                          final double dt,
+                          final int chunkSize) {
+            this.stage = stage;
+            this.entityManager = entityManager;
+            this.dt = dt;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            final var tasks = new ArrayList<GroupTask>(this.stage.size());
+            for (final var group : this.stage) {
+                tasks.add(new GroupTask(group, 0, group.size, this));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private static final class GroupTask
+        extends RecursiveAction {
+
+        private final Group group;
+        private final int from;
+        private final int to;
+        private final StageTask stage;
+
+        private GroupTask(final Group group, final int from, final int to, final StageTask stage) {
+            this.group = group;
+            this.from = from;
+            this.to = to;
+            this.stage = stage;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.group.selfConflicting || this.to - this.from <= this.stage.chunkSize) {
+                this.group.run(this.from, this.to, this.stage.entityManager, this.stage.dt);
+                return;
+            }
+            final var middle = (this.from + this.to) >>> 1;
+            invokeAll(
+                new GroupTask(this.group, this.from, middle, this.stage),
+                new GroupTask(this.group, middle, this.to, this.stage)
+            );
+        }
+    }
+}
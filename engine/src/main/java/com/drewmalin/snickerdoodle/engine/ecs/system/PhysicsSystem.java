@@ -1,4 +1,5 @@
 package com.drewmalin.snickerdoodle.engine.ecs.system;
 
-public interface PhysicsSystem extends System{
+public interface PhysicsSystem
+    extends UpdateSystem {
 }
@@ -0,0 +1,157 @@
+package com.drewmalin.snickerdoodle.engine.ecs.system;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An {@link UpdateSystem} as registered with a {@link SystemScheduler}: its unique name, the systems it must run before
+ * and after (by name), and the components it reads and writes.
+ * <p>
+ * Systems which declare their access run concurrently with every other system they neither depend on nor conflict
+ * with. A system which declares no access may touch anything, and so is never run alongside another system.
+ * <p>
+ * The declaration is a contract, as for a ParallelScript. A system which declares its access may read components of
+ * its "reads" and "writes" types, and change components of its "writes" types in place. Every entity manager allows
+ * such reads from many threads at once, but only the ConcurrentEntityManager allows changes to the manager itself
+ * from them; so every other change -- spawning, destroying, adding, removing or replacing components -- must be
+ * recorded on the command buffer, which the scheduler plays back at the end of the stage.
+ * <p>
+ * By default a system updates once per engine update. A system may instead declare its own rate, in which case it is
+ * updated as many times per engine update as its rate requires (possibly none), each time with a fixed time step of
+ * 1 / rate seconds.
+ */
+public final class ScheduledSystem {
+
+    private final String name;
+    private final UpdateSystem system;
+    private final ComponentAccess access;
+    private final int updatesPerSecond;
+    private final Set<String> before;
+    private final Set<String> after;
+
+    private ScheduledSystem(final Builder builder) {
+        if (builder.name == null || builder.system == null) {
+            throw new IllegalArgumentException("A scheduled system requires a name and a system");
+        }
+        if (builder.updatesPerSecond < 0) {
+            throw new IllegalArgumentException("Updates per second cannot be negative: " + builder.updatesPerSecond);
+        }
+        this.name = builder.name;
+        this.system = builder.system;
+        this.access = builder.access;
+        this.updatesPerSecond = builder.updatesPerSecond;
+        this.before = Set.copyOf(builder.before);
+        this.after = Set.copyOf(builder.after);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public UpdateSystem getSystem() {
+        return this.system;
+    }
+
+    /**
+     * Returns the declared access, or null if the system may touch anything.
+     */
+    public ComponentAccess getAccess() {
+        return this.access;
+    }
+
+    /**
+     * Returns the rate at which the system updates, or 0 if it updates once per engine update.
+     */
+    public int getUpdatesPerSecond() {
+        return this.updatesPerSecond;
+    }
+
+    public Set<String> getBefore() {
+        return this.before;
+    }
+
+    public Set<String> getAfter() {
+        return this.after;
+    }
+
+    /**
+     * Returns true if this system may not run concurrently with the given one.
+     */
+    boolean conflictsWith(final ScheduledSystem other) {
+        return this.access == null || other.access == null || this.access.conflictsWith(other.access);
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledSystem["
+            + "name=" + this.name + ", "
+            + "access=" + this.access + ", "
+            + "updatesPerSecond=" + this.updatesPerSecond + ", "
+            + "before=" + this.before + ", "
+            + "after=" + this.after
+            + ']';
+    }
+
+    public static class Builder {
+
+        private final Set<String> before;
+        private final Set<String> after;
+        private String name;
+        private UpdateSystem system;
+        private ComponentAccess access;
+        private int updatesPerSecond;
+
+        private Builder() {
+            this.before = new LinkedHashSet<>();
+            this.after = new LinkedHashSet<>();
+        }
+
+        public Builder name(final String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder system(final UpdateSystem system) {
+            this.system = system;
+            return this;
+        }
+
+        public Builder access(final ComponentAccess access) {
+            this.access = access;
+            return this;
+        }
+
+        /**
+         * Sets the rate at which the system updates. Defaults to 0, which updates it once per engine update.
+         */
+        public Builder updatesPerSecond(final int updatesPerSecond) {
+            this.updatesPerSecond = updatesPerSecond;
+            return this;
+        }
+
+        /**
+         * Requires this system to finish updating before the named systems start.
+         */
+        public Builder before(final String... names) {
+            this.before.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * Requires the named systems to finish updating before this system starts.
+         */
+        public Builder after(final String... names) {
+            this.after.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        public ScheduledSystem build() {
+            return new ScheduledSystem(this);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.drewmalin.snickerdoodle.engine.ecs.system;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Query;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.QueryResult;
+import com.drewmalin.snickerdoodle.engine.script.BatchScript;
+import com.drewmalin.snickerdoodle.engine.script.Script;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups a tick's {@link BatchScript}s by instance, so that each is invoked once for all of its entities. Batches are
+ * run in the order their scripts were first added, and their arrays are kept between ticks.
+ * <p>
+ * Scripts are first counted, as the script system walks its scripted entities; fill then gathers each batch's entities
+ * and components by walking the query of Script and the batch's component type, so the components are read straight
+ * out of the manager's storage rather than looked up one entity at a time.
+ * <p>
+ * This class performs no locking; callers are responsible for guarding it.
+ */
+final class ScriptBatches {
+
+    private final Map<BatchScript<?>, Batch<?>> batchesByScript;
+    private final List<Batch<?>> batches;
+    private final Map<Class<? extends Component>, Query> queriesByType;
+    private final List<Class<? extends Component>> types;
+
+    ScriptBatches() {
+        this.batchesByScript = new IdentityHashMap<>();
+        this.batches = new ArrayList<>();
+        this.queriesByType = new HashMap<>();
+        this.types = new ArrayList<>();
+    }
+
+    /**
+     * Counts the given script as attached to one more entity this tick.
+     */
+    void count(final BatchScript<?> script) {
+        var batch = this.batchesByScript.get(script);
+        if (batch == null) {
+            batch = new Batch<>(script);
+            this.batchesByScript.put(script, batch);
+            this.batches.add(batch);
+        }
+        if (batch.expected++ == 0 && !this.types.contains(script.getComponentType())) {
+            this.types.add(script.getComponentType());
+        }
+    }
+
+    /**
+     * Fills the counted batches with their entities and components. The given result is that of the query the scripts
+     * were counted from, and is walked again only if some entity lacks its batch's component type.
+     */
+    void fill(final EntityManager entityManager, final QueryResult scripted) {
+        /* Step 1: walk each component type's query, handing each entity's component to its script's batch. */
+        for (final var type : this.types) {
+            entityManager.query(queryOf(type)).forEach(Script.class, type, (entity, script, component) -> {
+                if (script instanceof BatchScript<?> batchScript && batchScript.getComponentType() == type) {
+                    final var batch = this.batchesByScript.get(batchScript);
+                    if (batch != null && batch.size < batch.expected) {
+                        batch.add(entity, component);
+                    }
+                }
+            });
+        }
+
+        /* Step 2: the entities left over have no component of their batch's type, and are passed a null one. */
+        if (isFilled()) {
+            return;
+        }
+        scripted.forEach(Script.class, (entity, script) -> {
+            if (script instanceof BatchScript<?> batchScript) {
+                final var batch = this.batchesByScript.get(batchScript);
+                if (batch != null
+                    && batch.size < batch.expected
+                    && !entityManager.query(queryOf(batchScript.getComponentType())).contains(entity)) {
+                    batch.add(entity, null);
+                }
+            }
+        });
+    }
+
+    void run(final EntityManager entityManager, final double dt) {
+        for (final var batch : this.batches) {
+            batch.run(entityManager, dt);
+        }
+    }
+
+    /**
+     * Empties every batch, dropping those which held no entities this tick (e.g. because their script was removed).
+     */
+    void clear() {
+        final var iterator = this.batches.iterator();
+        while (iterator.hasNext()) {
+            final var batch = iterator.next();
+            if (batch.expected == 0) {
+                this.batchesByScript.remove(batch.script);
+                iterator.remove();
+            }
+            batch.clear();
+        }
+        this.types.clear();
+    }
+
+    private boolean isFilled() {
+        for (final var batch : this.batches) {
+            if (batch.size < batch.expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Query queryOf(final Class<? extends Component> type) {
+        var query = this.queriesByType.get(type);
+        if (query == null) {
+            query = Query.of(Script.class, type);
+            this.queriesByType.put(type, query);
+        }
+        return query;
+    }
+
+    private static final class Batch<C extends Component> {
+
+        private final BatchScript<C> script;
+        private Entity[] entities;
+        private C[] components;
+        private int size;
+        private int expected;
+
+        private Batch(final BatchScript<C> script) {
+            this.script = script;
+            this.entities = new Entity[16];
+            @SuppressWarnings("unchecked") final C[] components =
+                (C[]) Array.newInstance(script.getComponentType(), 16);
+            this.components = components;
+        }
+
+        void add(final Entity entity, final Component component) {
+            if (this.size == this.entities.length) {
+                this.entities = Arrays.copyOf(this.entities, this.size * 2);
+                this.components = Arrays.copyOf(this.components, this.size * 2);
+            }
+            @SuppressWarnings("unchecked") final C typed = (C) component;
+            this.entities[this.size] = entity;
+            this.components[this.size++] = typed;
+        }
+
+        void run(final EntityManager entityManager, final double dt) {
+            if (this.size > 0) {
+                this.script.invokeBatch(this.entities, this.components, this.size, entityManager, dt);
+            }
+        }
+
+        void clear() {
+            Arrays.fill(this.components, 0, this.size, null);
+            this.size = 0;
+            this.expected = 0;
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package com.drewmalin.snickerdoodle.engine.ecs.system;
 
-import com.drewmalin.snickerdoodle.engine.Engine;
-import com.drewmalin.snickerdoodle.engine.scene.Scene;
-
-public interface ScriptSystem extends System{
-
-    void update(Engine engine, Scene scene, double dt);
+/**
+ * Invokes the {@link com.drewmalin.snickerdoodle.engine.script.Script} of every scripted entity once per update.
+ */
+public interface ScriptSystem
+    extends UpdateSystem {
 }
@@ -0,0 +1,382 @@
+package com.drewmalin.snickerdoodle.engine.ecs.system;
+
+import com.drewmalin.snickerdoodle.engine.Engine;
+import com.drewmalin.snickerdoodle.engine.scene.Scene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a set of {@link ScheduledSystem}s on every engine update, as a series of stages. The stages are compiled once,
+ * when the scheduler is built, from a dependency graph of the systems:
+ * <ul>
+ *     <li>every declared before/after dependency is an edge;</li>
+ *     <li>every pair of conflicting systems (see ScheduledSystem) not already ordered by the dependencies is ordered
+ *     by registration, earlier first;</li>
+ *     <li>each system is placed in the stage after the latest of its predecessors.</li>
+ * </ul>
+ * The systems of a stage therefore neither depend on nor conflict with one another, and run concurrently on the pool.
+ * ComponentAccess only keeps their component data apart; it is the entity manager which keeps its own structures safe,
+ * by allowing any number of concurrent reads while nothing changes it -- hence the contract (see ScheduledSystem) that
+ * systems which declare their access record their changes to the manager on the command buffer.
+ * Each stage ends with a barrier: once all of its systems have returned, the entity manager's clock is advanced and its
+ * command buffer played back, so that the next stage sees every structural change deferred by the previous ones, and
+ * every stage's changes are stamped later than the ticks at which the earlier stages' systems ran (see
+ * {@link com.drewmalin.snickerdoodle.engine.ecs.component.ChangeClock}).
+ * <p>
+ * A system which declares its own rate keeps its own time accumulator: each engine update adds the update's time step
+ * to it, and the system is updated, with its own fixed time step, once for every whole step accumulated. A system
+ * faster than the engine thus updates several times in its stage; a slower one is skipped on most updates. So that the
+ * slow systems' updates do not all land on the same engine update, each rated system's accumulator starts a different
+ * fraction of its time step ahead: the nth of N rated systems starts n / N of a step ahead.
+ */
+public final class SystemScheduler {
+
+    private static final double EPSILON = 1e-9;
+
+    private final List<ScheduledSystem> systems;
+    private final int[][] stages;
+    private final List<List<ScheduledSystem>> stageView;
+    private final double[] steps;
+    private final double[] accumulators;
+    private final int[] runs;
+    private final ForkJoinPool pool;
+
+    private SystemScheduler(final Builder builder) {
+        this.systems = List.copyOf(builder.systems);
+        this.stages = compile(this.systems);
+        this.stageView = view(this.systems, this.stages);
+        this.steps = new double[this.systems.size()];
+        this.accumulators = new double[this.systems.size()];
+        this.runs = new int[this.systems.size()];
+        this.pool = builder.pool == null ? ForkJoinPool.commonPool() : builder.pool;
+
+        /*
+         * Stagger the rated systems' accumulators, so that the slow systems fall due on different engine updates.
+         */
+        var rated = 0;
+        for (final var system : this.systems) {
+            if (system.getUpdatesPerSecond() > 0) {
+                rated++;
+            }
+        }
+        var nth = 0;
+        for (var i = 0; i < this.systems.size(); i++) {
+            final var updatesPerSecond = this.systems.get(i).getUpdatesPerSecond();
+            if (updatesPerSecond > 0) {
+                this.steps[i] = 1.0 / updatesPerSecond;
+                this.accumulators[i] = this.steps[i] * nth++ / rated;
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the compiled stages, in the order they run. The systems of each stage are in registration order.
+     */
+    public List<List<ScheduledSystem>> getStages() {
+        return this.stageView;
+    }
+
+    /**
+     * Runs every stage, returning once the last has finished. The given time step is that of the engine update; rated
+     * systems are updated with their own.
+     */
+    public void update(final Engine engine, final Scene scene, final double dt) {
+
+        /*
+         * Work out how many times each system is due this update.
+         */
+        for (var i = 0; i < this.runs.length; i++) {
+            if (this.steps[i] == 0) {
+                this.runs[i] = 1;
+                continue;
+            }
+            this.accumulators[i] += dt;
+            final var due = (int) Math.floor(this.accumulators[i] / this.steps[i] + EPSILON);
+            this.accumulators[i] = Math.max(0, this.accumulators[i] - due * this.steps[i]);
+            this.runs[i] = due;
+        }
+
+        final var entityManager = scene.getEntityManager();
+        for (final var stage : this.stages) {
+            var due = 0;
+            for (final var system : stage) {
+                if (this.runs[system] > 0) {
+                    due++;
+                }
+            }
+            if (due == 0) {
+                continue;
+            }
+
+            if (due == 1 || this.pool.getParallelism() == 1) {
+                for (final var system : stage) {
+                    run(system, engine, scene, dt);
+                }
+            }
+            else {
+                this.pool.invoke(new StageTask(this, stage, engine, scene, dt));
+            }
+
+            /*
+             * Sync point: every system of the stage has returned, so end the stage's tick, then apply the structural
+             * changes (spawns, despawns, component additions and removals) they deferred to the command buffer.
+             */
+            entityManager.advanceTick();
+            entityManager.getCommandBuffer().playback(entityManager);
+        }
+    }
+
+    /**
+     * Updates the given system as many times as it is due, with its own time step if it declares a rate.
+     */
+    private void run(final int system, final Engine engine, final Scene scene, final double dt) {
+        final var update = this.systems.get(system).getSystem();
+        final var step = this.steps[system] == 0 ? dt : this.steps[system];
+        for (var i = 0; i < this.runs[system]; i++) {
+            update.update(engine, scene, step);
+        }
+    }
+
+    /**
+     * Destroys every system, in registration order.
+     */
+    public void destroy() {
+        for (final var system : this.systems) {
+            system.getSystem().destroy();
+        }
+    }
+
+    private static int[][] compile(final List<ScheduledSystem> systems) {
+        final var count = systems.size();
+
+        /*
+         * Step 1: index the systems by name.
+         */
+        final var indices = new HashMap<String, Integer>();
+        for (var i = 0; i < count; i++) {
+            if (indices.put(systems.get(i).getName(), i) != null) {
+                throw new IllegalArgumentException("Duplicate system name: " + systems.get(i).getName());
+            }
+        }
+
+        /*
+         * Step 2: add an edge for every declared dependency, and fail if they form a cycle.
+         */
+        final var successors = new ArrayList<Set<Integer>>(count);
+        for (var i = 0; i < count; i++) {
+            successors.add(new LinkedHashSet<>());
+        }
+        for (var i = 0; i < count; i++) {
+            final var system = systems.get(i);
+            for (final var name : system.getAfter()) {
+                successors.get(indexOf(indices, system, name)).add(i);
+            }
+            for (final var name : system.getBefore()) {
+                successors.get(i).add(indexOf(indices, system, name));
+            }
+        }
+        depths(systems, successors);
+
+        /*
+         * Step 3: order every conflicting pair which the dependencies leave unordered by registration. Each edge is
+         * only added if the reverse path does not exist, so the graph stays acyclic.
+         */
+        for (var i = 0; i < count; i++) {
+            for (var j = i + 1; j < count; j++) {
+                if (systems.get(i).conflictsWith(systems.get(j))
+                    && !reaches(successors, i, j)
+                    && !reaches(successors, j, i)) {
+                    successors.get(i).add(j);
+                }
+            }
+        }
+
+        /*
+         * Step 4: place each system in the stage after the latest of its predecessors.
+         */
+        final var stageOf = depths(systems, successors);
+        var stageCount = 0;
+        for (final var stage : stageOf) {
+            stageCount = Math.max(stageCount, stage + 1);
+        }
+        final var sizes = new int[stageCount];
+        for (final var stage : stageOf) {
+            sizes[stage]++;
+        }
+        final var stages = new int[stageCount][];
+        for (var stage = 0; stage < stageCount; stage++) {
+            stages[stage] = new int[sizes[stage]];
+            sizes[stage] = 0;
+        }
+        for (var i = 0; i < count; i++) {
+            stages[stageOf[i]][sizes[stageOf[i]]++] = i;
+        }
+        return stages;
+    }
+
+    private static List<List<ScheduledSystem>> view(final List<ScheduledSystem> systems, final int[][] stages) {
+        final var view = new ArrayList<List<ScheduledSystem>>(stages.length);
+        for (final var stage : stages) {
+            final var members = new ArrayList<ScheduledSystem>(stage.length);
+            for (final var system : stage) {
+                members.add(systems.get(system));
+            }
+            view.add(Collections.unmodifiableList(members));
+        }
+        return Collections.unmodifiableList(view);
+    }
+
+    private static int indexOf(final Map<String, Integer> indices, final ScheduledSystem system, final String name) {
+        final var index = indices.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException(String.format(
+                "System %s depends on %s, which is not registered", system.getName(), name));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the length of the longest path to each system (i.e. its stage), failing if the graph has a cycle.
+     */
+    private static int[] depths(final List<ScheduledSystem> systems, final List<Set<Integer>> successors) {
+        final var count = systems.size();
+        final var predecessors = new int[count];
+        for (final var edges : successors) {
+            for (final var successor : edges) {
+                predecessors[successor]++;
+            }
+        }
+
+        final var depths = new int[count];
+        final var ready = new ArrayList<Integer>();
+        for (var i = 0; i < count; i++) {
+            if (predecessors[i] == 0) {
+                ready.add(i);
+            }
+        }
+        var visited = 0;
+        while (!ready.isEmpty()) {
+            final int system = ready.remove(ready.size() - 1);
+            visited++;
+            for (final var successor : successors.get(system)) {
+                depths[successor] = Math.max(depths[successor], depths[system] + 1);
+                if (--predecessors[successor] == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+
+        if (visited < count) {
+            final var cycle = new ArrayList<String>();
+            for (var i = 0; i < count; i++) {
+                if (predecessors[i] > 0) {
+                    cycle.add(systems.get(i).getName());
+                }
+            }
+            throw new IllegalArgumentException("System dependencies form a cycle among: " + cycle);
+        }
+        return depths;
+    }
+
+    private static boolean reaches(final List<Set<Integer>> successors, final int from, final int to) {
+        final var visited = new boolean[successors.size()];
+        final var pending = new ArrayList<Integer>();
+        pending.add(from);
+        while (!pending.isEmpty()) {
+            final int system = pending.remove(pending.size() - 1);
+            if (system == to) {
+                return true;
+            }
+            if (!visited[system]) {
+                visited[system] = true;
+                pending.addAll(successors.get(system));
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "SystemScheduler["
+            + "systems=" + this.systems.size() + ", "
+            + "stages=" + this.stages.length
+            + ']';
+    }
+
+    private static final class StageTask
+        extends RecursiveAction {
+
+        private final SystemScheduler scheduler;
+        private final int[] stage;
+        private final Engine engine;
+        private final Scene scene;
+        private final double dt;
+
+        private StageTask(final SystemScheduler scheduler,
+                          final int[] stage,
+                          final Engine engine,
+                          final Scene scene,
+                          final double dt) {
+            this.scheduler = scheduler;
+            this.stage = stage;
+            this.engine = engine;
+            this.scene = scene;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            final var tasks = new ArrayList<ForkJoinTask<?>>(this.stage.length);
+            for (final var system : this.stage) {
+                if (this.scheduler.runs[system] > 0) {
+                    tasks.add(ForkJoinTask.adapt(() -> this.scheduler.run(system, this.engine, this.scene, this.dt)));
+                }
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    public static class Builder {
+
+        private final List<ScheduledSystem> systems;
+        private ForkJoinPool pool;
+
+        private Builder() {
+            this.systems = new ArrayList<>();
+        }
+
+        public Builder system(final ScheduledSystem system) {
+            this.systems.add(system);
+            return this;
+        }
+
+        /**
+         * Sets the pool on which the systems of a stage run concurrently. Defaults to the common ForkJoinPool.
+         */
+        public Builder pool(final ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Compiles the registered systems into stages. Fails with an IllegalArgumentException if two systems share a
+         * name, a system depends on one which is not registered, or the dependencies form a cycle.
+         */
+        public SystemScheduler build() {
+            return new SystemScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.drewmalin.snickerdoodle.engine.ecs.system;
+
+import com.drewmalin.snickerdoodle.engine.Engine;
+import com.drewmalin.snickerdoodle.engine.scene.Scene;
+
+/**
+ * A {@link System} which is updated once per engine update, with the fixed time step of that update. Update systems are
+ * run by a {@link SystemScheduler}, in the order their dependencies (see {@link ScheduledSystem}) require.
+ */
+public interface UpdateSystem
+    extends System {
+
+    void update(Engine engine, Scene scene, double dt);
+}
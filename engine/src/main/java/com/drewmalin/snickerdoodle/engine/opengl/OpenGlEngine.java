@@ -1,7 +1,16 @@
 package com.drewmalin.snickerdoodle.engine.opengl;
 
 import com.drewmalin.snickerdoodle.engine.Engine;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Hierarchy;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Transform;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.FootprintReporter;
+import com.drewmalin.snickerdoodle.engine.ecs.system.ComponentAccess;
+import com.drewmalin.snickerdoodle.engine.ecs.system.DefaultHierarchySystem;
+import com.drewmalin.snickerdoodle.engine.ecs.system.HierarchySystem;
+import com.drewmalin.snickerdoodle.engine.ecs.system.ScheduledSystem;
 import com.drewmalin.snickerdoodle.engine.ecs.system.ScriptSystem;
+import com.drewmalin.snickerdoodle.engine.ecs.system.SystemScheduler;
+import com.drewmalin.snickerdoodle.engine.ecs.system.UpdateSystem;
 import com.drewmalin.snickerdoodle.engine.scene.Scene;
 import com.drewmalin.snickerdoodle.engine.window.Window;
 import org.apache.logging.log4j.LogManager;
@@ -9,27 +18,49 @@ import org.apache.logging.log4j.Logger;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWErrorCallback;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 public class OpenGlEngine
     implements Engine {
 
+    /**
+     * The name under which the script system is scheduled.
+     */
+    public static final String SCRIPT_SYSTEM = "scripts";
+
+    /**
+     * The name under which the hierarchy system is scheduled.
+     */
+    public static final String HIERARCHY_SYSTEM = "hierarchy";
+
     private static final Logger LOGGER = LogManager.getLogger(OpenGlEngine.class);
     private static final int DEFAULT_MAX_UPDATES_PER_SECOND = 60;
     private static final int DEFAULT_MAX_FRAMES_PER_SECOND = 60;
     private static final int DEFAULT_MAX_UPDATES_PER_FRAME = 500;
+    private static final long UPDATE_THREAD_SHUTDOWN_SECONDS = 5;
 
-    private final ScriptSystem scriptSystem;
+    private final HierarchySystem hierarchySystem;
+    private final SystemScheduler scheduler;
+    private final FootprintReporter footprintReporter;
+    private final ExecutorService updateExecutor;
     private final int maxUpdatesPerSecond;
     private final int maxUpdatesPerFrame;
     private final int maxFramesPerSecond;
     private final GLFWErrorCallback glfwStderrCallback;
 
     private double secondsElapsedSinceLastRender;
-    private double secondsElapsedSinceLastUpdate;
+    private volatile double secondsElapsedSinceLastUpdate;
     private double lastRenderTimeSeconds;
     private double lastUpdateTimeSeconds;
 
     private Scene scene;
-    private State state;
+    private volatile State state;
     private Window window;
 
     public OpenGlEngine(final Builder builder) {
@@ -43,7 +74,14 @@ public class OpenGlEngine
         this.maxFramesPerSecond = builder.maxFramesPerSecond == 0
             ? DEFAULT_MAX_FRAMES_PER_SECOND
             : builder.maxFramesPerSecond;
-        this.scriptSystem = builder.scriptSystem;
+        this.hierarchySystem = builder.hierarchySystem == null
+            ? new DefaultHierarchySystem()
+            : builder.hierarchySystem;
+        this.scheduler = newScheduler(builder, this.hierarchySystem);
+        this.footprintReporter = builder.footprintReporter;
+        this.updateExecutor = builder.concurrentRendering
+            ? Executors.newSingleThreadExecutor(OpenGlEngine::newUpdateThread)
+            : null;
 
         this.glfwStderrCallback = GLFW.glfwSetErrorCallback(
             GLFWErrorCallback.createPrint(java.lang.System.err)
@@ -63,6 +101,12 @@ public class OpenGlEngine
                 throw new IllegalStateException("Scene cannot be null");
             }
 
+            /*
+             * Publish the initial state of the scene, so that there is something to draw before the first update.
+             */
+            this.hierarchySystem.update(this, this.scene);
+            this.scene.getSnapshots().publish(this.scene);
+
             /*
              * Calculate the value of the seconds per update and seconds per render -- these will be used to more easily
              * compare elapsed time versus these intervals.
@@ -91,28 +135,34 @@ public class OpenGlEngine
                 updateTimeBufferSeconds += now - lastUpdateTimeSeconds;
 
                 /*
-                 * While the time buffer contains update intervals, update the game state. This guarantees that each
-                 * "tick" is consistent. Note that this means that the time delta passed to each update here is fixed.
+                 * Count the update intervals contained in the time buffer: the game state will be updated once for each.
+                 * This guarantees that each "tick" is consistent. Note that this means that the time delta passed to
+                 * each update here is fixed.
+                 *
+                 * Question: what if a given update loop below exceeds a "tick"? This could result in this loop taking so
+                 * long that the next render update is delayed, and the next iteration of the full main loop calculates
+                 * a large time buffer. In the degenerate case, if each update iteration takes significantly longer than
+                 * the update interval, then this problem compounds.
+                 *
+                 * So as a band-aid, the below will only perform some maximum number of updates per frame.
                  */
-                var updatesPerformed = 0;
-                while (updateTimeBufferSeconds >= secondsPerUpdate) {
-                    this.scriptSystem.update(this, this.scene, secondsPerUpdate);
+                var updatesDue = 0;
+                while (updateTimeBufferSeconds >= secondsPerUpdate && updatesDue <= this.maxUpdatesPerFrame) {
                     updateTimeBufferSeconds -= secondsPerUpdate;
+                    updatesDue++;
+                }
 
-                    recordUpdateTick();
-
-                    /*
-                     * Question: what if a given update loop below exceeds a "tick"? This could result in this loop
-                     * taking so long that the next render update is delayed, and the next iteration of the full main
-                     * loop calculates a large time buffer. In the degenerate case, if each update iteration takes
-                     * significantly longer than the update interval, then this problem compounds.
-                     *
-                     * So as a band-aid, the below will only perform some maximum number of updates per frame.
-                     */
-                    updatesPerformed++;
-                    if (updatesPerformed > this.maxUpdatesPerFrame) {
-                        break;
-                    }
+                /*
+                 * Run the updates. If the engine has an update thread, they run there, concurrently with the render
+                 * below -- which draws the snapshot published by the previous updates.
+                 */
+                final var updates = updatesDue;
+                Future<?> pendingUpdates = null;
+                if (this.updateExecutor == null) {
+                    update(updates, secondsPerUpdate);
+                }
+                else if (updates > 0) {
+                    pendingUpdates = this.updateExecutor.submit(() -> update(updates, secondsPerUpdate));
                 }
 
                 /*
@@ -129,6 +179,14 @@ public class OpenGlEngine
                     lastRenderTimeSeconds = now;
                 }
 
+                /*
+                 * Wait for the updates to finish before starting the next loop, so that the renderer is never more
+                 * than one batch of updates behind.
+                 */
+                if (pendingUpdates != null) {
+                    awaitUpdates(pendingUpdates);
+                }
+
                 /*
                  * Reset the last updated time to "now" to prepare for the next loop. We do not set this value to the
                  * actual value of GLFW.lfwGetTime() as we want a more realistic difference between two subsequent
@@ -138,11 +196,107 @@ public class OpenGlEngine
             }
         }
         finally {
+            stopUpdateThread();
+            this.scheduler.destroy();
             this.window.destroy();
+            if (this.scene != null) {
+                this.scene.destroy();
+            }
             close();
         }
     }
 
+    /**
+     * Performs the given number of fixed-length updates, then publishes the resulting state of the scene for rendering.
+     */
+    private void update(final int updates, final double secondsPerUpdate) {
+        if (updates == 0) {
+            return;
+        }
+
+        final var entityManager = this.scene.getEntityManager();
+        for (var i = 0; i < updates; i++) {
+            entityManager.advanceTick();
+
+            /*
+             * Run every system, stage by stage: the scripts, then the user's systems, then the hierarchy system, which
+             * propagates any moved or re-parented entities' transforms down the hierarchy so that the world matrices
+             * are current for the next update (and render).
+             */
+            this.scheduler.update(this, this.scene, secondsPerUpdate);
+
+            recordUpdateTick();
+        }
+
+        /*
+         * Only the state after the last update is ever drawn, so only it is published.
+         */
+        this.scene.getSnapshots().publish(this.scene);
+
+        if (this.footprintReporter != null) {
+            this.footprintReporter.update(entityManager);
+        }
+    }
+
+    /**
+     * Schedules the script system first, the hierarchy system last, and the user's systems in between.
+     */
+    private static SystemScheduler newScheduler(final Builder builder, final HierarchySystem hierarchySystem) {
+        final var scheduler = SystemScheduler.builder();
+        scheduler.system(ScheduledSystem.builder()
+            .name(SCRIPT_SYSTEM)
+            .system(builder.scriptSystem)
+            .build());
+        builder.systems.forEach(scheduler::system);
+        scheduler.system(ScheduledSystem.builder()
+            .name(HIERARCHY_SYSTEM)
+            .system(new HierarchyUpdate(hierarchySystem))
+            .access(ComponentAccess.builder()
+                .reads(Transform.class)
+                .writes(Hierarchy.class)
+                .build())
+            .after(SCRIPT_SYSTEM)
+            .build());
+        return scheduler.build();
+    }
+
+    private void stopUpdateThread() {
+        if (this.updateExecutor == null) {
+            return;
+        }
+        this.updateExecutor.shutdownNow();
+        try {
+            if (!this.updateExecutor.awaitTermination(UPDATE_THREAD_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Update thread did not stop within {} seconds", UPDATE_THREAD_SHUTDOWN_SECONDS);
+            }
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitUpdates(final Future<?> pendingUpdates) {
+        try {
+            pendingUpdates.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for updates", e);
+        }
+        catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Update failed", e.getCause());
+        }
+    }
+
+    private static Thread newUpdateThread(final Runnable runnable) {
+        final var thread = new Thread(runnable, "snickerdoodle-update");
+        thread.setDaemon(true);
+        return thread;
+    }
+
     private void recordFrameRender() {
         this.secondsElapsedSinceLastRender = GLFW.glfwGetTime() - this.lastRenderTimeSeconds;
         this.lastRenderTimeSeconds = GLFW.glfwGetTime();
@@ -205,7 +359,9 @@ public class OpenGlEngine
             + "state=" + this.state + ", "
             + "maxUpdatesPerSecond=" + this.maxUpdatesPerSecond + ", "
             + "maxUpdatesPerFrame=" + this.maxUpdatesPerFrame + ", "
-            + "maxFramesPerSecond=" + this.maxFramesPerSecond
+            + "maxFramesPerSecond=" + this.maxFramesPerSecond + ", "
+            + "concurrentRendering=" + (this.updateExecutor != null) + ", "
+            + "scheduler=" + this.scheduler
             + ']';
     }
 
@@ -221,15 +377,42 @@ public class OpenGlEngine
         return new Builder();
     }
 
+    /**
+     * Adapts the hierarchy system, which needs no time step, to the scheduler.
+     */
+    private static final class HierarchyUpdate
+        implements UpdateSystem {
+
+        private final HierarchySystem hierarchySystem;
+
+        private HierarchyUpdate(final HierarchySystem hierarchySystem) {
+            this.hierarchySystem = hierarchySystem;
+        }
+
+        @Override
+        public void update(final Engine engine, final Scene scene, final double dt) {
+            this.hierarchySystem.update(engine, scene);
+        }
+
+        @Override
+        public void destroy() {
+            this.hierarchySystem.destroy();
+        }
+    }
+
     public static class Builder {
 
+        private final List<ScheduledSystem> systems;
         private ScriptSystem scriptSystem;
+        private HierarchySystem hierarchySystem;
+        private FootprintReporter footprintReporter;
         private int maxUpdatesPerSecond;
         private int maxUpdatesPerFrame;
         private int maxFramesPerSecond;
+        private boolean concurrentRendering;
 
         private Builder() {
-
+            this.systems = new ArrayList<>();
         }
 
         public Builder scriptSystem(final ScriptSystem scriptSystem) {
@@ -237,6 +420,30 @@ public class OpenGlEngine
             return this;
         }
 
+        public Builder hierarchySystem(final HierarchySystem hierarchySystem) {
+            this.hierarchySystem = hierarchySystem;
+            return this;
+        }
+
+        /**
+         * Adds a system to run every update, after the scripts (named SCRIPT_SYSTEM), and alongside any other system it
+         * neither depends on nor conflicts with. Systems which touch Transforms or Hierarchies run before the hierarchy
+         * system (named HIERARCHY_SYSTEM) unless they declare otherwise.
+         */
+        public Builder system(final ScheduledSystem system) {
+            this.systems.add(system);
+            return this;
+        }
+
+        /**
+         * If set, the reporter is updated after every batch of updates, and so periodically reports the memory
+         * footprint of the scene's entity manager. Defaults to none.
+         */
+        public Builder footprintReporter(final FootprintReporter footprintReporter) {
+            this.footprintReporter = footprintReporter;
+            return this;
+        }
+
         public Builder maxFramesPerSecond(final int maxFramesPerSecond) {
             this.maxFramesPerSecond = maxFramesPerSecond;
             return this;
@@ -252,6 +459,17 @@ public class OpenGlEngine
             return this;
         }
 
+        /**
+         * If true, updates run on a dedicated update thread, concurrently with rendering on the main thread: while the
+         * game state for the next frame is computed, the renderer draws the snapshot published by the previous
+         * updates. This costs one frame of latency. Scripts must then not touch the window, the camera or the lights,
+         * which belong to the main thread. Defaults to false.
+         */
+        public Builder concurrentRendering(final boolean concurrentRendering) {
+            this.concurrentRendering = concurrentRendering;
+            return this;
+        }
+
         public OpenGlEngine build() {
             return new OpenGlEngine(this);
         }
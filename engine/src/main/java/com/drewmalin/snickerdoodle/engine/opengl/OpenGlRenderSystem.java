@@ -1,13 +1,13 @@
 package com.drewmalin.snickerdoodle.engine.opengl;
 
 import com.drewmalin.snickerdoodle.engine.Engine;
-import com.drewmalin.snickerdoodle.engine.ecs.component.Mesh;
-import com.drewmalin.snickerdoodle.engine.ecs.component.Texture;
 import com.drewmalin.snickerdoodle.engine.ecs.system.RenderSystem;
+import com.drewmalin.snickerdoodle.engine.light.LightManager;
 import com.drewmalin.snickerdoodle.engine.opengl.shader.ColorShader;
 import com.drewmalin.snickerdoodle.engine.opengl.shader.OpenGlShader;
 import com.drewmalin.snickerdoodle.engine.opengl.shader.TextureShader;
 import com.drewmalin.snickerdoodle.engine.scene.Scene;
+import com.drewmalin.snickerdoodle.engine.scene.SceneSnapshot;
 import com.drewmalin.snickerdoodle.engine.window.Window;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -27,42 +27,71 @@ public class OpenGlRenderSystem
 
     private final Frustum frustum;
 
+    private long lastSnapshotSequence;
+
     public OpenGlRenderSystem() {
         this.frustum = new Frustum();
     }
 
     @Override
     public void update(final Engine engine, final Window window, final Scene scene) {
-        final var entityManager = scene.getEntityManager();
+        /*
+         * Draw the most recently published snapshot of the scene, rather than the live scene, which may be mid-update.
+         * Lights are read live: they are only ever moved by the input system, which runs on this thread.
+         */
+        final var snapshot = scene.getSnapshots().acquire();
         final var lightManager = scene.getLightManager();
 
+        /*
+         * Before drawing a new snapshot, release the cached render state (VAOs and VBOs) of every entity which has been
+         * destroyed or has had its mesh or material changed since the last one. Entities still in the snapshot have
+         * theirs rebuilt as they are drawn.
+         */
+        if (snapshot.getSequence() != this.lastSnapshotSequence) {
+            for (var i = 0; i < snapshot.getInvalidatedCount(); i++) {
+                final var entity = snapshot.getInvalidated(i);
+                TextureShader.get().release(entity);
+                ColorShader.get().release(entity);
+            }
+            this.lastSnapshotSequence = snapshot.getSequence();
+        }
+
         final var frustumTransformation = this.frustum.toMatrix(FOV, window.getWidth(), window.getHeight(), Z_NEAR, Z_FAR);
         final var cameraTransformation = OpenGlUtils.getCameraTransformation(window.getCamera());
 
-        for (final var entity : entityManager.getEntitiesWithComponent(Mesh.class)) {
+        /*
+         * Fetch the appropriate shader for each mesh: textured meshes use the texture shader, and all others use a
+         * default color.
+         */
+        final var texturedCount = snapshot.getTexturedCount();
+        if (texturedCount > 0) {
+            render(snapshot, 0, texturedCount, TextureShader.get(), lightManager,
+                frustumTransformation, cameraTransformation);
+        }
 
-            /*
-             * Fetch the appropriate shader for the mesh. If none is found, use a default color.
-             */
-            final OpenGlShader shader;
-            if (entityManager.getComponent(entity, Texture.class).isPresent()) {
-                shader = TextureShader.get();
-            }
-            else {
-                shader = ColorShader.get();
-            }
+        if (snapshot.size() > texturedCount) {
+            render(snapshot, texturedCount, snapshot.size(), ColorShader.get(), lightManager,
+                frustumTransformation, cameraTransformation);
+        }
+    }
 
+    private void render(final SceneSnapshot snapshot,
+                        final int from,
+                        final int to,
+                        final OpenGlShader shader,
+                        final LightManager lightManager,
+                        final Matrix4f frustumTransformation,
+                        final Matrix4f cameraTransformation) {
+        for (var i = from; i < to; i++) {
             /*
              * Rendering is ultimately done by the shader itself, so the below sets the new vertex positions, normals,
              * colors, lighting, and other inputs before invoking a call to "draw". This is done within an implicit
              * bind/unbind call to the shader program, which is handled below by the call to runInShader.
              */
-            shader.update(entity, entityManager, lightManager, frustumTransformation, cameraTransformation);
+            shader.update(snapshot, i, lightManager, frustumTransformation, cameraTransformation);
         }
     }
 
-
-
     @Override
     public void destroy() {
         GL20.glDisableVertexAttribArray(0);
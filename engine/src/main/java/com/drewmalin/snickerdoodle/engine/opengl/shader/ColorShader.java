@@ -3,12 +3,10 @@ package com.drewmalin.snickerdoodle.engine.opengl.shader;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Color;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Material;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Mesh;
-import com.drewmalin.snickerdoodle.engine.ecs.component.Transform;
 import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
-import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
 import com.drewmalin.snickerdoodle.engine.light.LightManager;
 import com.drewmalin.snickerdoodle.engine.light.PositionalLight;
-import com.drewmalin.snickerdoodle.engine.opengl.OpenGlUtils;
+import com.drewmalin.snickerdoodle.engine.scene.SceneSnapshot;
 import com.drewmalin.snickerdoodle.engine.utils.Files;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -37,6 +35,7 @@ public class ColorShader
     private static final String FRAGMENT_SHADER_FILEPATH = "/shaders/rgba_fragment.fs";
 
     private static final String UNIFORM_FRUSTUM_TRANSFORMATION = "frustumTransformation";
+    private static final String UNIFORM_CAMERA_TRANSFORMATION = "cameraTransformation";
     private static final String UNIFORM_ENTITY_TRANSFORMATION = "entityTransformation";
     private static final String UNIFORM_SPECULAR_POWER_TRANSFORMATION = "specularPower";
     private static final String UNIFORM_AMBIENT_LIGHT_TRANSFORMATION = "ambientLight";
@@ -75,6 +74,7 @@ public class ColorShader
          * Prepare the shaders for use by binding input names to OpenGL uniform variables.
          */
         prepareFrustumTransformation();
+        prepareCameraTransformation();
         prepareEntityTransformation();
         prepareSpecularPowerTransformation();
         prepareAmbientLightTransformation();
@@ -83,19 +83,20 @@ public class ColorShader
     }
 
     @Override
-    public void onUpdate(final Entity entity,
-                         final EntityManager entityManager,
+    public void onUpdate(final SceneSnapshot snapshot,
+                         final int index,
                          final LightManager lightManager,
                          final Matrix4f frustumTransformation,
                          final Matrix4f cameraTransformation) {
 
-        final var metadata = getOrCreateRenderMetadata(entity, entityManager);
+        final var metadata = getOrCreateRenderMetadata(snapshot, index);
 
         /*
          * Step 1: pass the various inputs into the shader arguments.
          */
         setFrustumTransformation(frustumTransformation);
-        setEntityTransformation(OpenGlUtils.getEntityTransformation(metadata.transform(), cameraTransformation));
+        setCameraTransformation(cameraTransformation);
+        setEntityTransformation(snapshot.getWorldMatrix(index));
         setMaterialTransformation(metadata.material());
         setSpecularPowerTransformation(lightManager.getSpecularPower());
         setAmbientLightTransformation(lightManager.getAmbientLight());
@@ -123,6 +124,14 @@ public class ColorShader
         GL30.glBindVertexArray(0);
     }
 
+    @Override
+    void onRelease(final Entity entity) {
+        final var metadata = this.cachedMetadata.remove(entity);
+        if (metadata != null) {
+            metadata.destroy();
+        }
+    }
+
     @Override
     void onDestroy() {
         for (final var metadata : this.cachedMetadata.values()) {
@@ -130,7 +139,9 @@ public class ColorShader
         }
     }
 
-    private OpenGlShaderMetadata getOrCreateRenderMetadata(final Entity entity, final EntityManager entityManager) {
+    private OpenGlShaderMetadata getOrCreateRenderMetadata(final SceneSnapshot snapshot, final int index) {
+        final var entity = snapshot.getEntity(index);
+
         /*
          * Check to see if we have already generated the render metadata for this entity.
          */
@@ -151,28 +162,19 @@ public class ColorShader
         final int indexVboID;
 
         /*
-         * Retrieve the Mesh from the entity, to be referenced when retrieving vertex data. If no Mesh is found,
-         * something wrong must have occurred (as the render system should have used a call like the following:
-         * entityManager.getEntitiesWithComponent(Mesh.class)).
+         * Retrieve the Mesh from the snapshot, to be referenced when retrieving vertex data. Every entity in a snapshot
+         * has a Mesh.
          */
-        final Mesh mesh = entityManager.getComponent(entity, Mesh.class).orElseThrow();
+        final Mesh mesh = snapshot.getMesh(index);
 
         /*
          * Retrieve the Color from the entity. It is not required to have a color, so in the case that one is not
          * found, default to an opaque gray.
          */
-        final var color = entityManager.getComponent(entity, Color.class).orElse(
+        final var color = snapshot.getColor(index).orElse(
             Color.builder().rgba(0.4f, 0.4f, 0.4f, 1.0f).build()
         );
 
-        /*
-         * Retrieve the Transform from the entity. It is not required to have a transform, so in the case that one is
-         * not found, default to a 0-ed one (no scaling, no rotation, no position).
-         */
-        final var transform = entityManager.getComponent(entity, Transform.class).orElse(
-            new Transform()
-        );
-
         /*
          * Initialize Java buffers to be used as the sources of data for the below OpenGL VBOs. In this case each VBO
          * represents the data expected by the shader program, and must be declared in the appropriate order. To start,
@@ -271,7 +273,7 @@ public class ColorShader
          */
         GL30.glBindVertexArray(0);
 
-        final var metadata = new OpenGlShaderMetadata(vaoID, positionVboID, colorVboID, normalVboID, indexVboID, mesh, color, this, transform);
+        final var metadata = new OpenGlShaderMetadata(vaoID, positionVboID, colorVboID, normalVboID, indexVboID, mesh, color, this);
         this.cachedMetadata.put(entity, metadata);
         return metadata;
     }
@@ -280,6 +282,10 @@ public class ColorShader
         prepareUniform(UNIFORM_FRUSTUM_TRANSFORMATION);
     }
 
+    private void prepareCameraTransformation() {
+        prepareUniform(UNIFORM_CAMERA_TRANSFORMATION);
+    }
+
     private void prepareEntityTransformation() {
         prepareUniform(UNIFORM_ENTITY_TRANSFORMATION);
     }
@@ -312,6 +318,10 @@ public class ColorShader
         setUniformValue(UNIFORM_FRUSTUM_TRANSFORMATION, value);
     }
 
+    private void setCameraTransformation(final Matrix4f value) {
+        setUniformValue(UNIFORM_CAMERA_TRANSFORMATION, value);
+    }
+
     private void setEntityTransformation(final Matrix4f value) {
         setUniformValue(UNIFORM_ENTITY_TRANSFORMATION, value);
     }
@@ -348,8 +358,7 @@ public class ColorShader
         int indexVboID,
         Mesh mesh,
         Material material,
-        OpenGlShader shaderProgram,
-        Transform transform) {
+        OpenGlShader shaderProgram) {
 
         public void destroy() {
             GL15.glDeleteBuffers(this.vertexVboID);
@@ -1,8 +1,8 @@
 package com.drewmalin.snickerdoodle.engine.opengl.shader;
 
 import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
-import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
 import com.drewmalin.snickerdoodle.engine.light.LightManager;
+import com.drewmalin.snickerdoodle.engine.scene.SceneSnapshot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.joml.Matrix4f;
@@ -131,23 +131,24 @@ public abstract class OpenGlShader {
     abstract void onLink();
 
     /**
-     * Updates this shader, passing the provided arguments to the prepared shader program.
+     * Updates this shader, passing the provided arguments to the prepared shader program, and draws the entity at the
+     * given index of the snapshot.
      */
-    public void update(Entity entity,
-                       EntityManager entityManager,
+    public void update(SceneSnapshot snapshot,
+                       int index,
                        LightManager lightManager,
                        Matrix4f frustumTransformation,
                        Matrix4f cameraTransformation) {
         bind();
-        onUpdate(entity, entityManager, lightManager, frustumTransformation, cameraTransformation);
+        onUpdate(snapshot, index, lightManager, frustumTransformation, cameraTransformation);
         unbind();
     }
 
     /**
      * Custom implementation of this shader's update routine.
      */
-    abstract void onUpdate(Entity entity,
-                           EntityManager entityManager,
+    abstract void onUpdate(SceneSnapshot snapshot,
+                           int index,
                            LightManager lightManager,
                            Matrix4f frustumTransformation,
                            Matrix4f cameraTransformation);
@@ -222,6 +223,16 @@ public abstract class OpenGlShader {
         GL20.glUseProgram(0);
     }
 
+    /**
+     * Releases whatever this shader has cached for the given entity (e.g. its VAO). If the entity is drawn again, the
+     * cache is rebuilt from its current components.
+     */
+    public void release(final Entity entity) {
+        onRelease(entity);
+    }
+
+    abstract void onRelease(Entity entity);
+
     public void destroy() {
         onDestroy();
         unbind();
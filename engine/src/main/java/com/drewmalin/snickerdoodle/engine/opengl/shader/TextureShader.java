@@ -3,12 +3,10 @@ package com.drewmalin.snickerdoodle.engine.opengl.shader;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Material;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Mesh;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Texture;
-import com.drewmalin.snickerdoodle.engine.ecs.component.Transform;
 import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
-import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
 import com.drewmalin.snickerdoodle.engine.light.LightManager;
 import com.drewmalin.snickerdoodle.engine.light.PositionalLight;
-import com.drewmalin.snickerdoodle.engine.opengl.OpenGlUtils;
+import com.drewmalin.snickerdoodle.engine.scene.SceneSnapshot;
 import com.drewmalin.snickerdoodle.engine.utils.Files;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -40,6 +38,7 @@ public class TextureShader
 
     private static final String UNIFORM_TEXTURE_SAMPLER = "texture_sampler";
     private static final String UNIFORM_FRUSTUM_TRANSFORMATION = "frustumTransformation";
+    private static final String UNIFORM_CAMERA_TRANSFORMATION = "cameraTransformation";
     private static final String UNIFORM_ENTITY_TRANSFORMATION = "entityTransformation";
     private static final String UNIFORM_SPECULAR_POWER_TRANSFORMATION = "specularPower";
     private static final String UNIFORM_AMBIENT_LIGHT_TRANSFORMATION = "ambientLight";
@@ -79,6 +78,7 @@ public class TextureShader
          */
         prepareTextureSampler();
         prepareFrustumTransformation();
+        prepareCameraTransformation();
         prepareEntityTransformation();
         prepareSpecularPowerTransformation();
         prepareAmbientLightTransformation();
@@ -87,19 +87,20 @@ public class TextureShader
     }
 
     @Override
-    public void onUpdate(final Entity entity,
-                         final EntityManager entityManager,
+    public void onUpdate(final SceneSnapshot snapshot,
+                         final int index,
                          final LightManager lightManager,
                          final Matrix4f frustumTransformation,
                          final Matrix4f cameraTransformation) {
-        final var metadata = getOrCreateRenderMetadata(entity, entityManager);
+        final var metadata = getOrCreateRenderMetadata(snapshot, index);
 
         /*
          * Step 1: pass the various inputs into the shader arguments.
          */
         setTextureSampler(0);
         setFrustumTransformation(frustumTransformation);
-        setEntityTransformation(OpenGlUtils.getEntityTransformation(metadata.transform(), cameraTransformation));
+        setCameraTransformation(cameraTransformation);
+        setEntityTransformation(snapshot.getWorldMatrix(index));
         setMaterialTransformation(metadata.material());
         setSpecularPowerTransformation(lightManager.getSpecularPower());
         setAmbientLightTransformation(lightManager.getAmbientLight());
@@ -134,7 +135,9 @@ public class TextureShader
         GL30.glBindVertexArray(0);
     }
 
-    private OpenGlShaderMetadata getOrCreateRenderMetadata(final Entity entity, final EntityManager entityManager) {
+    private OpenGlShaderMetadata getOrCreateRenderMetadata(final SceneSnapshot snapshot, final int index) {
+        final var entity = snapshot.getEntity(index);
+
         if (this.cachedMetadata.containsKey(entity)) {
             return this.cachedMetadata.get(entity);
         }
@@ -154,24 +157,15 @@ public class TextureShader
         final int indexVboID;
 
         /*
-         * Retrieve the Mesh from the entity, to be referenced when retrieving vertex data. If no Mesh is found,
-         * something wrong must have occurred (as the render system should have used a call like the following:
-         * entityManager.getEntitiesWithComponent(Mesh.class)).
+         * Retrieve the Mesh from the snapshot, to be referenced when retrieving vertex data. Every entity in a snapshot
+         * has a Mesh.
          */
-        final Mesh mesh = entityManager.getComponent(entity, Mesh.class).orElseThrow();
+        final Mesh mesh = snapshot.getMesh(index);
 
         /*
          * Retrieve the Texture from the entity. It is required to have a texture.
          */
-        final var texture = entityManager.getComponent(entity, Texture.class).orElseThrow();
-
-        /*
-         * Retrieve the Transform from the entity. It is not required to have a transform, so in the case that one is
-         * not found, default to a 0-ed one (no scaling, no rotation, no position).
-         */
-        final var transform = entityManager.getComponent(entity, Transform.class).orElse(
-            new Transform()
-        );
+        final var texture = snapshot.getTexture(index).orElseThrow();
 
         /*
          * Initialize Java buffers to be used as the sources of data for the below OpenGL VBOs. In this case each VBO
@@ -303,7 +297,7 @@ public class TextureShader
          */
         GL30.glBindVertexArray(0);
 
-        final var metadata = new OpenGlShaderMetadata(vaoID, positionVboID, textureID, textureVboID, normalVboID, indexVboID, mesh, texture, this, transform);
+        final var metadata = new OpenGlShaderMetadata(vaoID, positionVboID, textureID, textureVboID, normalVboID, indexVboID, mesh, texture, this);
         this.cachedMetadata.put(entity, metadata);
         return metadata;
     }
@@ -316,6 +310,10 @@ public class TextureShader
         prepareUniform(UNIFORM_FRUSTUM_TRANSFORMATION);
     }
 
+    private void prepareCameraTransformation() {
+        prepareUniform(UNIFORM_CAMERA_TRANSFORMATION);
+    }
+
     private void prepareEntityTransformation() {
         prepareUniform(UNIFORM_ENTITY_TRANSFORMATION);
     }
@@ -352,6 +350,10 @@ public class TextureShader
         setUniformValue(UNIFORM_FRUSTUM_TRANSFORMATION, value);
     }
 
+    private void setCameraTransformation(final Matrix4f value) {
+        setUniformValue(UNIFORM_CAMERA_TRANSFORMATION, value);
+    }
+
     private void setEntityTransformation(final Matrix4f value) {
         setUniformValue(UNIFORM_ENTITY_TRANSFORMATION, value);
     }
@@ -380,6 +382,14 @@ public class TextureShader
         setUniformValue(POSITIONAL_LIGHT_ATT_EXPONENT, light.getAttenuation().exponent());
     }
 
+    @Override
+    void onRelease(final Entity entity) {
+        final var metadata = this.cachedMetadata.remove(entity);
+        if (metadata != null) {
+            metadata.destroy();
+        }
+    }
+
     @Override
     public void onDestroy() {
         for (final var metadata : this.cachedMetadata.values()) {
@@ -396,8 +406,7 @@ public class TextureShader
         int indexVboID,
         Mesh mesh,
         Material material,
-        OpenGlShader shaderProgram,
-        Transform transform) {
+        OpenGlShader shaderProgram) {
 
         public void destroy() {
             GL15.glDeleteBuffers(this.vertexVboID);
@@ -1,5 +1,6 @@
 package com.drewmalin.snickerdoodle.engine.scene;
 
+import com.drewmalin.snickerdoodle.engine.ecs.component.TransformStore;
 import com.drewmalin.snickerdoodle.engine.ecs.entity.DefaultEntityManager;
 import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
 import com.drewmalin.snickerdoodle.engine.light.DefaultLightManager;
@@ -12,6 +13,8 @@ public class Scene {
     private final String name;
     private final EntityManager entityManager;
     private final LightManager lightManager;
+    private final TransformStore transformStore;
+    private final SnapshotBuffer snapshots;
 
     public Scene(final String name) {
         this(name, new DefaultEntityManager(), new DefaultLightManager());
@@ -21,6 +24,8 @@ public class Scene {
         this.name = name;
         this.entityManager = entityManager;
         this.lightManager = lightManager;
+        this.transformStore = new TransformStore(entityManager);
+        this.snapshots = new SnapshotBuffer(entityManager);
     }
 
     public static Scene fromFile(final File file) {
@@ -35,6 +40,29 @@ public class Scene {
         return this.lightManager;
     }
 
+    /**
+     * Returns the scene's off-heap transform store. Entities added to the store are rendered using its transforms, in
+     * place of their Transform components.
+     */
+    public TransformStore getTransformStore() {
+        return this.transformStore;
+    }
+
+    /**
+     * Returns the buffer through which the update loop publishes the scene's render state to the renderer.
+     */
+    public SnapshotBuffer getSnapshots() {
+        return this.snapshots;
+    }
+
+    /**
+     * Releases any native resources held by this scene.
+     */
+    public void destroy() {
+        this.transformStore.destroy();
+        this.snapshots.destroy();
+    }
+
     @Override
     public String toString() {
         return "Scene["
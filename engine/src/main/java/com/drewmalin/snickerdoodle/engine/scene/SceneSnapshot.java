@@ -0,0 +1,239 @@
+package com.drewmalin.snickerdoodle.engine.scene;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Color;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Hierarchy;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Mesh;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Texture;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Transform;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Query;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.QueryResult;
+import org.joml.Matrix4f;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The render-relevant state of a scene, as of the end of one update tick: the entities to draw, the components needed
+ * to draw them, and a copy of each entity's world matrix. The renderer draws from a snapshot rather than from the live
+ * entity manager, so that the next tick may mutate the scene while the previous one is being drawn.
+ * <p>
+ * World matrices are copied into the snapshot. Meshes, colors and textures are captured by reference, and so must not
+ * be modified once put onto an entity (replace the component instead). Textured entities come first, at indices
+ * [0, getTexturedCount()), followed by all other (colored) entities.
+ * <p>
+ * A snapshot also lists the entities whose render state has been invalidated since the previous snapshot the renderer
+ * drew: those destroyed, and those whose Mesh or Material (Color, Texture) was added, replaced or removed. The renderer
+ * releases whatever it has cached for these entities -- such as their vertex buffers -- before drawing.
+ * <p>
+ * Snapshots are created and exchanged by a {@link SnapshotBuffer}.
+ */
+public final class SceneSnapshot {
+
+    private static final Query TEXTURED_MESHES = Query.of(Mesh.class, Texture.class);
+    private static final Query COLORED_MESHES = Query.builder()
+        .with(Mesh.class)
+        .without(Texture.class)
+        .build();
+
+    private Entity[] entities;
+    private Mesh[] meshes;
+    private Color[] colors;
+    private Texture[] textures;
+    private Matrix4f[] worldMatrices;
+    private int size;
+    private int texturedCount;
+
+    private Entity[] invalidated;
+    private long[] invalidatedSequences;
+    private int invalidatedFrom;
+    private int invalidatedTo;
+    private long sequence;
+
+    SceneSnapshot() {
+        this.invalidated = new Entity[0];
+        this.invalidatedSequences = new long[0];
+        this.entities = new Entity[0];
+        this.meshes = new Mesh[0];
+        this.colors = new Color[0];
+        this.textures = new Texture[0];
+        this.worldMatrices = new Matrix4f[0];
+    }
+
+    /**
+     * Overwrites this snapshot with the current state of the given scene, numbered with the given sequence number, and
+     * the given invalidations (each tagged with the sequence number of the first snapshot to include it, in ascending
+     * order). Called from the writer thread.
+     */
+    void capture(final Scene scene,
+                 final long sequence,
+                 final Entity[] invalidated,
+                 final long[] invalidatedSequences,
+                 final int invalidatedCount) {
+        this.sequence = sequence;
+        if (this.invalidated.length < invalidatedCount) {
+            this.invalidated = new Entity[Math.max(invalidatedCount, this.invalidated.length * 2)];
+            this.invalidatedSequences = new long[this.invalidated.length];
+        }
+        if (invalidatedCount < this.invalidatedTo) {
+            Arrays.fill(this.invalidated, invalidatedCount, this.invalidatedTo, null);
+        }
+        System.arraycopy(invalidated, 0, this.invalidated, 0, invalidatedCount);
+        System.arraycopy(invalidatedSequences, 0, this.invalidatedSequences, 0, invalidatedCount);
+        this.invalidatedFrom = 0;
+        this.invalidatedTo = invalidatedCount;
+
+        final var entityManager = scene.getEntityManager();
+        final var texturedMeshes = entityManager.query(TEXTURED_MESHES);
+        final var coloredMeshes = entityManager.query(COLORED_MESHES);
+
+        final var oldSize = this.size;
+        ensureCapacity(texturedMeshes.size() + coloredMeshes.size());
+
+        this.size = 0;
+        captureAll(texturedMeshes, scene);
+        this.texturedCount = this.size;
+        captureAll(coloredMeshes, scene);
+
+        /*
+         * Drop the references held by any trailing entries left over from a larger, earlier capture.
+         */
+        if (this.size < oldSize) {
+            Arrays.fill(this.entities, this.size, oldSize, null);
+            Arrays.fill(this.meshes, this.size, oldSize, null);
+            Arrays.fill(this.colors, this.size, oldSize, null);
+            Arrays.fill(this.textures, this.size, oldSize, null);
+        }
+    }
+
+    /**
+     * Hides the invalidations which the reader has already received, with the snapshot of the given sequence number.
+     * Called from the reader thread, on acquiring this snapshot.
+     */
+    void skipInvalidatedThrough(final long sequence) {
+        while (this.invalidatedFrom < this.invalidatedTo
+            && this.invalidatedSequences[this.invalidatedFrom] <= sequence) {
+            this.invalidatedFrom++;
+        }
+    }
+
+    private void captureAll(final QueryResult entities, final Scene scene) {
+        final var entityManager = scene.getEntityManager();
+        final var transformStore = scene.getTransformStore();
+
+        for (var i = 0; i < entities.size(); i++) {
+            final var entity = entities.get(i);
+            final var index = this.size++;
+
+            this.entities[index] = entity;
+            this.meshes[index] = entityManager.getComponentOrNull(entity, Mesh.class);
+            this.colors[index] = entityManager.getComponentOrNull(entity, Color.class);
+            this.textures[index] = entityManager.getComponentOrNull(entity, Texture.class);
+
+            /*
+             * The world matrix comes from the first of: the transform store, the entity's place in the hierarchy, or
+             * its own Transform. An entity with none of these is drawn at the origin.
+             */
+            final var worldMatrix = this.worldMatrices[index];
+            if (transformStore.contains(entity)) {
+                worldMatrix.set(transformStore.getMatrix(entity));
+                continue;
+            }
+            final var hierarchy = entityManager.getComponentOrNull(entity, Hierarchy.class);
+            if (hierarchy != null) {
+                worldMatrix.set(hierarchy.getWorldMatrix());
+                continue;
+            }
+            final var transform = entityManager.getComponentOrNull(entity, Transform.class);
+            if (transform != null) {
+                transform.toMatrix(worldMatrix);
+            }
+            else {
+                worldMatrix.identity();
+            }
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= this.entities.length) {
+            return;
+        }
+        final var oldCapacity = this.entities.length;
+        final var newCapacity = Math.max(capacity, oldCapacity * 2);
+        this.entities = Arrays.copyOf(this.entities, newCapacity);
+        this.meshes = Arrays.copyOf(this.meshes, newCapacity);
+        this.colors = Arrays.copyOf(this.colors, newCapacity);
+        this.textures = Arrays.copyOf(this.textures, newCapacity);
+        this.worldMatrices = Arrays.copyOf(this.worldMatrices, newCapacity);
+        for (var i = oldCapacity; i < newCapacity; i++) {
+            this.worldMatrices[i] = new Matrix4f();
+        }
+    }
+
+    /**
+     * Returns the number of entities in this snapshot.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of textured entities in this snapshot, which occupy the indices [0, getTexturedCount()).
+     */
+    public int getTexturedCount() {
+        return this.texturedCount;
+    }
+
+    public Entity getEntity(final int index) {
+        return this.entities[index];
+    }
+
+    public Mesh getMesh(final int index) {
+        return this.meshes[index];
+    }
+
+    public Optional<Color> getColor(final int index) {
+        return Optional.ofNullable(this.colors[index]);
+    }
+
+    public Optional<Texture> getTexture(final int index) {
+        return Optional.ofNullable(this.textures[index]);
+    }
+
+    /**
+     * Returns the number of entities whose render state has been invalidated since the previous snapshot drawn. An
+     * entity may be listed more than once.
+     */
+    public int getInvalidatedCount() {
+        return this.invalidatedTo - this.invalidatedFrom;
+    }
+
+    public Entity getInvalidated(final int index) {
+        return this.invalidated[this.invalidatedFrom + index];
+    }
+
+    /**
+     * Returns the position of this snapshot in the sequence of snapshots published: a later snapshot has a greater
+     * sequence number. A renderer may compare sequence numbers to tell whether it has already seen a snapshot.
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Returns the entity's world matrix, as of the tick this snapshot was captured. The matrix must not be modified.
+     */
+    public Matrix4f getWorldMatrix(final int index) {
+        return this.worldMatrices[index];
+    }
+
+    @Override
+    public String toString() {
+        return "SceneSnapshot["
+            + "sequence=" + this.sequence + ", "
+            + "size=" + this.size + ", "
+            + "texturedCount=" + this.texturedCount + ", "
+            + "invalidatedCount=" + getInvalidatedCount()
+            + ']';
+    }
+}
@@ -0,0 +1,171 @@
+package com.drewmalin.snickerdoodle.engine.scene;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Material;
+import com.drewmalin.snickerdoodle.engine.ecs.component.Mesh;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityEvents;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free triple buffer of {@link SceneSnapshot}s, shared by one writer (the update thread) and one reader (the
+ * render thread). At any moment one snapshot is being written, one is being read, and the third holds the most
+ * recently published state. Publishing swaps the written snapshot with the published one; acquiring swaps the read
+ * snapshot with the published one, if it is newer. Neither side ever waits for the other, and neither ever sees a
+ * snapshot the other is still using -- so the renderer never observes a half-updated tick.
+ * <p>
+ * If the writer publishes several times between two acquisitions, the reader skips straight to the latest snapshot. If
+ * the reader acquires several times between two publications, it draws the same snapshot again. Either way, every
+ * invalidation (see SceneSnapshot::getInvalidated) reaches the reader exactly once: the writer keeps including an
+ * invalidation in the snapshots it publishes until the reader has acquired one of them.
+ * <p>
+ * The buffer only listens for entity events from the first publish on -- before then there is nothing for an
+ * invalidation to reach -- so that a scene which is never rendered does not keep the manager's event buffer growing.
+ */
+public final class SnapshotBuffer {
+
+    private static final int INDEX_MASK = 0b011;
+    private static final int FRESH = 0b100;
+
+    private final SceneSnapshot[] snapshots;
+
+    /*
+     * The index of the published snapshot, with the FRESH bit set if it has not yet been acquired by the reader, and
+     * the sequence number of the last snapshot acquired. This is the only state shared between the two threads; the
+     * exchanges on it also publish the snapshot contents.
+     */
+    private final AtomicInteger published;
+    private final AtomicLong acquiredSequence;
+
+    /*
+     * Owned by the writer: the subscription to the manager's events (null until the first publish), and the
+     * invalidations not yet known to have reached the reader, each tagged with the sequence number of the first
+     * snapshot to include it.
+     */
+    private final EntityManager entityManager;
+    private final EntityEvents.Listener invalidator;
+    private EntityEvents.Subscription events;
+    private boolean destroyed;
+    private Entity[] pending;
+    private long[] pendingSequences;
+    private int pendingCount;
+    private int writing;
+    private long sequence;
+
+    /*
+     * Owned by the reader.
+     */
+    private int reading;
+
+    public SnapshotBuffer(final EntityManager entityManager) {
+        this.snapshots = new SceneSnapshot[] {new SceneSnapshot(), new SceneSnapshot(), new SceneSnapshot()};
+        this.published = new AtomicInteger(1);
+        this.acquiredSequence = new AtomicLong();
+        this.entityManager = entityManager;
+        this.invalidator = this::onEvent;
+        this.pending = new Entity[16];
+        this.pendingSequences = new long[16];
+        this.writing = 0;
+        this.reading = 2;
+    }
+
+    /**
+     * Captures the current state of the given scene and publishes it to the reader. Must only be called from the
+     * writer thread.
+     */
+    public void publish(final Scene scene) {
+        this.sequence++;
+        discardAcquired(this.acquiredSequence.get());
+        if (this.events == null && !this.destroyed) {
+            this.events = this.entityManager.getEvents().subscribe();
+        }
+        if (this.events != null) {
+            this.events.drain(this.invalidator);
+        }
+
+        this.snapshots[this.writing].capture(scene, this.sequence, this.pending, this.pendingSequences,
+            this.pendingCount);
+        this.writing = this.published.getAndSet(this.writing | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the most recently published snapshot, which remains valid (and unchanged) until the next call to
+     * acquire. Before anything has been published, returns an empty snapshot. Must only be called from the reader
+     * thread.
+     */
+    public SceneSnapshot acquire() {
+        if ((this.published.get() & FRESH) != 0) {
+            final var lastAcquired = this.snapshots[this.reading].getSequence();
+            this.reading = this.published.getAndSet(this.reading) & INDEX_MASK;
+
+            final var snapshot = this.snapshots[this.reading];
+            snapshot.skipInvalidatedThrough(lastAcquired);
+            this.acquiredSequence.set(snapshot.getSequence());
+        }
+        return this.snapshots[this.reading];
+    }
+
+    /**
+     * Stops listening for entity events. Must only be called from the writer thread.
+     */
+    public void destroy() {
+        this.destroyed = true;
+        if (this.events != null) {
+            this.events.close();
+            this.events = null;
+        }
+    }
+
+    private void onEvent(final EntityEvents.Kind kind,
+                         final Entity entity,
+                         final Class<? extends Component> componentType) {
+        final var invalidates = switch (kind) {
+            case ENTITY_CREATED -> false;
+            case ENTITY_DESTROYED -> true;
+            case COMPONENT_ADDED, COMPONENT_REMOVED -> Mesh.class.isAssignableFrom(componentType)
+                || Material.class.isAssignableFrom(componentType);
+        };
+        if (!invalidates) {
+            return;
+        }
+
+        if (this.pendingCount == this.pending.length) {
+            this.pending = Arrays.copyOf(this.pending, this.pendingCount * 2);
+            this.pendingSequences = Arrays.copyOf(this.pendingSequences, this.pendingCount * 2);
+        }
+        this.pending[this.pendingCount] = entity;
+        this.pendingSequences[this.pendingCount] = this.sequence;
+        this.pendingCount++;
+    }
+
+    /**
+     * Drops the pending invalidations included in the snapshot of the given sequence number (or earlier), which the
+     * reader has acquired.
+     */
+    private void discardAcquired(final long acquired) {
+        var discarded = 0;
+        while (discarded < this.pendingCount && this.pendingSequences[discarded] <= acquired) {
+            discarded++;
+        }
+        if (discarded == 0) {
+            return;
+        }
+
+        final var remaining = this.pendingCount - discarded;
+        System.arraycopy(this.pending, discarded, this.pending, 0, remaining);
+        System.arraycopy(this.pendingSequences, discarded, this.pendingSequences, 0, remaining);
+        Arrays.fill(this.pending, remaining, this.pendingCount, null);
+        this.pendingCount = remaining;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotBuffer["
+            + "published=" + this.snapshots[this.published.get() & INDEX_MASK]
+            + ']';
+    }
+}
@@ -0,0 +1,57 @@
+package com.drewmalin.snickerdoodle.engine.script;
+
+import com.drewmalin.snickerdoodle.engine.ecs.component.Component;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
+
+import java.lang.reflect.Array;
+
+/**
+ * A {@link Script} meant to be shared by many entities, which is invoked once per tick for all of them rather than once
+ * per entity. The script system gathers every entity the instance is attached to, along with each entity's component
+ * of the script's component type, into two parallel arrays, and hands them over in a single call:
+ * <pre>
+ * new BatchScript&lt;Transform&gt;(Transform.class) {
+ *     public void invokeBatch(Entity[] entities, Transform[] transforms, int count, EntityManager em, double dt) {
+ *         for (var i = 0; i &lt; count; i++) {
+ *             ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ * The batch replaces one interface call and one component lookup per entity with a single call and a plain loop over
+ * arrays: the script system fills the arrays by walking the query of Script and the component type, which the entity
+ * manager reads straight out of its own storage. Only the first count elements of the arrays are valid, and the arrays
+ * are reused between ticks, so they must not be kept. An entity's component is null if it has none of the type.
+ * <p>
+ * A script system which does not batch invokes the script one entity at a time, as a batch of one.
+ */
+public abstract class BatchScript<C extends Component>
+    implements Script {
+
+    private final Class<C> componentType;
+
+    protected BatchScript(final Class<C> componentType) {
+        this.componentType = componentType;
+    }
+
+    /**
+     * Returns the type of the components handed to invokeBatch alongside the entities.
+     */
+    public final Class<C> getComponentType() {
+        return this.componentType;
+    }
+
+    public abstract void invokeBatch(Entity[] entities,
+                                     C[] components,
+                                     int count,
+                                     EntityManager entityManager,
+                                     double dt);
+
+    @Override
+    public final void invoke(final Entity entity, final EntityManager entityManager, final double dt) {
+        @SuppressWarnings("unchecked") final C[] components = (C[]) Array.newInstance(this.componentType, 1);
+        components[0] = entityManager.getComponentOrNull(entity, this.componentType);
+        invokeBatch(new Entity[]{entity}, components, 1, entityManager, dt);
+    }
+}
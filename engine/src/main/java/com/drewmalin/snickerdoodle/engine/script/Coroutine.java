@@ -0,0 +1,207 @@
+package com.drewmalin.snickerdoodle.engine.script;
+
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.WorldSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Script} which runs a sequence of steps across many ticks, so that a long-running behaviour -- walk to a
+ * point, wait two seconds, then attack -- reads as the sequence it is rather than as a hand-written state machine:
+ * <pre>
+ *     Coroutine.builder()
+ *         .until(arrived, walk)
+ *         .awaitSeconds(2)
+ *         .then(attack)
+ *         .build();
+ * </pre>
+ * Each tick, the script system invokes the coroutine, which resumes the step it is suspended in. A step that completes
+ * hands over to the next within the same tick; a step that must wait suspends the coroutine until the next tick. The
+ * coroutine is therefore resumed on the script system's thread, in the script system's order, and never between ticks.
+ * Once its last step completes, the coroutine does nothing.
+ * <p>
+ * A suspended coroutine is just its position in the sequence and a countdown, so holding many costs little: waiting on
+ * ticks or seconds is a decrement per tick, and waiting on a condition or a future is one check per tick.
+ * <p>
+ * A coroutine keeps the state of one entity's run, and so must not be shared between entities. Build one per entity;
+ * the builder may be reused, and its coroutines share their steps.
+ * <p>
+ * A coroutine is captured in world snapshots as a copy (see copy), and so is rolled back to the step it was at.
+ */
+public final class Coroutine
+    implements Script {
+
+    private static final double EPSILON = 1e-9;
+
+    static {
+        WorldSnapshot.registerCopy(Coroutine.class, Coroutine::copy);
+    }
+
+    private final Step[] steps;
+    private int next;
+    private boolean suspended;
+    private int ticksLeft;
+    private double secondsLeft;
+
+    private Coroutine(final Step[] steps) {
+        this.steps = steps;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void invoke(final Entity entity, final EntityManager entityManager, final double dt) {
+        while (this.next < this.steps.length) {
+            if (!this.steps[this.next].resume(this, !this.suspended, entity, entityManager, dt)) {
+                this.suspended = true;
+                return;
+            }
+            this.suspended = false;
+            this.next++;
+        }
+    }
+
+    /**
+     * Returns a new coroutine sharing this one's steps, at the same point in them.
+     */
+    public Coroutine copy() {
+        final var copy = new Coroutine(this.steps);
+        copy.next = this.next;
+        copy.suspended = this.suspended;
+        copy.ticksLeft = this.ticksLeft;
+        copy.secondsLeft = this.secondsLeft;
+        return copy;
+    }
+
+    /**
+     * Returns true once every step has completed.
+     */
+    public boolean isDone() {
+        return this.next == this.steps.length;
+    }
+
+    @Override
+    public String toString() {
+        return "Coroutine["
+            + "step=" + this.next + ", "
+            + "steps=" + this.steps.length + ", "
+            + "suspended=" + this.suspended
+            + ']';
+    }
+
+    /**
+     * A condition on an entity, checked once per tick while a coroutine waits on it.
+     */
+    @FunctionalInterface
+    public interface Condition {
+
+        boolean test(Entity entity, EntityManager entityManager);
+    }
+
+    /**
+     * One step of a coroutine. Returns true if the step has completed, or false to suspend the coroutine until the next
+     * tick. The step is told whether it is being entered, or resumed after a suspension.
+     */
+    @FunctionalInterface
+    private interface Step {
+
+        boolean resume(Coroutine coroutine,
+                       boolean entering,
+                       Entity entity,
+                       EntityManager entityManager,
+                       double dt);
+    }
+
+    public static class Builder {
+
+        private final List<Step> steps;
+
+        private Builder() {
+            this.steps = new ArrayList<>();
+        }
+
+        /**
+         * Runs the action once, then continues within the same tick.
+         */
+        public Builder then(final Script action) {
+            this.steps.add((coroutine, entering, entity, entityManager, dt) -> {
+                action.invoke(entity, entityManager, dt);
+                return true;
+            });
+            return this;
+        }
+
+        /**
+         * Runs the action once per tick until the condition holds. The condition is checked before each run, and so
+         * the action never runs if it already holds.
+         */
+        public Builder until(final Condition condition, final Script action) {
+            this.steps.add((coroutine, entering, entity, entityManager, dt) -> {
+                if (condition.test(entity, entityManager)) {
+                    return true;
+                }
+                action.invoke(entity, entityManager, dt);
+                return false;
+            });
+            return this;
+        }
+
+        /**
+         * Suspends the coroutine for the given number of ticks: a wait of one tick resumes on the next.
+         */
+        public Builder awaitTicks(final int ticks) {
+            this.steps.add((coroutine, entering, entity, entityManager, dt) -> {
+                if (entering) {
+                    coroutine.ticksLeft = ticks;
+                }
+                else {
+                    coroutine.ticksLeft--;
+                }
+                return coroutine.ticksLeft <= 0;
+            });
+            return this;
+        }
+
+        /**
+         * Suspends the coroutine until at least the given number of seconds of update time have passed.
+         */
+        public Builder awaitSeconds(final double seconds) {
+            this.steps.add((coroutine, entering, entity, entityManager, dt) -> {
+                if (entering) {
+                    coroutine.secondsLeft = seconds;
+                }
+                else {
+                    coroutine.secondsLeft -= dt;
+                }
+                return coroutine.secondsLeft <= EPSILON;
+            });
+            return this;
+        }
+
+        /**
+         * Suspends the coroutine until the first tick on which the condition holds (which may be this one).
+         */
+        public Builder await(final Condition condition) {
+            this.steps.add((coroutine, entering, entity, entityManager, dt) -> condition.test(entity, entityManager));
+            return this;
+        }
+
+        /**
+         * Suspends the coroutine until the first tick on which the future is done (which may be this one), however it
+         * completed. The future is never waited on, and so may be completed by any thread.
+         */
+        public Builder await(final Future<?> future) {
+            this.steps.add((coroutine, entering, entity, entityManager, dt) -> future.isDone());
+            return this;
+        }
+
+        public Coroutine build() {
+            return new Coroutine(this.steps.toArray(new Step[0]));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.drewmalin.snickerdoodle.engine.script;
+
+import com.drewmalin.snickerdoodle.engine.ecs.system.ComponentAccess;
+
+/**
+ * A {@link Script} which declares the components it touches, so that a ParallelScriptSystem may run it on many
+ * entities at once, and alongside other scripts it cannot interfere with.
+ * <p>
+ * The declaration is a contract. A parallel script may read components of its access's "reads" types from any entity,
+ * and may read and change, in place, components of its "writes" types on its own entity only. It must not touch any
+ * other component, and must record every other change -- spawning, destroying, adding, removing or replacing
+ * components -- on the entity manager's command buffer: only the ConcurrentEntityManager accepts changes from many
+ * threads at once. A script which reads other entities' components of a type it also writes is still correct, but its
+ * entities are run one at a time.
+ */
+public interface ParallelScript
+    extends Script {
+
+    ComponentAccess getAccess();
+}
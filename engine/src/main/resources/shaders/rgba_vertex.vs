@@ -28,6 +28,7 @@ out vec4 exColor;
 out vec3 mvVertexNormal;
 out vec3 mvVertexPos;
 
+uniform mat4 cameraTransformation;
 uniform mat4 entityTransformation;
 uniform mat4 frustumTransformation;
 
@@ -37,6 +38,7 @@ void main()
     //
     //   matrix =
     //     frustum_matrix *
+    //     camera_matrix *
     //     translation_matrix *
     //     rotation_matrix *
     //     scale_matrix
@@ -49,10 +51,11 @@ void main()
     //    |m12 m13 m14 m15|   |    1     |   |      1       |
     //
     // Remember: the "gl_Position" value is built-in and will be used as this new position vector.
-    vec4 mvPos = entityTransformation * vec4(position, 1.0);
+    mat4 modelViewTransformation = cameraTransformation * entityTransformation;
+    vec4 mvPos = modelViewTransformation * vec4(position, 1.0);
 	gl_Position = frustumTransformation * mvPos;
 
 	exColor = inColor;
-	mvVertexNormal = normalize(entityTransformation * vec4(vertexNormal, 0.0)).xyz;
+	mvVertexNormal = normalize(modelViewTransformation * vec4(vertexNormal, 0.0)).xyz;
 	mvVertexPos = mvPos.xyz;
 }
\ No newline at end of file
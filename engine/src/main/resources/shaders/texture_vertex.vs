@@ -8,12 +8,13 @@ out vec2 outTexCoord;
 out vec3 mvVertexNormal;
 out vec3 mvVertexPos;
 
+uniform mat4 cameraTransformation;
 uniform mat4 entityTransformation;
 uniform mat4 frustumTransformation;
 
 void main()
 {
-    vec4 mvPos = entityTransformation * vec4(position, 1.0);
+    vec4 mvPos = cameraTransformation * entityTransformation * vec4(position, 1.0);
 	gl_Position = frustumTransformation * mvPos;
 	outTexCoord = texCoord;
 
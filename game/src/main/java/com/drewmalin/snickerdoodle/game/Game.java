@@ -4,7 +4,9 @@ import com.drewmalin.snickerdoodle.engine.EngineFactory;
 import com.drewmalin.snickerdoodle.engine.camera.DefaultCamera;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Color;
 import com.drewmalin.snickerdoodle.engine.ecs.component.Transform;
-import com.drewmalin.snickerdoodle.engine.ecs.entity.DefaultEntityManager;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.ArchetypeEntityManager;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.Entity;
+import com.drewmalin.snickerdoodle.engine.ecs.entity.EntityManager;
 import com.drewmalin.snickerdoodle.engine.ecs.system.DefaultScriptSystem;
 import com.drewmalin.snickerdoodle.engine.light.Attenuation;
 import com.drewmalin.snickerdoodle.engine.light.DefaultLightManager;
@@ -18,7 +20,7 @@ import com.drewmalin.snickerdoodle.engine.opengl.OpenGlInputSystem;
 import com.drewmalin.snickerdoodle.engine.opengl.OpenGlRenderSystem;
 import com.drewmalin.snickerdoodle.engine.opengl.OpenGlWindow;
 import com.drewmalin.snickerdoodle.engine.scene.Scene;
-import com.drewmalin.snickerdoodle.engine.script.Script;
+import com.drewmalin.snickerdoodle.engine.script.BatchScript;
 import com.drewmalin.snickerdoodle.engine.window.Window;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -37,6 +39,7 @@ public class Game {
             .scriptSystem(new DefaultScriptSystem())
             .maxFramesPerSecond(60)
             .maxUpdatesPerSecond(120)
+            .concurrentRendering(true)
             .build();
 
         final var window = newWindow(engine);
@@ -157,17 +160,29 @@ public class Game {
         /*
          * Set up entities.
          */
-        final var entityManager = new DefaultEntityManager();
-
-        final Script rotateScript = (e, em, dt) -> {
-            var speed = 50f;
-            var delta = speed * dt;
-            final var transform = em.getComponent(e, Transform.class).orElseThrow();
-            var rot = transform.getRotation().x() + delta;
-            if (rot > 360) {
-                rot = 0;
+        final var entityManager = new ArchetypeEntityManager();
+
+        /*
+         * One script instance shared by every spinning cube, invoked once per tick for all of them.
+         */
+        final var rotateScript = new BatchScript<Transform>(Transform.class) {
+            @Override
+            public void invokeBatch(final Entity[] entities,
+                                    final Transform[] transforms,
+                                    final int count,
+                                    final EntityManager em,
+                                    final double dt) {
+                var speed = 50f;
+                var delta = speed * dt;
+                for (var i = 0; i < count; i++) {
+                    final var transform = transforms[i];
+                    var rot = transform.getRotation().x() + delta;
+                    if (rot > 360) {
+                        rot = 0;
+                    }
+                    transform.setRotation((float) rot, (float) rot, (float) 0);
+                }
             }
-            transform.setRotation((float) rot, (float) rot, (float) 0);
         };
 
         /*